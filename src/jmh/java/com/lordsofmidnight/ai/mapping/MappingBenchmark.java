@@ -0,0 +1,41 @@
+package com.lordsofmidnight.ai.mapping;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import com.lordsofmidnight.gamestate.points.PointMap;
+import com.lordsofmidnight.gamestate.points.PointSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures the junction and edge mapping the AI does for every new map. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MappingBenchmark {
+
+  private Map map;
+  private PointSet junctions;
+
+  @Setup
+  public void setUp() {
+    map = new Map(MapGenerator.generateNewMap(20, 20, new Random(1)));
+    junctions = Mapping.getJunctions(map);
+  }
+
+  @Benchmark
+  public PointSet getJunctions() {
+    return Mapping.getJunctions(map);
+  }
+
+  @Benchmark
+  public PointMap<PointSet> getEdges() {
+    return Mapping.getEdges(map, junctions);
+  }
+}
@@ -0,0 +1,82 @@
+package com.lordsofmidnight.ai.routefinding;
+
+import com.lordsofmidnight.ai.routefinding.SampleSearch.ConditionalInterface;
+import com.lordsofmidnight.ai.routefinding.routefinders.AStarRouteFinder;
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the searches the AI runs every time it picks a direction, cycling through a fixed set
+ * of start and target positions on a seeded map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteFindingBenchmark {
+
+  private static final int POSITIONS = 64;
+
+  /** The depth of the sample search */
+  @Param({"5", "10", "20"})
+  public int sampleDepth;
+
+  private AStarRouteFinder aStar;
+  private SampleSearch sampleSearch;
+  private ConditionalInterface condition;
+  private Point[] starts;
+  private Point[] targets;
+  private int next = 0;
+
+  @Setup
+  public void setUp() {
+    Map map = new Map(MapGenerator.generateNewMap(20, 20, new Random(1)));
+    aStar = new AStarRouteFinder(map);
+    sampleSearch = new SampleSearch(sampleDepth, map);
+    Random random = new Random(1);
+    starts = new Point[POSITIONS];
+    targets = new Point[POSITIONS];
+    for (int i = 0; i < POSITIONS; i++) {
+      starts[i] = randomOpenPoint(map, random);
+      targets[i] = randomOpenPoint(map, random);
+    }
+    // a condition that holds on roughly a third of the map, like the positions of nearby agents
+    condition = position -> ((int) position.getX() + (int) position.getY()) % 3 == 0;
+  }
+
+  @Benchmark
+  public Direction aStarGetRoute() {
+    int i = next++ & (POSITIONS - 1);
+    return aStar.getRoute(starts[i], targets[i]);
+  }
+
+  @Benchmark
+  public int[] sampleSearchGetDirectionCounts() {
+    int i = next++ & (POSITIONS - 1);
+    return sampleSearch.getDirectionCounts(starts[i], condition);
+  }
+
+  /**
+   * @param map The map
+   * @param random The source of randomness
+   * @return The centre of a random cell that isn't a wall
+   */
+  private static Point randomOpenPoint(Map map, Random random) {
+    Point p;
+    do {
+      p = new Point(random.nextInt(map.getMaxX()), random.nextInt(map.getMaxY()), map).centralise();
+    } while (map.isWall(p));
+    return p;
+  }
+}
@@ -0,0 +1,40 @@
+package com.lordsofmidnight.gamestate.maps;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures map generation at the small and default sizes the game uses, and at a larger size.
+ * Generation retries until the map is valid, so expect a wide spread between runs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MapGeneratorBenchmark {
+
+  /** The size factor passed to {@link MapGenerator#newRandomMap(int, int)} */
+  @Param({"-1", "2", "6"})
+  public int sizeFactor;
+
+  private int size;
+  private Random random;
+
+  @Setup
+  public void setUp() {
+    size = 14 + 3 * sizeFactor; // as newRandomMap does
+    random = new Random(1);
+  }
+
+  @Benchmark
+  public int[][] generateNewMap() {
+    return MapGenerator.generateNewMap(size, size, random);
+  }
+}
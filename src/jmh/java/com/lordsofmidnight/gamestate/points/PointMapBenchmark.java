@@ -0,0 +1,65 @@
+package com.lordsofmidnight.gamestate.points;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the lookups the game makes on its pellet map every physics update, both by {@link
+ * Point} and by packed {@link Cell}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PointMapBenchmark {
+
+  private static final int SIZE = 20;
+  private static final int POSITIONS = 256;
+
+  private PointMap<Object> pointMap;
+  private Point[] points;
+  private int[] cells;
+  private Object value;
+  private int next = 0;
+
+  @Setup
+  public void setUp() {
+    Map map = new Map(new int[SIZE][SIZE]);
+    pointMap = new PointMap<>(map);
+    value = new Object();
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        pointMap.put(new Point(x, y, map), value);
+      }
+    }
+    Random random = new Random(1);
+    points = new Point[POSITIONS];
+    cells = new int[POSITIONS];
+    for (int i = 0; i < POSITIONS; i++) {
+      points[i] = new Point(random.nextDouble() * SIZE, random.nextDouble() * SIZE, map);
+      cells[i] = Cell.of(points[i], map);
+    }
+  }
+
+  @Benchmark
+  public Object getByPoint() {
+    return pointMap.get(points[next++ & (POSITIONS - 1)]);
+  }
+
+  @Benchmark
+  public Object getByCell() {
+    return pointMap.get(cells[next++ & (POSITIONS - 1)]);
+  }
+
+  @Benchmark
+  public Object putByPoint() {
+    return pointMap.put(points[next++ & (POSITIONS - 1)], value);
+  }
+}
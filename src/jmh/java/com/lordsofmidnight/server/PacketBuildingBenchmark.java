@@ -0,0 +1,80 @@
+package com.lordsofmidnight.server;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures encoding the messages the server broadcasts to clients during a game into a reused
+ * buffer. Snapshots include capturing the state, as the host does for each one it sends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacketBuildingBenchmark {
+
+  private static final int AGENT_COUNT = 5;
+
+  private Entity[] agents;
+  private Input input;
+  private Point location;
+  private ByteBuffer buf;
+  private Snapshot baseline;
+  private Snapshot snapshot;
+
+  @Setup
+  public void setUp() {
+    Map map = new Map(MapGenerator.generateNewMap(20, 20, new Random(1)));
+    Random random = new Random(1);
+    agents = new Entity[AGENT_COUNT];
+    for (int i = 0; i < AGENT_COUNT; i++) {
+      agents[i] = new Entity(i == 0, i, map.getRandomSpawnPoint(agents, random));
+      agents[i].setScore(random.nextInt(10000));
+    }
+    agents[1].setItems(0, 1); // a web and a speed
+    input = new Input(1, Direction.LEFT);
+    location = agents[1].getLocation();
+    buf = ByteBuffer.allocate(PacketCodec.MAX_MESSAGE_SIZE);
+    baseline = new Snapshot(AGENT_COUNT);
+    baseline.capture(0, agents, 0, 1000);
+    snapshot = new Snapshot(AGENT_COUNT);
+    // one agent moves between snapshots, as between most broadcasts
+    agents[2].setLocation(agents[2].getLocation().getX() + 0.5, agents[2].getLocation().getY());
+  }
+
+  @Benchmark
+  public ByteBuffer keyframe() {
+    buf.clear();
+    snapshot.capture(10, agents, 0, 900);
+    snapshot.write(buf, null);
+    return buf;
+  }
+
+  @Benchmark
+  public ByteBuffer delta() {
+    buf.clear();
+    snapshot.capture(10, agents, 0, 900);
+    snapshot.write(buf, baseline);
+    return buf;
+  }
+
+  @Benchmark
+  public ByteBuffer entityMovement() {
+    buf.clear();
+    PacketCodec.writeMovement(buf, input, location, 0);
+    return buf;
+  }
+}
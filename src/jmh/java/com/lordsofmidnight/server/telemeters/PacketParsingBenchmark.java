@@ -0,0 +1,113 @@
+package com.lordsofmidnight.server.telemeters;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.server.PacketCodec;
+import com.lordsofmidnight.server.Snapshot;
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a client applying the packets the server sends, using a headless {@link DumbTelemetry}
+ * fed with frames encoded from a running game. Each invocation reads a duplicate of the frame, so
+ * the encoded bytes are reused, with snapshots given the next tick so they aren't dropped as old.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacketParsingBenchmark {
+
+  private DumbTelemetry telemetry;
+  private Queue<ByteBuffer> packets;
+  private ByteBuffer keyframePacket;
+  private ByteBuffer deltaPacket;
+  private ByteBuffer movementPacket;
+  private int tick = 0;
+
+  @Setup
+  public void setUp() {
+    Map map = new Map(MapGenerator.generateNewMap(20, 20, new Random(1)));
+    GameListener listener =
+        new GameListener() {
+          @Override
+          public void collisionDetected(Entity newMipsman) {}
+
+          @Override
+          public void finishGame() {}
+        };
+    Entity[] agents =
+        new HostTelemetry(
+                Telemetry.AGENT_COUNT, map, 1, new LinkedBlockingQueue<Input>(), null, listener)
+            .getAgents();
+    packets = new LinkedBlockingQueue<>();
+    telemetry = new DumbTelemetry(map, packets, null, listener);
+
+    Snapshot baseline = new Snapshot(Telemetry.AGENT_COUNT);
+    baseline.capture(0, agents, 0, 1000);
+    keyframePacket = encode(buf -> baseline.write(buf, null));
+    // one agent moves between snapshots, as between most broadcasts
+    agents[2].setLocation(agents[2].getLocation().getX() + 0.5, agents[2].getLocation().getY());
+    Snapshot snapshot = new Snapshot(Telemetry.AGENT_COUNT);
+    snapshot.capture(1, agents, 0, 990);
+    deltaPacket = encode(buf -> snapshot.write(buf, baseline));
+    Point location = agents[1].getLocation();
+    movementPacket =
+        encode(buf -> PacketCodec.writeMovement(buf, new Input(1, Direction.LEFT), location, 0));
+    packets.add(keyframePacket.duplicate());
+    telemetry.processInputs();
+  }
+
+  @Benchmark
+  public void parseKeyframe() {
+    packets.add(nextSnapshot(keyframePacket));
+    telemetry.processInputs();
+  }
+
+  @Benchmark
+  public void parseDelta() {
+    packets.add(nextSnapshot(deltaPacket)); // against the snapshot applied by the last call
+    telemetry.processInputs();
+  }
+
+  @Benchmark
+  public void parseMovement() {
+    packets.add(movementPacket.duplicate());
+    telemetry.processInputs();
+  }
+
+  /**
+   * @param packet A frame holding a single snapshot
+   * @return A duplicate of the frame, stamped with the next tick
+   */
+  private ByteBuffer nextSnapshot(ByteBuffer packet) {
+    ByteBuffer frame = packet.duplicate();
+    frame.putInt(1, ++tick); // after the message type
+    return frame;
+  }
+
+  /**
+   * @param writer Writes the message
+   * @return A frame holding the message, ready to be read
+   */
+  private static ByteBuffer encode(Consumer<ByteBuffer> writer) {
+    ByteBuffer buf = ByteBuffer.allocate(PacketCodec.MAX_MESSAGE_SIZE);
+    writer.accept(buf);
+    buf.flip();
+    return buf;
+  }
+}
@@ -0,0 +1,75 @@
+package com.lordsofmidnight.server.telemeters;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import com.lordsofmidnight.gamestate.points.Cell;
+import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a single physics update of a headless game. Every agent is a player so no AI runs, and
+ * the agents that are moving are steered down a random open direction whenever they stop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhysicsBenchmark {
+
+  /** The number of agents that are moving, the rest stand still */
+  @Param({"1", "3", "5"})
+  public int movingAgents;
+
+  private HostTelemetry telemetry;
+  private Map map;
+  private Entity[] agents;
+  private Random steering;
+
+  @Setup
+  public void setUp() {
+    map = new Map(MapGenerator.generateNewMap(20, 20, new Random(1)));
+    telemetry =
+        new HostTelemetry(
+            Telemetry.AGENT_COUNT,
+            map,
+            1,
+            new LinkedBlockingQueue<Input>(),
+            null,
+            new GameListener() {
+              @Override
+              public void collisionDetected(Entity newMipsman) {}
+
+              @Override
+              public void finishGame() {}
+            });
+    telemetry.setTime(Integer.MAX_VALUE);
+    agents = telemetry.getAgents();
+    agents[0].setMipsman(true);
+    steering = new Random(1);
+  }
+
+  @Benchmark
+  public void processPhysics() {
+    for (int i = 0; i < movingAgents; i++) {
+      if (agents[i].getDirection() == Direction.STOP) {
+        Direction[] open = map.getValidDirections(Cell.of(agents[i].getLocation(), map));
+        if (open.length > 0) {
+          agents[i].setDirection(open[steering.nextInt(open.length)]);
+        }
+      }
+    }
+    telemetry.processPhysics(
+        agents, map, null, telemetry.getPellets(), telemetry.getActivePowerUps());
+  }
+}
@@ -9,6 +9,7 @@ import com.lordsofmidnight.ai.routefinding.routefinders.NextJunctionRouteFinder;
 import com.lordsofmidnight.ai.routefinding.routefinders.PowerUpBoxPatrolRouteFinder;
 import com.lordsofmidnight.ai.routefinding.routefinders.RandomRouteFinder;
 import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.points.Cell;
 import com.lordsofmidnight.gamestate.points.Point;
 import com.lordsofmidnight.gamestate.points.PointMap;
 import com.lordsofmidnight.gamestate.points.PointSet;
@@ -20,6 +21,7 @@ import com.lordsofmidnight.utils.Methods;
 import com.lordsofmidnight.utils.enums.Direction;
 import com.lordsofmidnight.utils.enums.PowerUps;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
@@ -54,6 +56,8 @@ public class AILoopControl extends Thread {
   private final Map map; // the map being played on
   private final Entity[] gameAgents; // all agents present in the game
   private final PointMap<Pellet> pellets; // the locations of all pellets in the game
+  private final SampleSearch invincibilitySampler; // searches for invincible agents to avoid
+  private final SampleSearch speedSampler; // searches for mipsman before using a speed boost
 
   private ArrayList<Entity>
       newClient; // list of clients to be given AI control when the current full AI agent cycle
@@ -97,6 +101,8 @@ public class AILoopControl extends Thread {
     this.directionsOut = directionsOut;
     this.map = map;
     this.pellets = pellets;
+    this.invincibilitySampler = new SampleSearch(INVINCIBILITY_AVOID_DISTANCE, map);
+    this.speedSampler = new SampleSearch(SPEED_POWER_UP_ACTIVATE_DEPTH, map);
     this.newClient = new ArrayList<>();
     this.removeClient = new ArrayList<>();
     assignControlEntities(controlIds);
@@ -114,23 +120,7 @@ public class AILoopControl extends Thread {
    * @author Lewis Ackroyd
    */
   private static final ArrayList<Direction> getValidDirections(Point p, Map map) {
-    if (!p.isCentered()) {
-      p = p.centralise();
-    }
-    ArrayList<Direction> validDirections = new ArrayList<>();
-    if (Methods.validateDirection(Direction.UP, p, map)) {
-      validDirections.add(Direction.UP);
-    }
-    if (Methods.validateDirection(Direction.DOWN, p, map)) {
-      validDirections.add(Direction.DOWN);
-    }
-    if (Methods.validateDirection(Direction.LEFT, p, map)) {
-      validDirections.add(Direction.LEFT);
-    }
-    if (Methods.validateDirection(Direction.RIGHT, p, map)) {
-      validDirections.add(Direction.RIGHT);
-    }
-    return validDirections;
+    return new ArrayList<>(Arrays.asList(map.getValidDirections(Cell.of(p, map))));
   }
 
   /**
@@ -143,30 +133,7 @@ public class AILoopControl extends Thread {
     System.out.println("Starting AI loop...");
 
     while (runAILoop) {
-      for (Entity ent : controlAgents) { // for all game agents
-        Point currentLocation = ent.getLocation().getCopy();
-        Point currentGridLocation = currentLocation.getGridCoord();
-        if (currentLocation.isCentered()
-            || !ent.getDirection()
-            .isMovementDirection()) { // only when in the centre of a grid square or if
-          // direction is not a movement direction
-          boolean atLastCoord = atPreviousCoordinate(ent, currentGridLocation);
-          if (!ent.getDirection().isMovementDirection() // direction is not a movement direction
-              || !Methods.validateDirection(ent.getDirection(), currentLocation, map)
-              || // movement direction is no longer valid
-              (junctions.contains(currentGridLocation)
-                  && !atLastCoord)) { // at a junction, but not the last coordinate
-            generateNewDirection(ent, currentLocation, currentGridLocation, atLastCoord);
-          }
-          if (!atLastCoord) {
-            processPowerUps(ent, currentGridLocation);
-          }
-        }
-      }
-
-      correctMipsmanRouteFinder();
-
-      updateControlList();
+      step();
 
       try {
         Thread.sleep(SLEEP_TIME);
@@ -177,6 +144,37 @@ public class AILoopControl extends Thread {
     System.out.println("AI safely terminated.");
   }
 
+  /**
+   * Carries out a single full AI agent cycle. Called repeatedly by {@link #run()}, or directly by a
+   * headless game that advances the AI in step with its physics instead of on a separate thread.
+   */
+  public void step() {
+    for (Entity ent : controlAgents) { // for all game agents
+      Point currentLocation = ent.getLocation().getCopy();
+      Point currentGridLocation = currentLocation.getGridCoord();
+      if (currentLocation.isCentered()
+          || !ent.getDirection()
+          .isMovementDirection()) { // only when in the centre of a grid square or if
+        // direction is not a movement direction
+        boolean atLastCoord = atPreviousCoordinate(ent, currentGridLocation);
+        if (!ent.getDirection().isMovementDirection() // direction is not a movement direction
+            || !Methods.validateDirection(ent.getDirection(), currentLocation, map)
+            || // movement direction is no longer valid
+            (junctions.contains(currentGridLocation)
+                && !atLastCoord)) { // at a junction, but not the last coordinate
+          generateNewDirection(ent, currentLocation, currentGridLocation, atLastCoord);
+        }
+        if (!atLastCoord) {
+          processPowerUps(ent, currentGridLocation);
+        }
+      }
+    }
+
+    correctMipsmanRouteFinder();
+
+    updateControlList();
+  }
+
   /**
    * Terminates the AI loop
    *
@@ -520,8 +518,7 @@ public class AILoopControl extends Thread {
       }
     }
     int[] directionValues =
-        new SampleSearch(INVINCIBILITY_AVOID_DISTANCE, map)
-            .getDirectionCounts(position, new InvincibleAgentCondition());
+        invincibilitySampler.getDirectionCounts(position, new InvincibleAgentCondition());
     Random r = new Random();
     int total = 0;
     for (int i : directionValues) {
@@ -602,9 +599,8 @@ public class AILoopControl extends Thread {
                 return position.equals(mipsman.getLocation());
               }
             }
-            SampleSearch sampleSearch = new SampleSearch(SPEED_POWER_UP_ACTIVATE_DEPTH, map);
             int[] mipsmanProximities =
-                sampleSearch.getDirectionCounts(currentLocation, new MipsmanProximityCondition());
+                speedSampler.getDirectionCounts(currentLocation, new MipsmanProximityCondition());
             for (int i : mipsmanProximities) {
               if (i > 0) {
                 ent.setPowerUpUsedFlag(true);
@@ -1,6 +1,7 @@
 package com.lordsofmidnight.ai.mapping;
 
 import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.points.Cell;
 import com.lordsofmidnight.gamestate.points.Point;
 import com.lordsofmidnight.gamestate.points.PointMap;
 import com.lordsofmidnight.gamestate.points.PointSet;
@@ -28,43 +29,22 @@ public abstract class Mapping {
   public static PointSet getJunctions(Map map) {
 
     PointSet junctions = new PointSet(map);
-    Point testPoint = new Point(0, 0);
+    boolean[] isPath = new boolean[4];
     for (int x = 0; x < map.getMaxX(); x++) { // for all points on the map
       for (int y = 0; y < map.getMaxY(); y++) {
-        // left right down up
-        boolean[] isPath = {false, false, false, false};
-        testPoint.setLocation(x, y);
-        if (!map.isWall(testPoint)) { // assumption that anything that is not a wall is moveable
-          if (x > 0) { // left
-            if (!map.isWall(testPoint.moveInDirection(1, Direction.LEFT))) {
-              isPath[0] = true;
-            }
-          }
-          testPoint.setLocation(x, y);
-          if (x < (map.getMaxX() - 1)) { // right
-            if (!map.isWall(testPoint.moveInDirection(1, Direction.RIGHT))) {
-              isPath[1] = true;
-            }
-          }
-          testPoint.setLocation(x, y);
-          if (y > 0) { // down
-            if (!map.isWall(testPoint.moveInDirection(1, Direction.DOWN))) {
-              isPath[2] = true;
-            }
-          }
-          testPoint.setLocation(x, y);
-          if (y < (map.getMaxY() - 1)) { // up
-            if (!map.isWall(testPoint.moveInDirection(1, Direction.UP))) {
-              isPath[3] = true;
-            }
-          }
+        int cell = Cell.of(x, y, map);
+        if (!map.isWall(cell)) { // assumption that anything that is not a wall is moveable
+          // left right down up
+          isPath[0] = x > 0 && !map.isWall(Cell.move(cell, Direction.LEFT, map));
+          isPath[1] = x < (map.getMaxX() - 1) && !map.isWall(Cell.move(cell, Direction.RIGHT, map));
+          isPath[2] = y > 0 && !map.isWall(Cell.move(cell, Direction.DOWN, map));
+          isPath[3] = y < (map.getMaxY() - 1) && !map.isWall(Cell.move(cell, Direction.UP, map));
 
-          testPoint.setLocation(x, y);
           // a point is classified as a junction if there are at least 2 adjacent path
           // points to the current one that between them do not share a common x or y
           // coordinate (i.e. they are diagonal to each other)
           if ((isPath[0] || isPath[1]) && (isPath[2] || isPath[3])) {
-            junctions.add(testPoint.getCopy());
+            junctions.add(new Point(x, y, map));
           }
         }
       }
@@ -224,6 +204,50 @@ public abstract class Mapping {
     return position;
   }
 
+  /**
+   * Finds the next junction from the given cell in the direction given.
+   *
+   * @param cell The packed cell to start from
+   * @param direction The direction to search in
+   * @param map The map that is being traversed
+   * @param junctions The set of junctions on the given {@link Map}
+   * @return The packed cell of the next junction, or the given cell if no junction can be reached
+   * @see Cell
+   */
+  public static int findNextJunction(int cell, Direction direction, Map map, PointSet junctions) {
+    if (!direction.isMovementDirection()) {
+      return cell;
+    }
+    int testCell = cell;
+    while (!map.isWall(testCell)) {
+      if (junctions.contains(testCell)) {
+        return testCell;
+      }
+      int next = Cell.move(testCell, direction, map);
+      if (wrapsAround(testCell, next, direction, map)) {
+        break; // the search stops at the edge of the map
+      }
+      testCell = next;
+    }
+    return cell;
+  }
+
+  /**
+   * @return True if moving between the two neighbouring cells crosses the edge of the map
+   */
+  private static boolean wrapsAround(int from, int to, Direction direction, Map map) {
+    switch (direction) {
+      case UP:
+        return Cell.getY(to, map) > Cell.getY(from, map);
+      case DOWN:
+        return Cell.getY(to, map) < Cell.getY(from, map);
+      case LEFT:
+        return Cell.getX(to, map) > Cell.getX(from, map);
+      default:
+        return Cell.getX(to, map) < Cell.getX(from, map);
+    }
+  }
+
   /**
    * Finds the distance to the nearest junction along the vertical axis from the given {@link
    * Point}.
@@ -1,11 +1,10 @@
 package com.lordsofmidnight.ai.routefinding;
 
 import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.points.Cell;
 import com.lordsofmidnight.gamestate.points.Point;
-import com.lordsofmidnight.gamestate.points.PointSet;
 import com.lordsofmidnight.utils.enums.Direction;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
 
 /**
  * Class that carries out a sample search up to the specified depth on the specified {@link Map}.
@@ -14,11 +13,24 @@ import java.util.Queue;
  */
 public class SampleSearch {
 
+  private static final int INITIAL_QUEUE_SIZE = 64;
+
   private final int sampleDepth;
   private final Map map;
+  private final Point conditionPosition; // reused for every condition check
+  private final int[] visitedOn; // the search each cell was last visited on
+  private int search = 0;
+  // queue of reached but unexpanded cells, stored as a ring buffer
+  private int[] queueCells = new int[INITIAL_QUEUE_SIZE];
+  private int[] queueCosts = new int[INITIAL_QUEUE_SIZE];
+  private int[] queueDirections = new int[INITIAL_QUEUE_SIZE];
+  private int queueHead = 0;
+  private int queueSize = 0;
 
   /**
-   * Initialises the sample search to the specified {@link Map} and depth of search.
+   * Initialises the sample search to the specified {@link Map} and depth of search. The search
+   * keeps its buffers between calls, so a single instance should be reused for repeated searches
+   * on the same thread.
    *
    * @param sampleDepth The depth to perform the searches to
    * @param map The map to perform the searches on
@@ -27,6 +39,8 @@ public class SampleSearch {
   public SampleSearch(int sampleDepth, Map map) {
     this.sampleDepth = sampleDepth;
     this.map = map;
+    this.conditionPosition = new Point(0, 0, map);
+    this.visitedOn = new int[Cell.count(map)];
   }
 
   /**
@@ -44,79 +58,114 @@ public class SampleSearch {
    * @see ConditionalInterface
    */
   public int[] getDirectionCounts(Point position, ConditionalInterface condition) {
-    position = position.getGridCoord();
-    PointSet visited = new PointSet(map);
-    Queue<SampleSearchData> unVisited = new LinkedList<>();
-    SampleSearchData data = new SampleSearchData(position, 0, Direction.STOP);
+    startSearch();
+    int cell = Cell.of(position, map);
+    int cost = 0;
+    int originalDirection;
 
-    visited.add(position); // add start position to visited
+    visitedOn[cell] = search; // add start position to visited
     int[] outArray = {0, 0, 0, 0};
     for (Direction d : Direction.MOVEMENT_DIRECTIONS) {
-      addSingleDirection(position, condition, visited, unVisited, data, outArray, d, d);
+      addSingleDirection(cell, cost, condition, outArray, d, d.toInt());
     }
-
-    if (unVisited.size() > 0) { // there are positions to travel to, start on first position
-      data = unVisited.poll();
-      position = data.getMyPosition();
-      visited.add(position);
+    if (queueSize == 0) {
+      return outArray;
     }
-
-    while ((unVisited.size() > 0)
-        && (data.getCost()
+    // there are positions to travel to, start on first position
+    cell = queueCells[queueHead];
+    cost = queueCosts[queueHead];
+    originalDirection = queueDirections[queueHead];
+    poll();
+    visitedOn[cell] = search;
+
+    while ((queueSize > 0)
+        && (cost
         <= sampleDepth)) { // search until there is nowhere else to search or max depth has been
       // reached
       for (Direction d : Direction.MOVEMENT_DIRECTIONS) {
-        addSingleDirection(
-            position,
-            condition,
-            visited,
-            unVisited,
-            data,
-            outArray,
-            d,
-            data.getOriginalDirection());
+        addSingleDirection(cell, cost, condition, outArray, d, originalDirection);
       }
-      data = unVisited.poll();
-      position = data.getMyPosition();
-      visited.add(position);
+      cell = queueCells[queueHead];
+      cost = queueCosts[queueHead];
+      originalDirection = queueDirections[queueHead];
+      poll();
+      visitedOn[cell] = search;
     }
     return outArray;
   }
 
   /**
-   * Moves from the given point to the next in the direction specified, and if it is not a wall,
-   * adds it to the queue. If the condition specified is met at this point then increases the output
-   * value for the original direction travelled to reach this point.
+   * Moves from the given cell to the next in the direction specified, and if it is not a wall,
+   * adds it to the queue. If the condition specified is met at this cell then increases the output
+   * value for the original direction travelled to reach this cell.
    *
-   * @param position The original position, before being moved.
+   * @param cell The original packed cell, before being moved.
+   * @param cost The cost to reach the original cell
    * @param condition The condition for the search
-   * @param visited The set of all points that have already been expanded by the search
-   * @param unVisited The set of all points that have been reached, but not expanded by the search
-   * @param data The data of the original position
    * @param outArray The array containing all the output values of the search
    * @param d The direction to travel in to generate the next position
-   * @param d2 The direction travelled in at the start of the search that resulted in reaching this
-   * point
+   * @param originalDirection The {@link Direction#toInt()} of the direction travelled in at the
+   * start of the search that resulted in reaching this cell
    * @author Lewis Ackroyd
    */
   private void addSingleDirection(
-      Point position,
+      int cell,
+      int cost,
       ConditionalInterface condition,
-      PointSet visited,
-      Queue<SampleSearchData> unVisited,
-      SampleSearchData data,
       int[] outArray,
       Direction d,
-      Direction d2) {
-    Point nextPos = position.getCopy().moveInDirection(1, d).getGridCoord();
-    if (!map.isWall(nextPos) && !visited.contains(nextPos)) {
-      unVisited.add(new SampleSearchData(nextPos, data.getCost() + 1, d2));
-      if (condition.condition(nextPos)) {
-        outArray[d2.toInt()] += (sampleDepth - data.getCost());
+      int originalDirection) {
+    int nextCell = Cell.move(cell, d, map);
+    if (!map.isWall(nextCell) && visitedOn[nextCell] != search) {
+      add(nextCell, cost + 1, originalDirection);
+      conditionPosition.setLocation(Cell.getX(nextCell, map), Cell.getY(nextCell, map));
+      if (condition.condition(conditionPosition)) {
+        outArray[originalDirection] += (sampleDepth - cost);
       }
     }
   }
 
+  /** Clears the queue and the visited cells ready for a new search */
+  private void startSearch() {
+    queueHead = 0;
+    queueSize = 0;
+    search++;
+    if (search == 0) { // the counter has wrapped, so old searches could be mistaken for this one
+      Arrays.fill(visitedOn, 0);
+      search = 1;
+    }
+  }
+
+  /** Adds a reached cell to the back of the queue, growing the queue if it is full */
+  private void add(int cell, int cost, int originalDirection) {
+    if (queueSize == queueCells.length) {
+      queueCells = grow(queueCells);
+      queueCosts = grow(queueCosts);
+      queueDirections = grow(queueDirections);
+      queueHead = 0;
+    }
+    int tail = (queueHead + queueSize) % queueCells.length;
+    queueCells[tail] = cell;
+    queueCosts[tail] = cost;
+    queueDirections[tail] = originalDirection;
+    queueSize++;
+  }
+
+  /** Removes the cell at the front of the queue */
+  private void poll() {
+    queueHead = (queueHead + 1) % queueCells.length;
+    queueSize--;
+  }
+
+  /** @return A copy of the full ring buffer twice the size, with its front moved to index 0 */
+  private int[] grow(int[] queue) {
+    int[] grown = new int[queue.length * 2];
+    for (int i = 0; i < queueSize; i++) {
+      grown[i] = queue[(queueHead + i) % queue.length];
+    }
+    return grown;
+  }
+
   /**
    * Condition structure for sample search condition.
    *
@@ -126,62 +175,11 @@ public class SampleSearch {
 
     /**
      * The condition must take a given {@link Point} and return True if some condition is met at
-     * this {@link Point}
+     * this {@link Point}. The same {@link Point} is reused for every check, so it must not be kept.
      *
      * @param position The position that the condition is being checked on
      * @return True if the specified condition is met at the given {@link Point}
      */
     boolean condition(Point position);
   }
-
-  /**
-   * Class that stores data on each point that is required to carry out the sample search
-   *
-   * @author Lewis Ackroyd
-   */
-  private final class SampleSearchData {
-
-    private final Point myPosition;
-    private final int moveCost;
-    private final Direction originalDirection;
-
-    /**
-     * Stores the specified data.
-     *
-     * @param myPosition The point of which the data is about
-     * @param moveCost The cost to reach this {@link Point} from the start position
-     * @param originalDirection The direction travelled from the start position to reach this {@link
-     * Point}
-     * @author Lewis Ackroyd
-     */
-    public SampleSearchData(Point myPosition, int moveCost, Direction originalDirection) {
-      this.myPosition = myPosition;
-      this.moveCost = moveCost;
-      this.originalDirection = originalDirection;
-    }
-
-    /**
-     * @return The point of which this data is about
-     * @author Lewis Ackroyd
-     */
-    public Point getMyPosition() {
-      return myPosition;
-    }
-
-    /**
-     * @return The cost to reach this {@link Point} from the start position
-     * @author Lewis Ackroyd
-     */
-    public int getCost() {
-      return moveCost;
-    }
-
-    /**
-     * @return The direction travelled from the start position to reach this {@link Point}
-     * @author Lewis Ackroyd
-     */
-    public Direction getOriginalDirection() {
-      return originalDirection;
-    }
-  }
 }
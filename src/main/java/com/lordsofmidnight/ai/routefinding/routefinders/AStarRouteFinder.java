@@ -18,6 +18,8 @@ public class AStarRouteFinder implements RouteFinder {
   private final PointSet junctions;
   private final PointMap<PointSet> edges;
   private final Map map;
+  private final PointMap<AStarData> visited;
+  private final PointMap<AStarData> unVisited;
 
   /**
    * Initialises the A* for the specified {@link Map} and corresponding junction set and edge
@@ -32,6 +34,8 @@ public class AStarRouteFinder implements RouteFinder {
     this.junctions = junctions;
     this.edges = edges;
     this.map = map;
+    this.visited = new PointMap<>(map);
+    this.unVisited = new PointMap<>(map);
   }
 
   /**
@@ -45,6 +49,8 @@ public class AStarRouteFinder implements RouteFinder {
     this.map = map;
     this.junctions = Mapping.getJunctions(map);
     this.edges = Mapping.getEdges(map, junctions);
+    this.visited = new PointMap<>(map);
+    this.unVisited = new PointMap<>(map);
   }
 
   /**
@@ -73,8 +79,8 @@ public class AStarRouteFinder implements RouteFinder {
     } else {
       targetJunction = Mapping.findNearestJunction(targetLocation, map, junctions).getGridCoord();
     }
-    PointMap<AStarData> visited = new PointMap<>(map);
-    PointMap<AStarData> unVisited = new PointMap<>(map);
+    visited.clear();
+    unVisited.clear();
     visited.put(
         myLocation,
         new AStarData(myLocation, myLocation, 0, heuristicCost(myLocation, targetJunction)));
@@ -95,10 +101,10 @@ public class AStarRouteFinder implements RouteFinder {
         return DEFAULT;
       }
       double lowestCost = Double.MAX_VALUE;
-      for (Point key : unVisited.keySet()) {
-        AStarData data = unVisited.get(key);
+      for (int cell = unVisited.nextCell(0); cell >= 0; cell = unVisited.nextCell(cell + 1)) {
+        AStarData data = unVisited.get(cell);
         if (data.getEstimatedCost() < lowestCost) {
-          currentPoint = key;
+          currentPoint = unVisited.getPoint(cell);
           lowestCost = data.getEstimatedCost();
         }
       }
@@ -23,6 +23,8 @@ public class MipsManRouteFinder implements RouteFinder {
   private final Map map;
   private PointMap<Pellet> pellets;
   private Entity[] gameAgents;
+  private final SampleSearch ghoulSampler;
+  private final SampleSearch powerUpBoxSampler;
 
   /**
    * Initialises this {@link RouteFinder} with the current {@link Map} and objects on it.
@@ -36,6 +38,8 @@ public class MipsManRouteFinder implements RouteFinder {
     this.pellets = pellets;
     this.gameAgents = gameAgents;
     this.map = map;
+    this.ghoulSampler = new SampleSearch(PELLET_SEARCH_DEPTH, map);
+    this.powerUpBoxSampler = new SampleSearch(GHOUL_SEARCH_DEPTH, map);
   }
 
   /**
@@ -50,7 +54,6 @@ public class MipsManRouteFinder implements RouteFinder {
    */
   @Override
   public Direction getRoute(Point myLocation, Point targetLocation) {
-    SampleSearch sampleSearch = new SampleSearch(PELLET_SEARCH_DEPTH, map);
     class GhoulCountCondition implements SampleSearch.ConditionalInterface {
       @Override
       public boolean condition(Point position) {
@@ -64,7 +67,7 @@ public class MipsManRouteFinder implements RouteFinder {
         return false;
       }
     }
-    int[] ghoulCounts = sampleSearch.getDirectionCounts(myLocation, new GhoulCountCondition());
+    int[] ghoulCounts = ghoulSampler.getDirectionCounts(myLocation, new GhoulCountCondition());
 
     class PowerUpBoxCountCondition implements SampleSearch.ConditionalInterface {
       @Override
@@ -78,9 +81,8 @@ public class MipsManRouteFinder implements RouteFinder {
         return false;
       }
     }
-    sampleSearch = new SampleSearch(GHOUL_SEARCH_DEPTH, map);
     int[] powerUpBoxCounts =
-        sampleSearch.getDirectionCounts(myLocation, new PowerUpBoxCountCondition());
+        powerUpBoxSampler.getDirectionCounts(myLocation, new PowerUpBoxCountCondition());
 
     int[] totals = {1, 1, 1, 1};
     for (int i = 0; i < totals.length; i++) {
@@ -19,6 +19,8 @@ public class PowerUpBoxPatrolRouteFinder implements RouteFinder {
   private static final int AVOID_DEPTH = 5;
   private final Map map;
   private final PointMap<Pellet> pellets;
+  private final SampleSearch searchSampler;
+  private final SampleSearch avoidSampler;
 
   /**
    * Initialises this {@link RouteFinder} with the current {@link Map} and {@link Pellet}s on it.
@@ -30,6 +32,8 @@ public class PowerUpBoxPatrolRouteFinder implements RouteFinder {
   public PowerUpBoxPatrolRouteFinder(Map map, PointMap<Pellet> pellets) {
     this.map = map;
     this.pellets = pellets;
+    this.searchSampler = new SampleSearch(SEARCH_DEPTH, map);
+    this.avoidSampler = new SampleSearch(AVOID_DEPTH, map);
   }
 
   /**
@@ -44,8 +48,6 @@ public class PowerUpBoxPatrolRouteFinder implements RouteFinder {
    */
   @Override
   public Direction getRoute(Point myLocation, Point targetLocation) {
-    SampleSearch sampleSearch = new SampleSearch(SEARCH_DEPTH, map);
-
     class PowerUpBoxCountCondition implements SampleSearch.ConditionalInterface {
       @Override
       public boolean condition(Point position) {
@@ -59,10 +61,9 @@ public class PowerUpBoxPatrolRouteFinder implements RouteFinder {
       }
     }
     int[] powerUpBoxAllCounts =
-        sampleSearch.getDirectionCounts(myLocation, new PowerUpBoxCountCondition());
-    sampleSearch = new SampleSearch(AVOID_DEPTH, map);
+        searchSampler.getDirectionCounts(myLocation, new PowerUpBoxCountCondition());
     int[] powerUpBoxAvoidCounts =
-        sampleSearch.getDirectionCounts(myLocation, new PowerUpBoxCountCondition());
+        avoidSampler.getDirectionCounts(myLocation, new PowerUpBoxCountCondition());
 
     int[] totals = {0, 0, 0, 0};
     for (int i = 0; i < powerUpBoxAllCounts.length; i++) {
@@ -29,6 +29,13 @@ public class AudioController {
     clips = loadClips();
   }
 
+  /** Creates a controller without loading any clips, for use by {@link MutedAudioController} */
+  protected AudioController() {
+    mediaPlayer = null;
+    client = -1;
+    clips = new AudioClip[0];
+  }
+
   /**
    * Stops all music players
    */
@@ -0,0 +1,24 @@
+package com.lordsofmidnight.audio;
+
+/**
+ * An audio controller that never plays anything. Used for headless games where there is no one to
+ * listen and the sound clips should not be loaded.
+ */
+public class MutedAudioController extends AudioController {
+
+  public MutedAudioController() {
+    super();
+  }
+
+  @Override
+  public void setMusicVolume(double musicVolume) {}
+
+  @Override
+  public void playSound(Sounds sound, int... id) {}
+
+  @Override
+  public void gameIntro() {}
+
+  @Override
+  public void playMusic(Sounds sound) {}
+}
@@ -0,0 +1,140 @@
+package com.lordsofmidnight.gamestate.maps;
+
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.Entity;
+
+/**
+ * Buckets entities by the {@link Map} cell they are in, so collision checks only need to compare
+ * entities in the same or adjacent cells rather than every pair. Rebuilt every physics update
+ * without allocating: each cell holds the index of its first entity and each entity the index of
+ * the next one in its cell, and only cells that were filled are cleared.
+ */
+public class EntityGrid {
+
+  private static final int EMPTY = -1;
+
+  private final int MAX_X;
+  private final int MAX_Y;
+  private final int[] cellHeads; // first entity in each cell
+  private final int[] next; // next entity in the same cell as each entity
+  private final int[] cells; // cell each entity is in
+  private final int[] filled; // cells that were filled in the last rebuild
+  private int filledCount = 0;
+  private int entityCount = 0;
+
+  /**
+   * @param map The map the entities are on
+   * @param capacity The most entities that will be indexed
+   */
+  public EntityGrid(Map map, int capacity) {
+    this.MAX_X = map.getMaxX();
+    this.MAX_Y = map.getMaxY();
+    this.cellHeads = new int[MAX_X * MAX_Y];
+    this.next = new int[capacity];
+    this.cells = new int[capacity];
+    this.filled = new int[capacity];
+    for (int i = 0; i < cellHeads.length; i++) {
+      cellHeads[i] = EMPTY;
+    }
+  }
+
+  /**
+   * Indexes the current locations of the given entities, replacing the previous index
+   *
+   * @param agents The entities to index, at most the capacity of the grid
+   */
+  public void rebuild(Entity[] agents) {
+    for (int i = 0; i < filledCount; i++) {
+      cellHeads[filled[i]] = EMPTY;
+    }
+    filledCount = 0;
+    entityCount = agents.length;
+    for (int i = 0; i < agents.length; i++) {
+      Point location = agents[i].getLocation();
+      int cell = cellOf((int) location.getX(), (int) location.getY());
+      if (cellHeads[cell] == EMPTY) {
+        filled[filledCount++] = cell;
+      }
+      cells[i] = cell;
+      next[i] = cellHeads[cell];
+      cellHeads[cell] = i;
+    }
+  }
+
+  /**
+   * Finds the entities with a higher index than the given one that are in its cell or any of the
+   * eight around it, wrapping around the edges of the map. These are the only entities close
+   * enough to collide with it. They are given in ascending order so that collisions are processed
+   * in the same order as comparing every pair would.
+   *
+   * @param index The index of the entity in the array given to {@link #rebuild(Entity[])}
+   * @param buffer Filled with the indexes of the nearby entities, must be at least the capacity
+   * @return The number of nearby entities put in the buffer
+   */
+  public int collectLaterNeighbours(int index, int[] buffer) {
+    int cellX = cells[index] % MAX_X;
+    int cellY = cells[index] / MAX_X;
+    int count = 0;
+    for (int dx = -1; dx <= 1; dx++) {
+      for (int dy = -1; dy <= 1; dy++) {
+        int cell = cellOf(cellX + dx, cellY + dy);
+        if (isDuplicateCell(cellX, cellY, dx, dy, cell)) {
+          continue;
+        }
+        for (int j = cellHeads[cell]; j != EMPTY; j = next[j]) {
+          if (j > index) {
+            count = insertSorted(buffer, count, j);
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  /** @return The number of entities in the index */
+  public int size() {
+    return entityCount;
+  }
+
+  /**
+   * Checks if a neighbouring cell has already been visited, which happens when the map is fewer
+   * than three cells across and the neighbours wrap onto each other.
+   */
+  private boolean isDuplicateCell(int cellX, int cellY, int dx, int dy, int cell) {
+    for (int px = -1; px <= dx; px++) {
+      for (int py = -1; py <= 1; py++) {
+        if (px == dx && py >= dy) {
+          return false;
+        }
+        if (cellOf(cellX + px, cellY + py) == cell) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Inserts the value into the sorted start of the buffer
+   *
+   * @return The new number of values in the buffer
+   */
+  private static int insertSorted(int[] buffer, int count, int value) {
+    int i = count;
+    while (i > 0 && buffer[i - 1] > value) {
+      buffer[i] = buffer[i - 1];
+      i--;
+    }
+    buffer[i] = value;
+    return count + 1;
+  }
+
+  /**
+   * @return The cell index of the given grid coordinate, wrapped around the map
+   */
+  private int cellOf(int x, int y) {
+    x = ((x % MAX_X) + MAX_X) % MAX_X;
+    y = ((y % MAX_Y) + MAX_Y) % MAX_Y;
+    return y * MAX_X + x;
+  }
+}
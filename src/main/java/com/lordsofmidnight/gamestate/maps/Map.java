@@ -1,8 +1,10 @@
 package com.lordsofmidnight.gamestate.maps;
 
+import com.lordsofmidnight.gamestate.points.Cell;
 import com.lordsofmidnight.gamestate.points.Point;
 import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.renderer.ResourceLoader;
+import com.lordsofmidnight.utils.enums.Direction;
 import com.lordsofmidnight.utils.enums.MapElement;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -15,10 +17,15 @@ import java.util.Random;
  */
 public class Map {
 
+  /** The movement directions for each exit mask, in the order UP, DOWN, LEFT, RIGHT */
+  private static final Direction[][] EXIT_DIRECTIONS = buildExitDirections();
+
   private final int MAX_X;
   private final int MAX_Y;
 
   private final int[][] MAP;
+  private final long[] WALLS; // one bit per packed cell, set for walls
+  private final byte[] EXITS; // per packed cell, bit Direction.toInt() set if that neighbour is open
   private final ArrayList<Point> SPAWN_POINTS;
 
   private final Random SPAWN_RANDOM;
@@ -34,6 +41,8 @@ public class Map {
     MAP = map_;
     MAX_X = MAP.length;
     MAX_Y = MAP[0].length;
+    WALLS = loadWalls();
+    EXITS = loadExits();
     SPAWN_POINTS = loadSpawnPoints();
     SPAWN_RANDOM = new Random();
   }
@@ -70,17 +79,17 @@ public class Map {
    * @return a serialised map String * @author Tim Cheung
    */
   public static String serialiseMap(Map map) {
-    String serializedMap = "";
+    StringBuilder serializedMap = new StringBuilder();
     int[][] rawMap = map.raw();
     for (int[] row : rawMap) {
       for (int cell : row) {
-        serializedMap += cell + serializedMapDelimiters.CELL_SEPARATOR.delimiter;
+        serializedMap.append(cell).append(serializedMapDelimiters.CELL_SEPARATOR.delimiter);
       }
-      serializedMap = serializedMap.substring(0, serializedMap.length() - 1);
-      serializedMap += serializedMapDelimiters.ROW_END.delimiter;
+      serializedMap.setLength(serializedMap.length() - 1);
+      serializedMap.append(serializedMapDelimiters.ROW_END.delimiter);
     }
-    serializedMap = serializedMap.substring(0, serializedMap.length() - 1);
-    return serializedMap;
+    serializedMap.setLength(serializedMap.length() - 1);
+    return serializedMap.toString();
   }
 
   /**
@@ -106,6 +115,60 @@ public class Map {
     return new Map(deserialisedMap);
   }
 
+  /** @return The direction lists for every exit mask */
+  private static Direction[][] buildExitDirections() {
+    Direction[][] directions = new Direction[1 << Direction.MOVEMENT_DIRECTIONS.length][];
+    for (int mask = 0; mask < directions.length; mask++) {
+      directions[mask] = new Direction[Integer.bitCount(mask)];
+      int i = 0;
+      for (Direction d : Direction.MOVEMENT_DIRECTIONS) {
+        if ((mask & (1 << d.toInt())) != 0) {
+          directions[mask][i++] = d;
+        }
+      }
+    }
+    return directions;
+  }
+
+  /**
+   * called on construction to pack the walls into a bitset indexed by cell
+   *
+   * @return The wall bitset
+   * @see Cell
+   */
+  private long[] loadWalls() {
+    long[] walls = new long[(MAX_X * MAX_Y + 63) >>> 6];
+    for (int x = 0; x < MAX_X; x++) {
+      for (int y = 0; y < MAX_Y; y++) {
+        if (MAP[x][y] == MapElement.WALL.toInt()) {
+          int cell = y * MAX_X + x;
+          walls[cell >>> 6] |= 1L << cell;
+        }
+      }
+    }
+    return walls;
+  }
+
+  /**
+   * called on construction, after the walls are loaded, to find which neighbours of each cell can
+   * be moved into
+   *
+   * @return The exit mask of every cell
+   */
+  private byte[] loadExits() {
+    byte[] exits = new byte[MAX_X * MAX_Y];
+    for (int cell = 0; cell < exits.length; cell++) {
+      int mask = 0;
+      for (Direction d : Direction.MOVEMENT_DIRECTIONS) {
+        if (!isWall(Cell.move(cell, d, this))) {
+          mask |= 1 << d.toInt();
+        }
+      }
+      exits[cell] = (byte) mask;
+    }
+    return exits;
+  }
+
   /**
    * called on construction to find and load spawn point TODO: convert back to SPAWNPOINT.toInt()
    *
@@ -145,9 +208,43 @@ public class Map {
    * @return true if wall, false otherwise
    */
   public boolean isWall(Point point) {
-    Point p =
-        new Point(point.getX(), point.getY(), this); // TODO remove line once all points use mod
-    return MAP[(int) p.getX()][(int) p.getY()] == MapElement.WALL.toInt();
+    return isWall(Cell.of(point, this));
+  }
+
+  /**
+   * @param cell The packed cell to check
+   * @return true if wall, false otherwise
+   * @see Cell
+   */
+  public boolean isWall(int cell) {
+    return (WALLS[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  /**
+   * @param x The x coordinate, wrapped onto the map
+   * @param y The y coordinate, wrapped onto the map
+   * @return true if wall, false otherwise
+   */
+  public boolean isWall(int x, int y) {
+    return isWall(Cell.of(x, y, this));
+  }
+
+  /**
+   * @param cell The packed cell
+   * @return A mask with bit {@link Direction#toInt()} set for each movement direction whose
+   *     neighbouring cell is not a wall, wrapping around the edges of the map
+   */
+  public int getExits(int cell) {
+    return EXITS[cell];
+  }
+
+  /**
+   * @param cell The packed cell
+   * @return The movement directions whose neighbouring cell is not a wall, in the order UP, DOWN,
+   *     LEFT, RIGHT. The array is shared and must not be modified.
+   */
+  public Direction[] getValidDirections(int cell) {
+    return EXIT_DIRECTIONS[EXITS[cell]];
   }
 
   /**
@@ -166,11 +263,23 @@ public class Map {
    * @author Alex Banks
    */
   public Point getRandomSpawnPoint(Entity[] agents) {
+    return getRandomSpawnPoint(agents, SPAWN_RANDOM);
+  }
+
+  /**
+   * Returns random spawnpoint that's not near any other entities, drawn from the given random so
+   * that seeded games place entities the same way each run.
+   *
+   * @param agents The entities to keep away from
+   * @param random The source of randomness to pick with
+   * @return random Point to position entities upon respawn
+   */
+  public Point getRandomSpawnPoint(Entity[] agents, Random random) {
     final int MIN_DIST = 2;
     boolean found = false;
     Point p = null;
     while (!found) {
-      p = SPAWN_POINTS.get(SPAWN_RANDOM.nextInt(SPAWN_POINTS.size()));
+      p = SPAWN_POINTS.get(random.nextInt(SPAWN_POINTS.size()));
       found = true;
       for (Entity agent : agents) {
         if (agent == null) {
@@ -182,7 +291,7 @@ public class Map {
       }
     }
 
-    return p;
+    return p.getCopy(); // spawn points are shared by every game on this map
   }
 
   @Override
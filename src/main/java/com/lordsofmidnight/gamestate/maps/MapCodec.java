@@ -0,0 +1,256 @@
+package com.lordsofmidnight.gamestate.maps;
+
+import com.lordsofmidnight.utils.enums.MapElement;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary form of a {@link Map}, for sending it to clients joining a lobby. After a header
+ * of the format, width, height and the bits needed for a cell, the cells follow column by column
+ * as a stream of bits: a 1 starts a run of up to {@value #MAX_RUN} walls with its length in the
+ * next 8 bits, and a 0 is followed by a single cell's value. Runs too short to be worth it are
+ * written as single cells. A CRC32 of everything before it ends the data, so a corrupted transfer
+ * is never mistaken for a map.
+ *
+ * <p>Maps are identified by the hash of their encoding, and the last few seen are kept so a client
+ * that already has the map doesn't need it sent again.
+ */
+public final class MapCodec {
+
+  /** The version of the format, changed whenever the encoding is */
+  public static final byte FORMAT = 1;
+  /** The most bytes an encoded map can be, larger transfers are refused */
+  public static final int MAX_SIZE = 1 << 20;
+  static final int MAX_RUN = 256;
+  private static final int HEADER_SIZE = 1 + 2 + 2 + 1;
+  private static final int CACHE_SIZE = 8;
+  private static final LinkedHashMap<String, Map> cache =
+      new LinkedHashMap<String, Map>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(java.util.Map.Entry<String, Map> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      };
+
+  private MapCodec() {}
+
+  /**
+   * @param map The map to encode
+   * @return The map in the binary format
+   */
+  public static byte[] encode(Map map) {
+    int[][] cells = map.raw();
+    int width = cells.length;
+    int height = cells[0].length;
+    if (width > 0xFFFF || height > 0xFFFF) {
+      throw new IllegalArgumentException("Map too large: " + width + "x" + height);
+    }
+    int max = 0;
+    for (int[] column : cells) {
+      for (int cell : column) {
+        if (cell < 0) {
+          throw new IllegalArgumentException("Map cells can't be negative: " + cell);
+        }
+        max = Math.max(max, cell);
+      }
+    }
+    int bits = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(max));
+    int wall = MapElement.WALL.toInt();
+
+    // at worst every cell is a flag and a value
+    BitWriter writer = new BitWriter(HEADER_SIZE + (width * height * (bits + 1) + 7) / 8 + 4);
+    writer.bitsPerCell = bits;
+    ByteBuffer buf = writer.buf;
+    buf.put(FORMAT);
+    buf.putShort((short) width);
+    buf.putShort((short) height);
+    buf.put((byte) bits);
+    int run = 0;
+    for (int[] column : cells) {
+      for (int cell : column) {
+        if (cell == wall) {
+          if (++run == MAX_RUN) {
+            writer.writeRun(run, wall);
+            run = 0;
+          }
+          continue;
+        }
+        writer.writeRun(run, wall);
+        run = 0;
+        writer.writeCell(cell);
+      }
+    }
+    writer.writeRun(run, wall);
+    writer.align();
+    CRC32 crc = new CRC32();
+    crc.update(buf.array(), 0, buf.position());
+    buf.putInt((int) crc.getValue());
+    byte[] data = new byte[buf.position()];
+    System.arraycopy(buf.array(), 0, data, 0, data.length);
+    return data;
+  }
+
+  /**
+   * @param data A map in the binary format
+   * @return The map
+   * @throws IllegalArgumentException If the data is not a valid map of this format
+   */
+  public static Map decode(byte[] data) {
+    if (data.length < HEADER_SIZE + 4) {
+      throw new IllegalArgumentException("Map data too short: " + data.length + " bytes");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length - 4);
+    ByteBuffer buf = ByteBuffer.wrap(data);
+    if (buf.getInt(data.length - 4) != (int) crc.getValue()) {
+      throw new IllegalArgumentException("Map checksum does not match");
+    }
+    buf.limit(data.length - 4);
+    if (buf.get() != FORMAT) {
+      throw new IllegalArgumentException("Unknown map format " + data[0]);
+    }
+    int width = buf.getShort() & 0xFFFF;
+    int height = buf.getShort() & 0xFFFF;
+    int bits = buf.get();
+    if (width == 0 || height == 0 || bits < 1 || bits >= Integer.SIZE) {
+      throw new IllegalArgumentException("Invalid map header");
+    }
+    int wall = MapElement.WALL.toInt();
+    int[][] cells = new int[width][height];
+    BitReader reader = new BitReader(buf);
+    int run = 0;
+    for (int x = 0; x < width; x++) {
+      for (int y = 0; y < height; y++) {
+        if (run == 0) {
+          if (reader.read(1) == 1) {
+            run = reader.read(8) + 1;
+          } else {
+            cells[x][y] = reader.read(bits);
+            continue;
+          }
+        }
+        cells[x][y] = wall;
+        run--;
+      }
+    }
+    if (run != 0) {
+      throw new IllegalArgumentException("Map data runs past the last cell");
+    }
+    return new Map(cells);
+  }
+
+  /**
+   * @param data A map in the binary format
+   * @return The hex SHA-256 of the data, which identifies the map
+   */
+  public static String hash(byte[] data) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every JVM has SHA-256
+    }
+  }
+
+  /**
+   * Remembers a map, so it doesn't need to be sent if it is played on again
+   *
+   * @param hash The hash of its encoding
+   * @param map The map
+   */
+  public static void cache(String hash, Map map) {
+    synchronized (cache) {
+      cache.put(hash, map);
+    }
+  }
+
+  /**
+   * @param hash The hash of a map's encoding
+   * @return The map, or null if it isn't one of those remembered
+   */
+  public static Map getCached(String hash) {
+    synchronized (cache) {
+      return cache.get(hash);
+    }
+  }
+
+  /** Writes values of a few bits at a time into a buffer, most significant bit first */
+  private static class BitWriter {
+
+    private final ByteBuffer buf;
+    private int bitsPerCell;
+    private long bits; // waiting to be written, in the low count bits
+    private int count;
+
+    private BitWriter(int capacity) {
+      this.buf = ByteBuffer.allocate(capacity);
+    }
+
+    private void write(int value, int length) {
+      bits = bits << length | (value & (1L << length) - 1);
+      count += length;
+      while (count >= 8) {
+        count -= 8;
+        buf.put((byte) (bits >>> count));
+      }
+    }
+
+    private void writeCell(int cell) {
+      write(0, 1);
+      write(cell, bitsPerCell);
+    }
+
+    /**
+     * @param run The number of walls, up to {@link MapCodec#MAX_RUN}
+     * @param wall The value of a wall
+     */
+    private void writeRun(int run, int wall) {
+      if (run * (1 + bitsPerCell) <= 1 + 8) {
+        for (int i = 0; i < run; i++) {
+          writeCell(wall);
+        }
+      } else {
+        write(1, 1);
+        write(run - 1, 8);
+      }
+    }
+
+    /** Pads the last byte with zeros */
+    private void align() {
+      if (count > 0) {
+        write(0, 8 - count);
+      }
+    }
+  }
+
+  /** Reads values of a few bits at a time from a buffer, most significant bit first */
+  private static class BitReader {
+
+    private final ByteBuffer buf;
+    private long bits;
+    private int count;
+
+    private BitReader(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    private int read(int length) {
+      while (count < length) {
+        if (!buf.hasRemaining()) {
+          throw new IllegalArgumentException("Map data ends before the last cell");
+        }
+        bits = bits << 8 | buf.get() & 0xFF;
+        count += 8;
+      }
+      count -= length;
+      return (int) (bits >>> count & (1L << length) - 1);
+    }
+  }
+}
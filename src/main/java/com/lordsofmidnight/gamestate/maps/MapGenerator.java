@@ -90,7 +90,7 @@ public class MapGenerator {
       avg = avg + i;
     }
     avg = avg / 10;
-    System.out.println(avg / 100000000);
+    System.out.println("average generation time: " + avg / 1e6 + "ms");
   }
 
   /**
@@ -113,10 +113,22 @@ public class MapGenerator {
    * @return the map
    */
   public static int[][] generateNewMap(int x, int y) {
+    return generateNewMap(x, y, new Random());
+  }
+
+  /**
+   * Generates a new map, drawing the map parts from the given random so that seeded generation
+   * produces the same map each run
+   *
+   * @param x the x dimension of the map
+   * @param y the y dimension of the map
+   * @param r the source of randomness for the map parts
+   * @return the map
+   */
+  public static int[][] generateNewMap(int x, int y, Random r) {
     int[][] map = null;
     int c = 0;
     int half = (y + 1) / 2;
-    Random r = new Random();
     while (!validateMap(map)) {
       // System.out.println("attempt " + c++);
       map = new int[x][y];
@@ -0,0 +1,137 @@
+package com.lordsofmidnight.gamestate.points;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.utils.enums.Direction;
+
+/**
+ * Static helpers for grid cells packed into a single int, so that hot paths can work with map
+ * coordinates without creating {@link Point}s. A cell is packed as y * maxX + x, the same key
+ * {@link PointMap} and {@link PointSet} use, and always refers to a position on the map, with
+ * coordinates wrapped around the edges.
+ */
+public final class Cell {
+
+  private Cell() {}
+
+  /**
+   * @param x The x coordinate, wrapped onto the map
+   * @param y The y coordinate, wrapped onto the map
+   * @param map The map the cell is on
+   * @return The packed cell
+   */
+  public static int of(int x, int y, Map map) {
+    return mod(y, map.getMaxY()) * map.getMaxX() + mod(x, map.getMaxX());
+  }
+
+  /**
+   * @param p The point
+   * @param map The map the point is on
+   * @return The packed cell the given {@link Point} lies in, as given by {@link
+   *     Point#getGridCoord()}
+   */
+  public static int of(Point p, Map map) {
+    return of((int) Math.floor(p.getX()), (int) Math.floor(p.getY()), map);
+  }
+
+  /**
+   * Finds the cell a {@link Point} would lie in after being moved, without moving it.
+   *
+   * @param p The point
+   * @param direction The direction to move in
+   * @param offset The distance to move
+   * @param map The map the point is on
+   * @return The packed cell of the moved point
+   * @see Point#moveInDirection(double, Direction)
+   */
+  public static int of(Point p, Direction direction, double offset, Map map) {
+    double x = p.getX();
+    double y = p.getY();
+    if (direction != null) {
+      switch (direction) {
+        case UP:
+          y -= offset;
+          break;
+        case DOWN:
+          y += offset;
+          break;
+        case LEFT:
+          x -= offset;
+          break;
+        case RIGHT:
+          x += offset;
+          break;
+      }
+    }
+    return of((int) Math.floor(x), (int) Math.floor(y), map);
+  }
+
+  /**
+   * @param cell The packed cell
+   * @param map The map the cell is on
+   * @return The x coordinate of the cell
+   */
+  public static int getX(int cell, Map map) {
+    return cell % map.getMaxX();
+  }
+
+  /**
+   * @param cell The packed cell
+   * @param map The map the cell is on
+   * @return The y coordinate of the cell
+   */
+  public static int getY(int cell, Map map) {
+    return cell / map.getMaxX();
+  }
+
+  /**
+   * @param map The map
+   * @return The number of cells on the map, every packed cell is below this
+   */
+  public static int count(Map map) {
+    return map.getMaxX() * map.getMaxY();
+  }
+
+  /**
+   * Finds the neighbouring cell in the given direction, wrapping around the edges of the map.
+   *
+   * @param cell The packed cell
+   * @param direction The direction to move in, directions that aren't for movement stay put
+   * @param map The map the cell is on
+   * @return The packed neighbouring cell
+   */
+  public static int move(int cell, Direction direction, Map map) {
+    int x = getX(cell, map);
+    int y = getY(cell, map);
+    switch (direction) {
+      case UP:
+        return of(x, y - 1, map);
+      case DOWN:
+        return of(x, y + 1, map);
+      case LEFT:
+        return of(x - 1, y, map);
+      case RIGHT:
+        return of(x + 1, y, map);
+      default:
+        return cell;
+    }
+  }
+
+  /**
+   * @param value The value to wrap
+   * @param max The size of the map along the value's axis
+   * @return The value wrapped to between 0 inclusive and max exclusive
+   */
+  public static int mod(int value, int max) {
+    value %= max;
+    return value < 0 ? value + max : value;
+  }
+
+  /**
+   * @param cell The packed cell
+   * @param map The map the cell is on
+   * @return A new {@link Point} at the grid coordinate of the cell
+   */
+  public static Point toPoint(int cell, Map map) {
+    return new Point(getX(cell, map), getY(cell, map), map);
+  }
+}
@@ -0,0 +1,123 @@
+package com.lordsofmidnight.gamestate.points;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A bitset of packed cells that can be emptied in constant time. Every word remembers the
+ * generation it was last written in, and emptying the set just starts a new generation, so words
+ * left over from an earlier generation read as empty.
+ *
+ * @see Cell
+ */
+final class CellBits implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+  private final int capacity;
+  private final long[] words;
+  private final int[] generations;
+  private int generation = 0;
+  private int size = 0;
+
+  /** @param capacity The number of cells, every cell held must be below this */
+  CellBits(int capacity) {
+    this.capacity = capacity;
+    this.words = new long[(capacity + 63) >>> 6];
+    this.generations = new int[words.length];
+  }
+
+  /**
+   * @param cell The packed cell
+   * @return True if the cell is in the set, false if it isn't or is outside the set's capacity
+   */
+  boolean get(int cell) {
+    if (cell < 0 || cell >= capacity) {
+      return false;
+    }
+    return (word(cell >>> 6) & (1L << cell)) != 0;
+  }
+
+  /**
+   * @param cell The packed cell, within the set's capacity
+   * @return True if the cell was not already in the set
+   */
+  boolean set(int cell) {
+    int index = cell >>> 6;
+    long word = word(index);
+    long bit = 1L << cell;
+    if ((word & bit) != 0) {
+      return false;
+    }
+    words[index] = word | bit;
+    generations[index] = generation;
+    size++;
+    return true;
+  }
+
+  /**
+   * @param cell The packed cell
+   * @return True if the cell was in the set
+   */
+  boolean clear(int cell) {
+    if (!get(cell)) {
+      return false;
+    }
+    int index = cell >>> 6;
+    words[index] &= ~(1L << cell);
+    size--;
+    return true;
+  }
+
+  /** Empties the set without touching its words */
+  void clear() {
+    if (generation == Integer.MAX_VALUE) {
+      // the generation is about to wrap, so old words could look current again
+      Arrays.fill(words, 0L);
+      Arrays.fill(generations, 0);
+      generation = 0;
+    } else {
+      generation++;
+    }
+    size = 0;
+  }
+
+  /**
+   * @param from The cell to start looking from, inclusive
+   * @return The lowest cell in the set at or after the given cell, -1 if there is none
+   */
+  int next(int from) {
+    if (from < 0) {
+      from = 0;
+    }
+    if (from >= capacity) {
+      return -1;
+    }
+    int index = from >>> 6;
+    long word = word(index) & (-1L << from);
+    while (word == 0) {
+      if (++index == words.length) {
+        return -1;
+      }
+      word = word(index);
+    }
+    return (index << 6) + Long.numberOfTrailingZeros(word);
+  }
+
+  /** @return The number of cells in the set */
+  int size() {
+    return size;
+  }
+
+  /** @return The number of cells the set can hold */
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * @param index The index of the word
+   * @return The word, or empty if it was last written before the set was emptied
+   */
+  private long word(int index) {
+    return generations[index] == generation ? words[index] : 0L;
+  }
+}
@@ -237,8 +237,47 @@ public class Point {
    * @author Alex Banks
    */
   public boolean inRange(Point p) {
-    Point temp = new Point(this.x - p.getX(), this.y - p.getY(), this.MAX_X, this.MAX_Y);
-    return (abs(temp.getX()) <= 0.5 && abs(temp.getY()) <= 0.5);
+    return near(x - p.getX(), y - p.getY(), MAX_X, MAX_Y);
+  }
+
+  /**
+   * check if a position is close to a point, as a point at the position would find with {@link
+   * #inRange(Point)}, without needing a point for the position
+   *
+   * @param x The x coordinate of the position
+   * @param y The y coordinate of the position
+   * @param p point to check against
+   * @return true if within 0.5 in x and y direction
+   */
+  public static boolean inRange(double x, double y, Point p) {
+    return near(x - p.getX(), y - p.getY(), p.MAX_X, p.MAX_Y);
+  }
+
+  /**
+   * @param dx The difference in x
+   * @param dy The difference in y
+   * @param maxX MAX_X of the point the difference is from
+   * @param maxY MAX_Y of the point the difference is from
+   * @return true if within 0.5 in x and y direction
+   */
+  private static boolean near(double dx, double dy, int maxX, int maxY) {
+    if (maxX > 0 && maxY > 0) { // same as mod() without creating a temporary point
+      dx = wrap(dx, maxX);
+      dy = wrap(dy, maxY);
+    }
+    return (abs(dx) <= 0.5 && abs(dy) <= 0.5);
+  }
+
+  /**
+   * @param value The value to wrap
+   * @param max The size of the map in that direction
+   * @return The value wrapped around to between 0 and max
+   */
+  private static double wrap(double value, int max) {
+    while (value < 0) {
+      value += max;
+    }
+    return value % max;
   }
 
   /** @return The point in string form */
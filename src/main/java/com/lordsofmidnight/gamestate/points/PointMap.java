@@ -1,11 +1,14 @@
 package com.lordsofmidnight.gamestate.points;
 
 import java.io.Serializable;
+import java.util.AbstractCollection;
 import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -14,13 +17,23 @@ import java.util.Set;
  * This will treat each {@link Point} as the grid coordinate {@link Point} as given by {@link
  * Point#getGridCoord()}.
  *
+ * <p>Values are held in an array indexed by the packed {@link Cell} of their key, so lookups don't
+ * box and {@link #clear()} only visits the cells held. {@link #keySet()}, {@link #values()} and {@link
+ * #entrySet()} are live views rather than copies, and the cells held can be walked without
+ * allocating using {@link #nextCell(int)}, {@link #getPoint(int)} and {@link #get(int)}.
+ *
  * @author Lewis Ackroyd
  */
 public class PointMap<V> extends AbstractMap<Point, V>
     implements Map<Point, V>, Cloneable, Serializable {
   private final int MAX_X;
-  private final HashMap<Integer, V> map;
-  private final HashMap<Integer, Point> keyMappings;
+  private final int MAX_Y;
+  private final CellBits cells;
+  private final Object[] map;
+  private final Point[] keyMappings;
+  private transient Set<Point> keyView;
+  private transient Collection<V> valueView;
+  private transient Set<Entry<Point, V>> entryView;
 
   /**
    * Initialises this Map according to the paramaters of the {@link
@@ -30,21 +43,22 @@ public class PointMap<V> extends AbstractMap<Point, V>
    * @author Lewis Ackroyd
    */
   public PointMap(com.lordsofmidnight.gamestate.maps.Map map) {
-    this.MAX_X = map.getMaxX();
-    this.map = new HashMap<>();
-    this.keyMappings = new HashMap<>();
+    this(map.getMaxX(), map.getMaxY());
   }
 
   /**
-   * Initialises this Map by using the specified value as the size of the x-axis.
+   * Initialises this Map by using the specified values as the size of the axes.
    *
    * @param maxX The maximum xValue of any points being passed to this map
+   * @param maxY The maximum yValue of any points being passed to this map
    * @author Lewis Ackroyd
    */
-  private PointMap(int maxX) {
+  private PointMap(int maxX, int maxY) {
     this.MAX_X = maxX;
-    this.map = new HashMap<>();
-    this.keyMappings = new HashMap<>();
+    this.MAX_Y = maxY;
+    this.cells = new CellBits(maxX * maxY);
+    this.map = new Object[maxX * maxY];
+    this.keyMappings = new Point[maxX * maxY];
   }
 
   /**
@@ -53,13 +67,17 @@ public class PointMap<V> extends AbstractMap<Point, V>
    * @author Lewis Ackroyd
    */
   public PointMap<V> getShallowClone() {
-    return new PointMap<V>(MAX_X);
+    return new PointMap<V>(MAX_X, MAX_Y);
   }
 
+  /** Empties the map, letting go of the keys and values it held */
   @Override
   public void clear() {
-    map.clear();
-    keyMappings.clear();
+    for (int cell = cells.next(0); cell >= 0; cell = cells.next(cell + 1)) {
+      map[cell] = null;
+      keyMappings[cell] = null;
+    }
+    cells.clear();
   }
 
   @Override
@@ -69,12 +87,26 @@ public class PointMap<V> extends AbstractMap<Point, V>
     }
     Point p = (Point) key;
     int value = getKeyValue(p);
-    return map.containsKey(value);
+    return cells.get(value);
+  }
+
+  /**
+   * @param cell The packed cell of the key
+   * @return True if the map holds a value for the cell
+   * @see Cell
+   */
+  public boolean containsKey(int cell) {
+    return cells.get(cell);
   }
 
   @Override
   public boolean containsValue(Object value) {
-    return map.containsValue(value);
+    for (int cell = cells.next(0); cell >= 0; cell = cells.next(cell + 1)) {
+      if (Objects.equals(value, map[cell])) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @Override
@@ -84,7 +116,17 @@ public class PointMap<V> extends AbstractMap<Point, V>
     }
     Point p = (Point) key;
     int value = getKeyValue(p);
-    return map.get(value);
+    return get(value);
+  }
+
+  /**
+   * @param cell The packed cell of the key
+   * @return The value held for the cell, null if there is none
+   * @see Cell
+   */
+  @SuppressWarnings("unchecked")
+  public V get(int cell) {
+    return cells.get(cell) ? (V) map[cell] : null;
   }
 
   @Override
@@ -94,29 +136,64 @@ public class PointMap<V> extends AbstractMap<Point, V>
     }
     Point p = (Point) key;
     int value = getKeyValue(p);
-    return map.getOrDefault(value, defaultValue);
+    return cells.get(value) ? get(value) : defaultValue;
   }
 
   @Override
   public boolean isEmpty() {
-    return map.isEmpty();
+    return cells.size() == 0;
   }
 
   @Override
   public Set<Point> keySet() {
-    Set<Integer> valueSet = map.keySet();
-    Set<Point> pointSet = new HashSet<>();
-    for (int value : valueSet) {
-      pointSet.add(getPointFromKey(value));
+    if (keyView == null) {
+      keyView =
+          new AbstractSet<Point>() {
+            @Override
+            public Iterator<Point> iterator() {
+              return new CellIterator<Point>() {
+                @Override
+                Point at(int cell) {
+                  return keyMappings[cell];
+                }
+              };
+            }
+
+            @Override
+            public int size() {
+              return cells.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+              return containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+              return o instanceof Point && removeCell(getKeyValue((Point) o));
+            }
+
+            @Override
+            public void clear() {
+              PointMap.this.clear();
+            }
+          };
     }
-    return pointSet;
+    return keyView;
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public V put(Point p, V data) {
     int keyValue = getKeyValue(p);
-    keyMappings.put(keyValue, p);
-    return map.put(keyValue, data);
+    if (keyValue < 0) {
+      throw new IllegalArgumentException("Point " + p + " is not on the map");
+    }
+    V old = cells.set(keyValue) ? null : (V) map[keyValue];
+    keyMappings[keyValue] = p;
+    map[keyValue] = data;
+    return old;
   }
 
   @Override
@@ -126,53 +203,122 @@ public class PointMap<V> extends AbstractMap<Point, V>
     }
     Point p = (Point) o;
     int key = getKeyValue(p);
-    keyMappings.remove(key);
-    return map.remove(key);
+    V old = get(key);
+    removeCell(key);
+    return old;
   }
 
   @Override
   public int size() {
-    return map.size();
+    return cells.size();
   }
 
   @Override
   public Collection<V> values() {
-    return map.values();
+    if (valueView == null) {
+      valueView =
+          new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+              return new CellIterator<V>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                V at(int cell) {
+                  return (V) map[cell];
+                }
+              };
+            }
+
+            @Override
+            public int size() {
+              return cells.size();
+            }
+
+            @Override
+            public void clear() {
+              PointMap.this.clear();
+            }
+          };
+    }
+    return valueView;
   }
 
   @Override
   public Set<Entry<Point, V>> entrySet() {
     class PointMapEntry implements Map.Entry<Point, V> {
-      private final Point key;
-      private V value;
+      private final int cell;
 
-      public PointMapEntry(Point point, V value) {
-        this.key = point;
-        this.value = value;
+      public PointMapEntry(int cell) {
+        this.cell = cell;
       }
 
       @Override
       public Point getKey() {
-        return key;
+        return keyMappings[cell];
       }
 
       @Override
+      @SuppressWarnings("unchecked")
       public V getValue() {
-        return value;
+        return (V) map[cell];
       }
 
       @Override
       public V setValue(V value) {
-        V oldValue = value;
-        this.value = value;
+        V oldValue = getValue();
+        map[cell] = value;
         return oldValue;
       }
     }
-    Set<Entry<Point, V>> returnSet = new HashSet<>();
-    for (Point p : keySet()) {
-      returnSet.add(new PointMapEntry(p, get(p)));
+    if (entryView == null) {
+      entryView =
+          new AbstractSet<Entry<Point, V>>() {
+            @Override
+            public Iterator<Entry<Point, V>> iterator() {
+              return new CellIterator<Entry<Point, V>>() {
+                @Override
+                Entry<Point, V> at(int cell) {
+                  return new PointMapEntry(cell);
+                }
+              };
+            }
+
+            @Override
+            public int size() {
+              return cells.size();
+            }
+
+            @Override
+            public void clear() {
+              PointMap.this.clear();
+            }
+          };
     }
-    return returnSet;
+    return entryView;
+  }
+
+  /**
+   * Finds the next cell held by the map, for walking the map without allocating:
+   *
+   * <pre>
+   * for (int cell = map.nextCell(0); cell >= 0; cell = map.nextCell(cell + 1))
+   * </pre>
+   *
+   * @param from The packed cell to start looking from, inclusive
+   * @return The lowest packed cell held at or after the given one, -1 if there is none
+   * @see Cell
+   */
+  public int nextCell(int from) {
+    return cells.next(from);
+  }
+
+  /**
+   * @param cell The packed cell
+   * @return The key that was put for the cell, null if the map doesn't hold the cell
+   * @see Cell
+   */
+  public Point getPoint(int cell) {
+    return cells.get(cell) ? keyMappings[cell] : null;
   }
 
   /*@Override
@@ -187,26 +333,74 @@ public class PointMap<V> extends AbstractMap<Point, V>
     return this.map.equals(pm.map);
   }*/
 
+  /**
+   * @param cell The packed cell to remove
+   * @return True if the map held the cell
+   */
+  private boolean removeCell(int cell) {
+    if (!cells.clear(cell)) {
+      return false;
+    }
+    map[cell] = null;
+    keyMappings[cell] = null;
+    return true;
+  }
+
   /**
    * Calculates the key value that will be used for a given point within the map.
    *
    * @param p The point being used as a key
-   * @return The key value to be used by the internal map
+   * @return The key value to be used by the internal map, -1 if the point is off the map
    * @author Lewis Ackroyd
    */
   private int getKeyValue(Point p) {
-    p = p.getGridCoord();
-    return (((int) p.getY()) * MAX_X) + (int) p.getX();
+    int x = (int) p.getX();
+    int y = (int) p.getY();
+    if (x < 0 || x >= MAX_X || y < 0 || y >= MAX_Y) {
+      return -1;
+    }
+    return (y * MAX_X) + x; // same as using p.getGridCoord()
   }
 
   /**
-   * Calculates the point that generates the given key.
+   * Iterates over the held cells in order. Cells added or removed ahead of the iterator while
+   * iterating are seen or skipped respectively.
    *
-   * @param key The key used for the internal map
-   * @return The point that generated this key
-   * @author Lewis Ackroyd
+   * @param <T> The type produced for each cell
    */
-  private Point getPointFromKey(int key) {
-    return keyMappings.get(key);
+  private abstract class CellIterator<T> implements Iterator<T> {
+
+    private int nextCell = cells.next(0);
+    private int lastCell = -1;
+
+    /**
+     * @param cell The packed cell
+     * @return The element for the cell
+     */
+    abstract T at(int cell);
+
+    @Override
+    public boolean hasNext() {
+      return nextCell >= 0;
+    }
+
+    @Override
+    public T next() {
+      if (nextCell < 0) {
+        throw new NoSuchElementException();
+      }
+      lastCell = nextCell;
+      nextCell = cells.next(nextCell + 1);
+      return at(lastCell);
+    }
+
+    @Override
+    public void remove() {
+      if (lastCell < 0) {
+        throw new IllegalStateException();
+      }
+      removeCell(lastCell);
+      lastCell = -1;
+    }
   }
 }
@@ -4,9 +4,8 @@ import com.lordsofmidnight.gamestate.maps.Map;
 import java.io.Serializable;
 import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -14,13 +13,18 @@ import java.util.Set;
  * java.util.Set Set}<{@link Point}>. This will treat each {@link Point} as the grid coordinate
  * {@link Point} as given by {@link Point#getGridCoord()}.
  *
+ * <p>Points are held in a bitset indexed by their packed {@link Cell}, so lookups don't box and
+ * {@link #clear()} only visits the cells held. The cells held can be walked without allocating
+ * using {@link #nextCell(int)} and {@link #getPoint(int)}.
+ *
  * @author Lewis Ackroyd
  */
 public class PointSet extends AbstractSet<Point> implements Set<Point>, Cloneable, Serializable {
 
-  private final HashSet<Integer> points;
-  private final HashMap<Integer, Point> keyMappings;
+  private final CellBits cells;
+  private final Point[] keyMappings;
   private final int MAX_X;
+  private final int MAX_Y;
 
   /**
    * Initialises this Map according to the paramaters of the {@link Map}.
@@ -29,21 +33,21 @@ public class PointSet extends AbstractSet<Point> implements Set<Point>, Cloneabl
    * @author Lewis Ackroyd
    */
   public PointSet(Map map) {
-    this.MAX_X = map.getMaxX();
-    this.points = new HashSet<>();
-    this.keyMappings = new HashMap<>();
+    this(map.getMaxX(), map.getMaxY());
   }
 
   /**
-   * Initialises this Map by using the specified value as the size of the x-axis.
+   * Initialises this Map by using the specified values as the size of the axes.
    *
    * @param maxX The maximum xValue of any points being passed to this map
+   * @param maxY The maximum yValue of any points being passed to this map
    * @author Lewis Ackroyd
    */
-  private PointSet(int maxX) {
+  private PointSet(int maxX, int maxY) {
     this.MAX_X = maxX;
-    this.points = new HashSet<>();
-    this.keyMappings = new HashMap<>();
+    this.MAX_Y = maxY;
+    this.cells = new CellBits(maxX * maxY);
+    this.keyMappings = new Point[maxX * maxY];
   }
 
   /**
@@ -52,32 +56,42 @@ public class PointSet extends AbstractSet<Point> implements Set<Point>, Cloneabl
    * @author Lewis Ackroyd
    */
   public PointSet getShallowClone() {
-    return new PointSet(MAX_X);
+    return new PointSet(MAX_X, MAX_Y);
   }
 
   @Override
   public boolean contains(Object o) {
     if (o instanceof Point) {
       Point p = (Point) o;
-      return points.contains(getKeyValue(p));
+      return cells.get(getKeyValue(p));
     }
     return false;
   }
 
+  /**
+   * @param cell The packed cell
+   * @return True if the set holds a point in the cell
+   * @see Cell
+   */
+  public boolean contains(int cell) {
+    return cells.get(cell);
+  }
+
   @Override
   public boolean add(Point p) {
     int key = getKeyValue(p);
-    keyMappings.put(key, p);
-    return points.add(key);
+    if (key < 0) {
+      throw new IllegalArgumentException("Point " + p + " is not on the map");
+    }
+    keyMappings[key] = p;
+    return cells.set(key);
   }
 
   @Override
   public boolean remove(Object o) {
     if (o instanceof Point) {
       Point p = (Point) o;
-      int key = getKeyValue(p);
-      keyMappings.remove(key);
-      return points.remove(key);
+      return removeCell(getKeyValue(p));
     }
     return false;
   }
@@ -118,9 +132,9 @@ public class PointSet extends AbstractSet<Point> implements Set<Point>, Cloneabl
       return false;
     }
     boolean changed = false;
-    for (Point p : this) {
-      if (!collection.contains(p)) {
-        remove(p);
+    for (int cell = cells.next(0); cell >= 0; cell = cells.next(cell + 1)) {
+      if (!collection.contains(keyMappings[cell])) {
+        removeCell(cell);
         changed = true;
       }
     }
@@ -152,10 +166,10 @@ public class PointSet extends AbstractSet<Point> implements Set<Point>, Cloneabl
 
   @Override
   public Point[] toArray() {
-    Point[] pointsArray = new Point[points.size()];
+    Point[] pointsArray = new Point[cells.size()];
     int index = 0;
-    for (int key : points) {
-      pointsArray[index] = getPointFromKey(key);
+    for (int cell = cells.next(0); cell >= 0; cell = cells.next(cell + 1)) {
+      pointsArray[index] = keyMappings[cell];
       index++;
     }
     return pointsArray;
@@ -163,54 +177,93 @@ public class PointSet extends AbstractSet<Point> implements Set<Point>, Cloneabl
 
   @Override
   public int size() {
-    return points.size();
+    return cells.size();
   }
 
+  /** Empties the set, letting go of the points it held */
   @Override
   public void clear() {
-    keyMappings.clear();
-    points.clear();
+    for (int cell = cells.next(0); cell >= 0; cell = cells.next(cell + 1)) {
+      keyMappings[cell] = null;
+    }
+    cells.clear();
   }
 
   @Override
   public boolean isEmpty() {
-    return points.isEmpty();
+    return cells.size() == 0;
   }
 
   @Override
   public PointSet clone() {
-    PointSet outSet = new PointSet(MAX_X);
-    for (int key : points) {
-      outSet.add(getPointFromKey(key));
+    PointSet outSet = new PointSet(MAX_X, MAX_Y);
+    for (int cell = cells.next(0); cell >= 0; cell = cells.next(cell + 1)) {
+      outSet.keyMappings[cell] = keyMappings[cell];
+      outSet.cells.set(cell);
     }
     return outSet;
   }
 
-  @Override
-  public Iterator iterator() {
-    class PointSetIterator implements Iterator {
+  /**
+   * Finds the next cell held by the set, for walking the set without allocating:
+   *
+   * <pre>
+   * for (int cell = set.nextCell(0); cell >= 0; cell = set.nextCell(cell + 1))
+   * </pre>
+   *
+   * @param from The packed cell to start looking from, inclusive
+   * @return The lowest packed cell held at or after the given one, -1 if there is none
+   * @see Cell
+   */
+  public int nextCell(int from) {
+    return cells.next(from);
+  }
 
-      private final Point[] points;
-      private int currentIndex;
+  /**
+   * @param cell The packed cell
+   * @return The point that was added for the cell, null if the set doesn't hold the cell
+   * @see Cell
+   */
+  public Point getPoint(int cell) {
+    return cells.get(cell) ? keyMappings[cell] : null;
+  }
 
-      public PointSetIterator(PointSet ps) {
-        points = ps.toArray();
-        currentIndex = 0;
-      }
+  /**
+   * Iterates over the points in order of their cells. Points added or removed ahead of the
+   * iterator while iterating are seen or skipped respectively.
+   */
+  @Override
+  public Iterator<Point> iterator() {
+    class PointSetIterator implements Iterator<Point> {
+
+      private int nextCell = cells.next(0);
+      private int lastCell = -1;
 
       @Override
       public boolean hasNext() {
-        return currentIndex < points.length;
+        return nextCell >= 0;
       }
 
       @Override
       public Point next() {
-        Point nextPoint = points[currentIndex];
-        currentIndex++;
-        return nextPoint;
+        if (nextCell < 0) {
+          throw new NoSuchElementException();
+        }
+        lastCell = nextCell;
+        nextCell = cells.next(nextCell + 1);
+        return keyMappings[lastCell];
+      }
+
+      @Override
+      public void remove() {
+        if (lastCell < 0) {
+          throw new IllegalStateException();
+        }
+        removeCell(lastCell);
+        lastCell = -1;
       }
     }
-    return new PointSetIterator(this);
+    return new PointSetIterator();
   }
 
   /*@Override
@@ -226,25 +279,30 @@ public class PointSet extends AbstractSet<Point> implements Set<Point>, Cloneabl
   }*/
 
   /**
-   * Calculates the key value that will be used for a given point within the map.
-   *
-   * @param p The point being used as a key
-   * @return The key value to be used by the internal map
-   * @author Lewis Ackroyd
+   * @param cell The packed cell to remove
+   * @return True if the set held the cell
    */
-  private int getKeyValue(Point p) {
-    p = p.getGridCoord();
-    return (((int) p.getY()) * MAX_X) + (int) p.getX();
+  private boolean removeCell(int cell) {
+    if (!cells.clear(cell)) {
+      return false;
+    }
+    keyMappings[cell] = null;
+    return true;
   }
 
   /**
-   * Calculates the point that generates the given key.
+   * Calculates the key value that will be used for a given point within the map.
    *
-   * @param key The key used for the internal map
-   * @return The point that generated this key
+   * @param p The point being used as a key
+   * @return The key value to be used by the internal map, -1 if the point is off the map
    * @author Lewis Ackroyd
    */
-  private Point getPointFromKey(int key) {
-    return keyMappings.get(key);
+  private int getKeyValue(Point p) {
+    int x = (int) p.getX();
+    int y = (int) p.getY();
+    if (x < 0 || x >= MAX_X || y < 0 || y >= MAX_Y) {
+      return -1;
+    }
+    return (y * MAX_X) + x; // same as using p.getGridCoord()
   }
 }
@@ -10,9 +10,12 @@ import com.lordsofmidnight.renderer.EndGameScreen;
 import com.lordsofmidnight.renderer.Renderer;
 import com.lordsofmidnight.renderer.ResourceLoader;
 import com.lordsofmidnight.server.ClientLobbySession;
+import com.lordsofmidnight.server.NetworkStats;
+import com.lordsofmidnight.server.NetworkUtility;
 import com.lordsofmidnight.server.ServerGameplayHandler;
 import com.lordsofmidnight.server.ServerLobby;
 import com.lordsofmidnight.server.telemeters.DumbTelemetry;
+import com.lordsofmidnight.server.telemeters.GameListener;
 import com.lordsofmidnight.server.telemeters.HostTelemetry;
 import com.lordsofmidnight.server.telemeters.Telemetry;
 import com.lordsofmidnight.ui.GameSceneController;
@@ -22,8 +25,9 @@ import com.lordsofmidnight.utils.Methods;
 import com.lordsofmidnight.utils.Settings;
 import com.lordsofmidnight.utils.enums.Direction;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
 import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import javafx.animation.AnimationTimer;
@@ -34,7 +38,7 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 
-public class Client extends Application {
+public class Client extends Application implements GameListener {
 
   public boolean isHost;
   public boolean hostGone = false;
@@ -55,7 +59,7 @@ public class Client extends Application {
   private ServerGameplayHandler serverGameplayHandler;
   private MenuController menuController;
   private ClientLobbySession clientLobbySession;
-  private Queue<String> clientIn;
+  private Queue<ByteBuffer> clientIn;
   private Queue<Input> keypressQueue;
   private boolean singlePlayer = false;
   private BlockingQueue<Input> incomingQueue; // only used in single player
@@ -66,6 +70,7 @@ public class Client extends Application {
   private GameSceneController gameSceneController;
   private Scene mainMenu;
   private boolean gameStarted = false;
+  private boolean showNetworkStats = false;
   private EndGameScreen endGameScreen;
 
   /**
@@ -158,7 +163,7 @@ public class Client extends Application {
     System.out.println("Created multiplayer lobby");
     isHost = true;
 
-    clientIn = new LinkedList<>();
+    clientIn = new ArrayBlockingQueue<>(NetworkUtility.QUEUE_CAPACITY);
     // outgoing keypressQueue for local client
     keypressQueue = new LinkedBlockingQueue<>();
     try {
@@ -175,7 +180,7 @@ public class Client extends Application {
   public void joinMultiplayerLobby() {
     // map = resourceLoader.getMap();
     isHost = false;
-    clientIn = new LinkedBlockingQueue<>();
+    clientIn = new ArrayBlockingQueue<>(NetworkUtility.QUEUE_CAPACITY);
     keypressQueue = new LinkedBlockingQueue<>();
     try {
       clientLobbySession =
@@ -212,18 +217,27 @@ public class Client extends Application {
     if (isHost) {
       System.out.println("Starting multiplayer for host");
       BlockingQueue<Input> inputQueue = new LinkedBlockingQueue<>();
-      BlockingQueue<String> outputQueue = new LinkedBlockingQueue<>();
+      BlockingQueue<ByteBuffer> outputQueue =
+          new ArrayBlockingQueue<>(NetworkUtility.QUEUE_CAPACITY);
       serverGameplayHandler = server.gameStart(inputQueue, outputQueue);
       // map = resourceLoader.getMap();
       int playerCount = server.getPlayerCount();
       System.out.println("PLAYER COUNT IS: " + playerCount);
-      this.telemetry =
+      HostTelemetry host =
           new HostTelemetry(playerCount, inputQueue, outputQueue, this, audioController);
+      if (serverGameplayHandler != null) {
+        serverGameplayHandler.setAckListener(host);
+      }
+      this.telemetry = host;
       this.telemetry.setMipID(MIPID);
       gameScene.setOnKeyPressed(keyController);
       startGame();
     } else {
-      this.telemetry = new DumbTelemetry(clientIn, this, audioController);
+      DumbTelemetry dumb =
+          new DumbTelemetry(
+              clientIn, clientLobbySession.getOutgoingQueue(), this, audioController);
+      dumb.setHostClock(clientLobbySession.getHostClock());
+      this.telemetry = dumb;
       this.telemetry.setMipID(MIPID);
       System.out.println("Starting multiplayer for non-host");
       this.primaryStage.setScene(gameScene);
@@ -305,7 +319,7 @@ public class Client extends Application {
                 agents,
                 now,
                 pellets,
-                telemetry.getActivePowerUps(),
+                telemetry.getActivePowerUps().values(),
                 telemetry.getGameTimer() / 100);
           }
         };
@@ -327,6 +341,8 @@ public class Client extends Application {
     gameScene.setOnKeyPressed(null);
     this.telemetry.stopGame();
     inputRenderLoop.stop();
+    showNetworkStats = false;
+    renderer.setNetworkStats(null);
 
     this.endGameScreen.StopEndScreen();
     menuController.reset();
@@ -349,9 +365,21 @@ public class Client extends Application {
     menuController.gameNotFound();
   }
 
+  /** @return The health of the game's network connections, or null if it has none */
+  private NetworkStats getNetworkStats() {
+    if (singlePlayer) {
+      return null;
+    }
+    if (isHost) {
+      return serverGameplayHandler == null ? null : serverGameplayHandler.getStats();
+    }
+    return clientLobbySession == null ? null : clientLobbySession.getNetworkStats();
+  }
+
   /**
    * Handles the final sequence of events when the game ends.
    */
+  @Override
   public void finishGame() {
     this.telemetry.stopGame();
     inputRenderLoop.stop();
@@ -360,6 +388,10 @@ public class Client extends Application {
 
   /** Process the players input given in via the keyboard @Author Matthew Jones */
   private void processInput() {
+    if (keyController.toggledNetworkStats()) {
+      showNetworkStats = !showNetworkStats;
+      renderer.setNetworkStats(showNetworkStats ? getNetworkStats() : null);
+    }
     if (keyController.UseItem()) {
       informServer(new Input(this.id, Direction.USE));
       return;
@@ -389,7 +421,7 @@ public class Client extends Application {
   }
 
   /**
-   * Sends the user key press to telemetry (via server in multiplayer)
+   * Sends the user key press to telemetry (via server in multiplayer, and predicted locally)
    *
    * @param input the current keypress
    */
@@ -400,6 +432,8 @@ public class Client extends Application {
       if (getId() == 0) {
         this.telemetry.addInput(input);
       } else {
+        // predicted until the server's snapshots catch up, and stamped before it is sent
+        this.telemetry.addInput(input);
         keypressQueue.add(input);
       }
     }
@@ -410,6 +444,7 @@ public class Client extends Application {
    *
    * @param newMipsman the new MIPs man
    */
+  @Override
   public void collisionDetected(Entity newMipsman) {
     inputRenderLoop.stop();
     telemetry.getInputProcessor().pause();
@@ -4,6 +4,7 @@ import com.lordsofmidnight.utils.Settings;
 import com.lordsofmidnight.utils.enums.Direction;
 import com.lordsofmidnight.utils.enums.InputKey;
 import javafx.event.EventHandler;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 
 /**
@@ -13,8 +14,12 @@ import javafx.scene.input.KeyEvent;
  */
 public class KeyController implements EventHandler<KeyEvent> {
 
+  /** Shows or hides the network statistics during a multiplayer game */
+  public static final KeyCode NETWORK_STATS_KEY = KeyCode.F3;
+
   private Direction activeKey;
   private boolean useItem;
+  private boolean toggleNetworkStats;
 
   public KeyController() {
     activeKey = null;
@@ -44,6 +49,8 @@ public class KeyController implements EventHandler<KeyEvent> {
       activeKey = Direction.RIGHT;
     } else if (e.getCode() == Settings.getKey(InputKey.USE)) {
       useItem = true;
+    } else if (e.getCode() == NETWORK_STATS_KEY) {
+      toggleNetworkStats = true;
     }
   }
 
@@ -57,4 +64,15 @@ public class KeyController implements EventHandler<KeyEvent> {
     }
     return false;
   }
+
+  /**
+   * @return If the player has pressed the key to show or hide the network statistics
+   */
+  public boolean toggledNetworkStats() {
+    if (toggleNetworkStats) {
+      toggleNetworkStats = false;
+      return true;
+    }
+    return false;
+  }
 }
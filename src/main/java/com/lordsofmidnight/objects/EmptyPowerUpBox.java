@@ -2,9 +2,8 @@ package com.lordsofmidnight.objects;
 
 import com.lordsofmidnight.audio.AudioController;
 import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.powerUps.ActivePowerUps;
 import com.lordsofmidnight.renderer.ResourceLoader;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A blank powerup box used in multiplayer for clients
@@ -38,7 +37,7 @@ public class EmptyPowerUpBox extends Pellet {
   public void interact(
       Entity entity,
       Entity[] agents,
-      ConcurrentHashMap<UUID, com.lordsofmidnight.objects.powerUps.PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       AudioController audioController) {
     if (!active) {
       return;
@@ -1,10 +1,9 @@
 package com.lordsofmidnight.objects;
 
 import com.lordsofmidnight.audio.AudioController;
+import com.lordsofmidnight.objects.powerUps.ActivePowerUps;
 import com.lordsofmidnight.objects.powerUps.PowerUp;
 import com.lordsofmidnight.utils.Methods;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A pellet object to represent a mine
@@ -51,7 +50,7 @@ public class MinePellet extends Pellet {
   public void interact(
       Entity entity,
       Entity[] agents,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       AudioController audioController) {
     if (!detonated) {
       Methods.kill(placer, entity, audioController);
@@ -60,12 +59,13 @@ public class MinePellet extends Pellet {
   }
 
   @Override
-  public void incrementRespawn() {
-    if (detonated) {
-      return;
-    }
-    respawnCount++;
-    if (respawnCount == hidden_timer) {
+  protected int getTimerDelay() {
+    return detonated || hidden ? -1 : hidden_timer;
+  }
+
+  @Override
+  protected void timerFired() {
+    if (!detonated) {
       this.hidden = true;
     }
   }
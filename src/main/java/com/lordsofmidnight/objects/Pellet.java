@@ -3,14 +3,13 @@ package com.lordsofmidnight.objects;
 import com.lordsofmidnight.audio.AudioController;
 import com.lordsofmidnight.audio.Sounds;
 import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.powerUps.ActivePowerUps;
 import com.lordsofmidnight.objects.powerUps.PowerUp;
 import com.lordsofmidnight.renderer.ResourceLoader;
 import com.lordsofmidnight.utils.Renderable;
 import com.lordsofmidnight.utils.enums.Direction;
 import java.util.ArrayList;
 import java.util.Random;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import javafx.scene.image.Image;
 
 /**
@@ -28,7 +27,7 @@ public class Pellet implements Renderable {
   protected int value = 1;
   protected com.lordsofmidnight.objects.powerUps.PowerUp trap;
   protected boolean isTrap = false;
-  protected int respawnCount = 0;
+  protected long timerDue = -1; // physics update the pellet's timer is due on, -1 if none
 
   /**
    * @param x The X coordinate of the pellet
@@ -90,9 +89,6 @@ public class Pellet implements Renderable {
    */
   public void setActive(boolean active) {
     this.active = active;
-    if (!active) {
-      respawnCount = 0;
-    }
   }
 
   /**
@@ -115,7 +111,7 @@ public class Pellet implements Renderable {
   public void interact(
       Entity entity,
       Entity[] agents,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       AudioController audioController) {
     if (isTrap) {
       trap.trigger(entity, activePowerUps, audioController);
@@ -137,14 +133,43 @@ public class Pellet implements Renderable {
     return "x = " + location.getX() + " y= " + location.getY() + " active = " + a;
   }
 
-  /** Called every physics update to increment the counter for respawn */
-  public void incrementRespawn() {
-    if (!active) {
-      respawnCount++;
-    }
-    if (respawnCount == respawntime) {
-      this.active = true;
+  /**
+   * @return The number of physics updates until the pellet next changes by itself, -1 if it won't
+   *     change until something interacts with it
+   */
+  protected int getTimerDelay() {
+    return active ? -1 : respawntime;
+  }
+
+  /**
+   * Starts the pellet's timer, replacing any timer already running
+   *
+   * @param now The current physics update
+   * @return The physics update the timer is due on, -1 if the pellet has no timer to run
+   */
+  public long startTimer(long now) {
+    int delay = getTimerDelay();
+    timerDue = delay < 0 ? -1 : now + delay;
+    return timerDue;
+  }
+
+  /**
+   * Called when a timer started by {@link #startTimer(long)} is due. Timers that have since been
+   * replaced are ignored.
+   *
+   * @param now The current physics update
+   */
+  public void onTimer(long now) {
+    if (now != timerDue) {
+      return;
     }
+    timerDue = -1;
+    timerFired();
+  }
+
+  /** Called when the pellet's timer fires, respawns the pellet */
+  protected void timerFired() {
+    this.active = true;
   }
 
   /** @return If the pellet needs to be replaced */
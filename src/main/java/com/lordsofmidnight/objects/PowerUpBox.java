@@ -3,6 +3,7 @@ package com.lordsofmidnight.objects;
 import com.lordsofmidnight.audio.AudioController;
 import com.lordsofmidnight.audio.Sounds;
 import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.powerUps.ActivePowerUps;
 import com.lordsofmidnight.objects.powerUps.Invincible;
 import com.lordsofmidnight.objects.powerUps.Mine;
 import com.lordsofmidnight.objects.powerUps.PowerUp;
@@ -14,8 +15,6 @@ import com.lordsofmidnight.utils.enums.PowerUps;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class for the powerup boxes
@@ -157,7 +156,7 @@ public class PowerUpBox extends Pellet {
   public void interact(
       Entity entity,
       Entity[] agents,
-      ConcurrentHashMap<UUID, com.lordsofmidnight.objects.powerUps.PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       AudioController audioController) {
     if (isTrap) {
       trap.trigger(entity, activePowerUps, audioController);
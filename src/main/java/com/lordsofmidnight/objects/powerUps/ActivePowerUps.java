@@ -0,0 +1,94 @@
+package com.lordsofmidnight.objects.powerUps;
+
+import com.lordsofmidnight.audio.AudioController;
+import com.lordsofmidnight.utils.TimerWheel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The powerUps whose effects are currently running. Each powerUp's expiry is put on a timer wheel
+ * when it is activated, so a physics update only touches the powerUps that expire on it rather
+ * than counting down every active effect. The renderer gets a read-only view of the effects.
+ */
+public class ActivePowerUps {
+
+  private static final int EXPIRY_SLOTS = 1024;
+
+  private final ConcurrentHashMap<UUID, PowerUp> active = new ConcurrentHashMap<>();
+  private final Collection<PowerUp> view = Collections.unmodifiableCollection(active.values());
+  private final TimerWheel<PowerUp> expiries = new TimerWheel<>(EXPIRY_SLOTS);
+  private final Consumer<PowerUp> expire = this::expire;
+  private AudioController audioController;
+  private volatile long tick = 0;
+
+  /**
+   * Activates a powerUp, replacing any running effect of the same powerUp. Its effect ends after
+   * its effect time has passed.
+   *
+   * @param id The id of the powerUp
+   * @param powerUp The powerUp
+   */
+  public void put(UUID id, PowerUp powerUp) {
+    active.put(id, powerUp);
+    powerUp.activate(this, tick);
+    expiries.schedule(powerUp, powerUp.getExpiry());
+  }
+
+  /**
+   * Ends a powerUp's effect early, without calling {@link PowerUp#expire(AudioController)}
+   *
+   * @param id The id of the powerUp
+   * @return The removed powerUp, null if it wasn't active
+   */
+  public PowerUp remove(UUID id) {
+    return active.remove(id);
+  }
+
+  /**
+   * @param id The id of the powerUp
+   * @return The powerUp, null if it isn't active
+   */
+  public PowerUp get(UUID id) {
+    return active.get(id);
+  }
+
+  /** @return A read-only, live view of the active powerUps */
+  public Collection<PowerUp> values() {
+    return view;
+  }
+
+  /** @return The number of active powerUps */
+  public int size() {
+    return active.size();
+  }
+
+  /**
+   * Called every physics update to end the effects that are due to expire
+   *
+   * @param audioController The Audio Controller for sounds played on expiry
+   */
+  public void update(AudioController audioController) {
+    this.audioController = audioController;
+    expiries.advanceTo(tick, expire);
+    tick++;
+  }
+
+  /** @return The number of physics updates that have been run */
+  public long getTick() {
+    return tick;
+  }
+
+  /**
+   * Ends the powerUp's effect, unless it has been reactivated or removed since it was scheduled
+   *
+   * @param powerUp The powerUp that is due
+   */
+  private void expire(PowerUp powerUp) {
+    if (powerUp.getExpiry() == tick && active.remove(powerUp.id, powerUp)) {
+      powerUp.expire(audioController);
+    }
+  }
+}
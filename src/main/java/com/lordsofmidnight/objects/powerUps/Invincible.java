@@ -6,8 +6,6 @@ import com.lordsofmidnight.gamestate.points.PointMap;
 import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.objects.Pellet;
 import com.lordsofmidnight.utils.enums.PowerUps;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The invincible powerUp making the entity that uses it invincible for its duration
@@ -22,7 +20,7 @@ public class Invincible extends PowerUp {
   @Override
   public void use(
       Entity user,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       PointMap<Pellet> pellets,
       Entity[] agents,
       AudioController audioController) {
@@ -30,17 +28,11 @@ public class Invincible extends PowerUp {
     activePowerUps.put(id, this);
     this.effected = user;
     user.setInvincible(true);
-    counter = 0;
     audioController.playSound(Sounds.INVINCIBLE);
   }
 
   @Override
-  public boolean incrementTime(AudioController audioController) {
-    super.incrementTime(audioController);
-    if (counter == EFFECTTIME) {
-      effected.setInvincible(false);
-      return true;
-    }
-    return false;
+  public void expire(AudioController audioController) {
+    effected.setInvincible(false);
   }
 }
@@ -8,8 +8,6 @@ import com.lordsofmidnight.objects.MinePellet;
 import com.lordsofmidnight.objects.Pellet;
 import com.lordsofmidnight.utils.Methods;
 import com.lordsofmidnight.utils.enums.PowerUps;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Mine powerup placing a mine behind the entity that uses it
@@ -24,7 +22,7 @@ public class Mine extends PowerUp {
   @Override
   public void use(
       Entity user,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       PointMap<Pellet> pellets,
       Entity[] agents,
       AudioController audioController) {
@@ -35,14 +33,14 @@ public class Mine extends PowerUp {
     int y = (int) loc.getY();
     MinePellet mine = new MinePellet(x + 0.5, y + 0.5, user);
     pellets.put(loc, mine);
+    placed = mine;
   }
 
   @Override
   public void trigger(
       Entity victim,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       AudioController audioController) {
     Methods.kill(user, victim, audioController);
-    counter = 0;
   }
 }
@@ -6,7 +6,6 @@ import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.objects.Pellet;
 import com.lordsofmidnight.utils.enums.PowerUps;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The base class for the powerUps
@@ -17,11 +16,12 @@ public abstract class PowerUp {
   protected final int EFFECTTIME;
   public UUID id;
   protected Entity effected;
-  protected int counter = 0;
+  protected long startTick = 0; // physics update the effect started on
   protected Entity user;
   protected int currentFrame = 0;
   protected PowerUps type;
   protected boolean onMap;
+  protected Pellet placed;
 
   /**
    * Abstract class for the powerUps
@@ -71,19 +71,32 @@ public abstract class PowerUp {
    */
   public void trigger(
       Entity victim,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       AudioController audioController) {}
 
   /**
-   * Called each physics update to increment the timers
+   * Called by {@link ActivePowerUps} when the powerUp's effect starts
    *
-   * @return if the powerUp has finished and should be removed
+   * @param activePowerUps The active powerUps it was added to
+   * @param tick The current physics update
    */
-  public boolean incrementTime(AudioController audioController) {
-    counter++;
-    return false;
+  void activate(ActivePowerUps activePowerUps, long tick) {
+    this.startTick = tick;
   }
 
+  /** @return The physics update the powerUp's effect ends on */
+  long getExpiry() {
+    return startTick + EFFECTTIME - 1;
+  }
+
+  /**
+   * Called once the powerUp's effect time has run out, after it has been removed from the active
+   * powerUps
+   *
+   * @param audioController The Audio Controller for sounds
+   */
+  public void expire(AudioController audioController) {}
+
   /**
    * Called when the player uses this powerUp
    *
@@ -92,7 +105,7 @@ public abstract class PowerUp {
    */
   public void use(
       Entity user,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       PointMap<Pellet> pellets,
       Entity[] agents,
       AudioController audioController) {}
@@ -118,6 +131,11 @@ public abstract class PowerUp {
     return -1;
   }
 
+  /** @return The pellet this powerUp put on the map when used, null if it didn't place one */
+  public Pellet getPlaced() {
+    return placed;
+  }
+
   /** @return The entity that used the powerUp */
   public Entity getUser() {
     return this.user;
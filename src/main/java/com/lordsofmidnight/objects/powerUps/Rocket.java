@@ -9,15 +9,13 @@ import com.lordsofmidnight.utils.Methods;
 import com.lordsofmidnight.utils.enums.PowerUps;
 import java.awt.geom.Point2D;
 import java.awt.geom.Point2D.Double;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The rocket powerup Launched at and killing the player in first
  */
 public class Rocket extends PowerUp {
 
-  private ConcurrentHashMap<UUID, PowerUp> activePowerUps;
+  private ActivePowerUps activePowerUps;
 
   private boolean launched = false;
   private boolean targeted = false;
@@ -33,7 +31,7 @@ public class Rocket extends PowerUp {
   @Override
   public void use(
       Entity user,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       PointMap<Pellet> pellets,
       Entity[] agents,
       AudioController audioController) {
@@ -46,14 +44,9 @@ public class Rocket extends PowerUp {
   }
 
   @Override
-  public boolean incrementTime(AudioController audioController) {
-    super.incrementTime(audioController);
-    if (counter == EFFECTTIME) {
-      audioController.playSound(Sounds.ROCKET);
-      Methods.kill(user, effected, audioController);
-      return true;
-    }
-    return false;
+  public void expire(AudioController audioController) {
+    audioController.playSound(Sounds.ROCKET);
+    Methods.kill(user, effected, audioController);
   }
 
   /**
@@ -63,11 +56,17 @@ public class Rocket extends PowerUp {
     this.currentFrame++;
   }
 
+  @Override
+  void activate(ActivePowerUps activePowerUps, long tick) {
+    super.activate(activePowerUps, tick);
+    this.activePowerUps = activePowerUps;
+  }
+
   /**
    * @return the counter for the animation of the rocket
    */
   public int getTime() {
-    return this.counter;
+    return (int) (activePowerUps.getTick() - startTick);
   }
 
   /**
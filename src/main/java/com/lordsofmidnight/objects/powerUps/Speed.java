@@ -6,8 +6,6 @@ import com.lordsofmidnight.gamestate.points.PointMap;
 import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.objects.Pellet;
 import com.lordsofmidnight.utils.enums.PowerUps;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Speed powerup giving the entity that uses it increased speed for the duration
@@ -22,7 +20,7 @@ public class Speed extends PowerUp {
   @Override
   public void use(
       Entity user,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       PointMap<Pellet> pellets,
       Entity[] agents,
       AudioController audioController) {
@@ -31,16 +29,10 @@ public class Speed extends PowerUp {
     activePowerUps.put(id, this);
     this.effected = user;
     audioController.playSound(Sounds.SPEED);
-    counter = 0;
   }
 
   @Override
-  public boolean incrementTime(AudioController audioController) {
-    super.incrementTime(audioController);
-    if (counter == EFFECTTIME) {
-      user.changeBonusSpeed(-0.03);
-      return true;
-    }
-    return false;
+  public void expire(AudioController audioController) {
+    user.changeBonusSpeed(-0.03);
   }
 }
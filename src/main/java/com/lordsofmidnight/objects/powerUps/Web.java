@@ -8,8 +8,6 @@ import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.objects.Pellet;
 import com.lordsofmidnight.objects.PowerUpBox;
 import com.lordsofmidnight.utils.enums.PowerUps;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Web powerup leaving a fake item box, that snares those who run into it, behind the entity
@@ -25,7 +23,7 @@ public class Web extends PowerUp {
   @Override
   public void use(
       Entity user,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       PointMap<Pellet> pellets,
       Entity[] agents,
       AudioController audioController) {
@@ -37,12 +35,13 @@ public class Web extends PowerUp {
     PowerUpBox box = new PowerUpBox(x + 0.5, y + 0.5);
     box.setTrap(this);
     pellets.put(loc, box);
+    placed = box;
   }
 
   @Override
   public void trigger(
       Entity victim,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       AudioController audioController) {
     if (victim.isInvincible()) {
       return;
@@ -50,17 +49,11 @@ public class Web extends PowerUp {
     victim.setStunned(true);
     activePowerUps.put(id, this);
     this.effected = victim;
-    counter = 0;
     audioController.playSound(Sounds.TRAPPED);
   }
 
   @Override
-  public boolean incrementTime(AudioController audioController) {
-    super.incrementTime(audioController);
-    if (counter == EFFECTTIME) {
-      effected.setStunned(false);
-      return true;
-    }
-    return false;
+  public void expire(AudioController audioController) {
+    effected.setStunned(false);
   }
 }
@@ -1,6 +1,8 @@
 package com.lordsofmidnight.renderer;
 
 import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.server.NetworkStats;
+import com.lordsofmidnight.server.PeerStats;
 import com.lordsofmidnight.utils.CircularIterator;
 import com.lordsofmidnight.utils.enums.PowerUps;
 import java.awt.geom.Point2D;
@@ -35,6 +37,7 @@ public class HeadsUpDisplay {
   private int yResolution;
   private Font geoLarge = null;
   private Font geoSmall = null;
+  private Font statsFont = null;
   private BufferedImage playerColours;
   private Image inventory;
   private int id = 0;
@@ -308,6 +311,42 @@ public class HeadsUpDisplay {
     }
   }
 
+  /**
+   * Lists the health of each network connection in the bottom left corner, a line per peer
+   *
+   * @param stats the statistics of the game's network connections
+   */
+  public void renderNetworkStats(NetworkStats stats) {
+    ArrayList<String> lines = new ArrayList<>();
+    lines.add(
+        String.format(
+            "send queue %d (max %d)", stats.getQueueDepth(), stats.getMaxQueueDepth()));
+    for (PeerStats peer : stats.getPeers()) {
+      double rtt = peer.getRtt();
+      lines.add(
+          String.format(
+              "%-15s rtt %s jitter %4.1fms loss %4.1f%% in %5.1fkB/s out %5.1fkB/s",
+              peer.getAddress().getHostAddress(),
+              rtt < 0 ? "   ?  " : String.format("%4.0fms", rtt),
+              peer.getJitter(),
+              peer.getLossRate() * 100,
+              peer.getBytesInPerSecond() / 1000.0,
+              peer.getBytesOutPerSecond() / 1000.0));
+    }
+
+    final double lineGap = statsFont.getSize() * 1.2;
+    double y = yResolution * 0.97 - lineGap * (lines.size() - 1);
+    gc.setFont(statsFont);
+    gc.setTextAlign(TextAlignment.LEFT);
+    gc.setFill(new Color(0, 0, 0, 0.65));
+    gc.fillRect(0, y - lineGap, xResolution * 0.5, lineGap * (lines.size() + 0.5));
+    gc.setFill(Color.WHITE);
+    for (String line : lines) {
+      gc.fillText(line, xResolution * 0.01, y);
+      y += lineGap;
+    }
+  }
+
   /**
    * @param x new X resolution
    * @param y new Y resolution
@@ -330,6 +369,7 @@ public class HeadsUpDisplay {
     } catch (FileNotFoundException e) {
       e.printStackTrace();
     }
+    this.statsFont = Font.font("Monospaced", 0.15 * xResolution * fontRatio);
     this.playerColours = resourceLoader.getPlayerPalette();
   }
 
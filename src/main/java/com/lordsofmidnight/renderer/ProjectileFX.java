@@ -7,8 +7,7 @@ import com.lordsofmidnight.utils.enums.PowerUps;
 import java.awt.geom.Point2D;
 import java.awt.geom.Point2D.Double;
 import java.util.ArrayList;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
 
@@ -56,9 +55,9 @@ public class ProjectileFX {
    * @param timeElapsed time since last call (nanoseconds)
    * @param activePowerups powerups active in the game
    */
-  public void render(long timeElapsed, ConcurrentHashMap<UUID, PowerUp> activePowerups) {
+  public void render(long timeElapsed, Collection<PowerUp> activePowerups) {
     rockets = new ArrayList<>();
-    for (PowerUp p : activePowerups.values()) {
+    for (PowerUp p : activePowerups) {
       if (p.getType() == PowerUps.ROCKET) {
         rockets.add((Rocket) p);
       }
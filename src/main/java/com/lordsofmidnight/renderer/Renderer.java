@@ -9,8 +9,9 @@ import com.lordsofmidnight.objects.MinePellet;
 import com.lordsofmidnight.objects.Pellet;
 import com.lordsofmidnight.objects.PowerUpBox;
 import com.lordsofmidnight.objects.powerUps.PowerUp;
-import com.lordsofmidnight.utils.GameLoop;
+import com.lordsofmidnight.server.NetworkStats;
 import com.lordsofmidnight.utils.Settings;
+import com.lordsofmidnight.utils.TickScheduler;
 import com.lordsofmidnight.utils.UpDownIterator;
 import com.lordsofmidnight.utils.enums.MapElement;
 import com.lordsofmidnight.utils.enums.PowerUps;
@@ -23,10 +24,9 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import javafx.animation.AnimationTimer;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
@@ -64,6 +64,7 @@ public class Renderer {
   private int frameCounter = 0;
   private long timeSum;
   private Entity clientEntity = null;
+  private NetworkStats networkStats = null;
   private BufferedImage playerColours;
   private ExplosionFX explosionManager;
   private int currentAnimationFrame = 0;
@@ -123,7 +124,7 @@ public class Renderer {
       Entity[] entityArr,
       long now,
       PointMap<Pellet> pellets,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      Collection<PowerUp> activePowerUps,
       int gameTime) {
 
     if (refreshMap) {
@@ -143,6 +144,9 @@ public class Renderer {
     hudRender.renderHUD(entityArr, gameTime);
     hudRender.renderInventory(this.clientEntity, timeElapsed);
     // showFPS(timeElapsed);
+    if (networkStats != null) {
+      hudRender.renderNetworkStats(networkStats);
+    }
 
     lastFrame = now;
 
@@ -204,7 +208,7 @@ public class Renderer {
       Entity[] entityArr,
       long now,
       PointMap<Pellet> pellets,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps) {
+      Collection<PowerUp> activePowerUps) {
 
     ArrayList<Entity> entities = new ArrayList<>(Arrays.asList(entityArr));
 
@@ -224,7 +228,7 @@ public class Renderer {
 
     // add powerups to entity
     if (activePowerUps != null) {
-      for (PowerUp p : activePowerUps.values()) {
+      for (PowerUp p : activePowerUps) {
         entityPowerUps.get(p.getUser()).put(p.getType(), p);
       }
     }
@@ -330,6 +334,11 @@ public class Renderer {
     }
   }
 
+  /** @param stats network statistics to show over the game, or null to hide them */
+  public void setNetworkStats(NetworkStats stats) {
+    this.networkStats = stats;
+  }
+
   /** @param timeElapsed time since last call */
   private void showFPS(long timeElapsed) {
 
@@ -368,7 +377,7 @@ public class Renderer {
       Entity[] entities,
       Map map,
       AnimationTimer renderingLoop,
-      GameLoop inputProcessor) {
+      TickScheduler inputProcessor) {
     java.lang.Double[] num = {1.0, 1.0, 1.1, 1.25, 1.4};
     UpDownIterator<java.lang.Double> entitySize = new UpDownIterator<>(num);
 
@@ -0,0 +1,45 @@
+package com.lordsofmidnight.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A pool of equally sized buffers. Direct buffers are slow to allocate and their memory is only
+ * freed when they are collected, so the network threads borrow them from here rather than each
+ * allocating their own.
+ */
+public class BufferPool {
+
+  /** Direct buffers large enough for any datagram, shared by every receiver in the process */
+  public static final BufferPool DATAGRAMS = new BufferPool(PacketCodec.MAX_DATAGRAM_SIZE, true);
+
+  private final int size;
+  private final boolean direct;
+  private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param size The capacity of each buffer
+   * @param direct True to allocate direct buffers
+   */
+  public BufferPool(int size, boolean direct) {
+    this.size = size;
+    this.direct = direct;
+  }
+
+  /** @return A cleared buffer, allocating a new one if none are free */
+  public ByteBuffer acquire() {
+    ByteBuffer buf = free.poll();
+    if (buf == null) {
+      return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+    buf.clear();
+    return buf;
+  }
+
+  /** @param buf A buffer from {@link #acquire()} that is no longer used */
+  public void release(ByteBuffer buf) {
+    if (buf.capacity() == size && buf.isDirect() == direct) {
+      free.offer(buf);
+    }
+  }
+}
@@ -3,38 +3,73 @@ package com.lordsofmidnight.server;
 import com.lordsofmidnight.utils.Input;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * ClientGameplayHandler class which creates the appropriate senders and recievers and starts them.
- * The sender turns {@link Input} into strings. they feed into telemetry.
+ * The sender encodes each {@link Input} with the {@link PacketCodec}, and the frames received
+ * feed into telemetry.
  */
 public class ClientGameplayHandler {
 
-  public Queue<String> outgoingQueue;
-  private Queue<String> incomingQueue;
+  public BlockingQueue<ByteBuffer> outgoingQueue;
 
   private BlockingQueue<Input> keypressQueue;
-  private Queue<String> clientIn;
+  private Queue<ByteBuffer> clientIn;
 
   private Thread outgoingPacketManager;
-  private Thread incomingPacketManager;
 
   private PacketSender sender;
   private PacketReceiver receiver;
+  private HostClock hostClock;
 
   private ArrayList<InetAddress> serverIP;
 
-  private boolean running = true;
+  private volatile boolean running = true;
 
   // clientIn gets recievedStrings
   public ClientGameplayHandler(
-      InetAddress serverIP, Queue<Input> keypressQueue, Queue<String> clientIn) throws IOException {
-    outgoingQueue = new ConcurrentLinkedQueue<>();
-    incomingQueue = new ConcurrentLinkedQueue<>();
+      InetAddress serverIP, Queue<Input> keypressQueue, Queue<ByteBuffer> clientIn)
+      throws IOException {
+    this(serverIP, NetworkUtility.SERVER_DGRAM_PORT, keypressQueue, clientIn);
+  }
+
+  /**
+   * Creates a handler for a game hosted on a port other than the default, such as a match on a
+   * {@link DedicatedServer}.
+   *
+   * @param serverIP The address of the host
+   * @param serverPort The port the host is receiving inputs for this game on
+   * @param keypressQueue The queue of the client's key presses
+   * @param clientIn The queue that received frames are passed on to
+   */
+  public ClientGameplayHandler(
+      InetAddress serverIP, int serverPort, Queue<Input> keypressQueue, Queue<ByteBuffer> clientIn)
+      throws IOException {
+    this(serverIP, serverPort, keypressQueue, clientIn, DatagramTransport.UDP);
+  }
+
+  /**
+   * Creates a handler on a network other than the real one, such as a {@link LoopbackNetwork}.
+   *
+   * @param serverIP The address of the host
+   * @param serverPort The port the host is receiving inputs for this game on
+   * @param keypressQueue The queue of the client's key presses
+   * @param clientIn The queue that received frames are passed on to
+   * @param transports Opens the transports to send and receive through
+   */
+  public ClientGameplayHandler(
+      InetAddress serverIP,
+      int serverPort,
+      Queue<Input> keypressQueue,
+      Queue<ByteBuffer> clientIn,
+      DatagramTransport.Factory transports)
+      throws IOException {
+    outgoingQueue = new ArrayBlockingQueue<>(NetworkUtility.QUEUE_CAPACITY);
     this.keypressQueue = (BlockingQueue<Input>) keypressQueue;
     this.clientIn = clientIn;
 
@@ -44,76 +79,78 @@ public class ClientGameplayHandler {
     initialisePacketManagers();
 
     this.sender =
-        new PacketSender(NetworkUtility.SERVER_DGRAM_PORT, this.outgoingQueue, this.serverIP);
-    this.receiver = new PacketReceiver(NetworkUtility.CLIENT_DGRAM_PORT, incomingQueue);
-    this.incomingPacketManager.start();
+        new PacketSender(serverPort, this.outgoingQueue, this.serverIP, transports.open());
+    this.hostClock = new HostClock(sender.getStats().getPeer(serverIP));
+    this.receiver =
+        new PacketReceiver(
+            transports.bind(NetworkUtility.CLIENT_DGRAM_PORT), this::receive, sender);
     this.outgoingPacketManager.start();
     this.receiver.start();
     this.sender.start();
   }
 
   /**
-   * Initialises the incoming and outgoing packet managers
+   * Initialises the outgoing packet manager
    */
   private void initialisePacketManagers() {
-    // puts inputs from queues into the outgoing queue as strings
+    // puts inputs from queues into the outgoing queue as encoded frames
     this.outgoingPacketManager =
         new Thread() {
           public void run() {
-            Input key;
-            while (!isInterrupted() && running) {
-              try {
-                key = keypressQueue.take();
-                // sends inputs as strings, which are converted back by ServerGameplay handler
-                outgoingQueue.add(key.toString());
-                Thread.sleep(1);
-              } catch (InterruptedException e) {
-                e.printStackTrace();
+            try {
+              while (running) {
+                Input key = keypressQueue.take();
+                // decoded back into inputs by the ServerGameplayHandler
+                ByteBuffer frame = ByteBuffer.allocate(PacketCodec.INPUT_SIZE);
+                PacketCodec.writeInput(frame, key);
+                frame.flip();
+                outgoingQueue.offer(frame);
               }
+            } catch (InterruptedException e) {
+              // woken by close
             }
           }
         };
+  }
 
-    // reads inputs from the incoming queue into the relevant queue - position queue or collision
-    // queue
-    this.incomingPacketManager =
-        new Thread() {
-          public void run() {
-            while (!isInterrupted() && running) {
-              try {
-                if (incomingQueue.isEmpty()) {
-                  continue;
-                }
-                String data = incomingQueue.poll();
-
-                if (data.startsWith(NetworkUtility.POSITION_CODE)
-                    || data.startsWith(NetworkUtility.POWERUP_CODE)
-                    || data.startsWith(NetworkUtility.COLLISIONS_CODE)
-                    || data.startsWith(NetworkUtility.SCORE_CODE)) {
-                  clientIn.add(data);
-                } else if (data.startsWith(NetworkUtility.STOP_CODE)) {
-                  clientIn.add(data);
-                  close();
-                } else {
-                  System.out.println("Dodgy string " + data);
-                  throw new Exception();
-                }
-                Thread.sleep(1);
-              } catch (Exception e) {
-                e.printStackTrace();
-                System.out.println("Argument in incoming queue had invalid code");
-              }
-            }
-          }
-        };
+  /**
+   * Passes a frame received on to the telemetry, closing once the host stops. The frame is copied
+   * as the receiver reuses its buffer. The tick it is stamped with sets the host's clock.
+   *
+   * @param frame The frame received
+   */
+  private void receive(ByteBuffer frame) {
+    long now = System.nanoTime();
+    int start = frame.position();
+    if (frame.remaining() >= PacketCodec.TICK_SIZE && frame.get(start) == PacketCodec.TICK) {
+      hostClock.observe(frame.getInt(start + 1), now);
+    }
+    ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+    copy.put(frame).flip();
+    clientIn.offer(copy);
+    if (PacketCodec.contains(copy, PacketCodec.STOP)) {
+      close();
+    }
+  }
+
+  /** @return The estimate of which tick the host is on */
+  public HostClock getHostClock() {
+    return hostClock;
+  }
+
+  /** @return The health of the connection to the host */
+  public NetworkStats getStats() {
+    return sender.getStats();
   }
 
   /**
    * Closes the class' threads
    */
   public void close() {
+    running = false;
     receiver.shutdown();
     sender.shutdown();
-    running = false;
+    // the manager does no I/O, so it can be woken from waiting on its queue
+    outgoingPacketManager.interrupt();
   }
 }
@@ -1,9 +1,13 @@
 package com.lordsofmidnight.server;
 
 import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapCodec;
 import com.lordsofmidnight.main.Client;
 import com.lordsofmidnight.utils.Input;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
@@ -14,6 +18,7 @@ import java.net.NetworkInterface;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.Enumeration;
 import java.util.Queue;
 import javafx.application.Platform;
@@ -23,7 +28,7 @@ import javafx.application.Platform;
  */
 public class ClientLobbySession {
 
-  private Queue<String> clientIn;
+  private Queue<ByteBuffer> clientIn;
   private Queue<Input> keypressQueue;
   private InetAddress serverIP;
   private ClientGameplayHandler handler;
@@ -36,7 +41,7 @@ public class ClientLobbySession {
   private Socket ss = new Socket();
   private ServerSocket serverSocket;
   private PrintWriter out;
-  private BufferedReader in;
+  private DataInputStream in; // not a reader, as the map arrives as bytes between the lines
   /**
    * Thread which waits for the com.lordsofmidnight.server to start the game and send over the
    * player names.
@@ -130,25 +135,27 @@ public class ClientLobbySession {
               soc = new Socket(serverIP, NetworkUtility.SERVER_DGRAM_PORT);
               soc.setSoTimeout(NetworkUtility.LOBBY_TIMEOUT);
               out = new PrintWriter(soc.getOutputStream());
-              in = new BufferedReader(new InputStreamReader(soc.getInputStream()));
+              in = new DataInputStream(new BufferedInputStream(soc.getInputStream()));
 
               String str = NetworkUtility.PREFIX + "CONNECT" + NetworkUtility.SUFFIX;
               out.println(str);
               out.println(clientName);
               out.flush();
 
-              String r = in.readLine();
+              String r = readLine(in);
+              while (r.equals(NetworkUtility.QUEUED)) { // the lobby is full, wait for a place
+                System.out.println("Waiting for a place in the lobby");
+                r = readLine(in);
+              }
               int id = Integer.parseInt(r);
               client.setId(id);
 
-              r = in.readLine();
-              System.out.println("Map set to :" + r);
-              client.setMap(Map.deserialiseMap(r));
+              client.setMap(receiveMap());
 
-              r = in.readLine();
+              r = readLine(in);
               int MIPID = Integer.parseInt(r);
               client.setMIP(MIPID);
-              r = in.readLine();
+              r = readLine(in);
               if (r.equals("SUCCESS")) {
                 System.out.println("Server connection success");
               }
@@ -164,6 +171,63 @@ public class ClientLobbySession {
         }
       };
 
+  /**
+   * Reads the hash of the lobby's map, and either finds the map in the cache or asks for it to be
+   * sent. A map that arrives is checked against the hash before it is used.
+   *
+   * @return The map
+   * @throws IOException If the map couldn't be received, or arrived corrupted
+   */
+  private Map receiveMap() throws IOException {
+    String hash = readLine(in);
+    Map map = MapCodec.getCached(hash);
+    if (map != null) {
+      System.out.println("Map " + hash + " already cached");
+      out.println(NetworkUtility.MAP_CACHED);
+      out.flush();
+      return map;
+    }
+    out.println(NetworkUtility.MAP_SEND);
+    out.flush();
+    int length = in.readInt();
+    if (length < 0 || length > MapCodec.MAX_SIZE) {
+      throw new IOException("Map of " + length + " bytes refused");
+    }
+    byte[] data = new byte[length];
+    in.readFully(data);
+    if (!MapCodec.hash(data).equals(hash)) {
+      throw new IOException("Map received does not match its hash");
+    }
+    try {
+      map = MapCodec.decode(data);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Map received is invalid", e);
+    }
+    System.out.println("Map " + hash + " received, " + length + " bytes");
+    MapCodec.cache(hash, map);
+    return map;
+  }
+
+  /**
+   * Reads a line of text from the stream, without reading any further
+   *
+   * @param in The stream
+   * @return The line, without the line ending
+   * @throws IOException If the stream ends first
+   */
+  private static String readLine(DataInputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b < 0) {
+        throw new IOException("Connection closed by the server");
+      }
+      line.write(b);
+    }
+    String text = line.toString("UTF-8");
+    return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+  }
+
   /**
    * @param clientIn The input queue for the client
    * @param keypressQueue The keypress queue from the client
@@ -171,7 +235,7 @@ public class ClientLobbySession {
    * @param clientName The name of the client
    */
   public ClientLobbySession(
-      Queue<String> clientIn, Queue<Input> keypressQueue, Client client, String clientName)
+      Queue<ByteBuffer> clientIn, Queue<Input> keypressQueue, Client client, String clientName)
       throws IOException {
 
     this.clientIn = clientIn;
@@ -199,6 +263,21 @@ public class ClientLobbySession {
     }
   }
 
+  /** @return The queue of frames sent to the server, or null if the game hasn't started */
+  public Queue<ByteBuffer> getOutgoingQueue() {
+    return handler == null ? null : handler.outgoingQueue;
+  }
+
+  /** @return The estimate of the host's tick, or null if the game hasn't started */
+  public HostClock getHostClock() {
+    return handler == null ? null : handler.getHostClock();
+  }
+
+  /** @return The health of the connection to the host, or null if the game hasn't started */
+  public NetworkStats getNetworkStats() {
+    return handler == null ? null : handler.getStats();
+  }
+
   /**
    * Handles shutting down TCP connections in the client lobby
    */
@@ -0,0 +1,133 @@
+package com.lordsofmidnight.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+
+/**
+ * Carries the datagrams of a game between a {@link PacketSender} or {@link PacketReceiver} and the
+ * network, so the network can be swapped for one with simulated conditions, or for a {@link
+ * LoopbackNetwork} inside the process. Transports on the real network are opened through {@link
+ * #open()} and {@link #bind(int)}, which simulate the {@link NetworkConditions} given by the
+ * {@value NetworkConditions#PROPERTY} system property on what is sent, if it is set.
+ */
+public interface DatagramTransport extends Channel {
+
+  /** Opens transports on the real network */
+  Factory UDP =
+      new Factory() {
+        @Override
+        public DatagramTransport open() throws IOException {
+          return DatagramTransport.open();
+        }
+
+        @Override
+        public DatagramTransport bind(int port) throws IOException {
+          return DatagramTransport.bind(port);
+        }
+      };
+
+  /**
+   * @return A transport for sending, on whichever port is free
+   * @throws IOException If a socket cannot be opened
+   */
+  static DatagramTransport open() throws IOException {
+    DatagramTransport udp = UdpTransport.open();
+    NetworkConditions conditions = NetworkConditions.nextConfigured();
+    return conditions == null ? udp : new SimulatedTransport(udp, conditions);
+  }
+
+  /**
+   * @param port The port to receive on
+   * @return A transport for receiving on the port
+   * @throws IOException If the port cannot be bound
+   */
+  static DatagramTransport bind(int port) throws IOException {
+    return UdpTransport.bind(port);
+  }
+
+  /**
+   * @param group The multicast group to receive, such as {@link NetworkUtility#GROUP}
+   * @param port The port to receive on, which others on the machine can receive the group on too
+   * @return A transport receiving what is sent to the group, on every interface that can join it
+   * @throws IOException If the port cannot be bound, or no interface can join the group
+   */
+  static DatagramTransport join(InetAddress group, int port) throws IOException {
+    return UdpTransport.join(group, port);
+  }
+
+  /**
+   * @param datagram The datagram to send, from its position to its limit, which it is moved past
+   * @param to The address and port to send it to
+   * @throws IOException If it could not be sent
+   */
+  void send(ByteBuffer datagram, InetSocketAddress to) throws IOException;
+
+  /**
+   * Waits for the next datagram to arrive
+   *
+   * @param buf The buffer to receive into, anything that doesn't fit is thrown away
+   * @return The address and port it came from
+   * @throws java.nio.channels.ClosedChannelException Once the transport is closed, including while
+   *     waiting
+   * @throws IOException If it could not be received
+   */
+  InetSocketAddress receive(ByteBuffer buf) throws IOException;
+
+  /**
+   * Waits for the next datagram to arrive. A transport that already holds it in a buffer from
+   * {@link BufferPool#DATAGRAMS} hands that buffer over in place of the datagram's, rather than
+   * copying it, and the one given up goes back to the pool.
+   *
+   * @param datagram Where to put the datagram, ready to be read, and where it came from
+   * @throws java.nio.channels.ClosedChannelException Once the transport is closed, including while
+   *     waiting
+   * @throws IOException If it could not be received
+   */
+  default void receive(Datagram datagram) throws IOException {
+    datagram.buf.clear();
+    datagram.from = receive(datagram.buf);
+    datagram.buf.flip();
+  }
+
+  /** Opens transports, so the game can be run on a network other than the real one */
+  interface Factory {
+
+    /**
+     * @return A transport for sending, on whichever port is free
+     * @throws IOException If it cannot be opened
+     */
+    DatagramTransport open() throws IOException;
+
+    /**
+     * @param port The port to receive on
+     * @return A transport for receiving on the port
+     * @throws IOException If the port cannot be bound
+     */
+    DatagramTransport bind(int port) throws IOException;
+  }
+
+  /** A datagram received, and the buffer it is received into, which a transport may swap */
+  final class Datagram {
+
+    ByteBuffer buf;
+    InetSocketAddress from;
+
+    /** @param buf The buffer to receive into, preferably from {@link BufferPool#DATAGRAMS} */
+    public Datagram(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    /** @return The buffer holding the last datagram received, ready to be read */
+    public ByteBuffer getBuffer() {
+      return buf;
+    }
+
+    /** @return The address and port the last datagram received came from */
+    public InetSocketAddress getSource() {
+      return from;
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.lordsofmidnight.server;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import com.lordsofmidnight.server.telemeters.Telemetry;
+import com.lordsofmidnight.utils.TickScheduler;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts many games at once without a client. Keeps a registry of running {@link HostedMatch}es and
+ * a single clock thread that, every tick, hands each match to a fixed size pool of workers. The
+ * number of threads therefore depends on the pool size rather than the number of matches. Each
+ * match receives inputs on its own port, counting up from the base port.
+ */
+public class DedicatedServer {
+
+  public static final long TICK_LENGTH = Telemetry.TICK_LENGTH;
+
+  private final ConcurrentHashMap<Integer, HostedMatch> matches = new ConcurrentHashMap<>();
+  private final ExecutorService workers;
+  private final TickScheduler clock;
+  private final int basePort;
+  private final Random seeds = new Random();
+  private int nextId = 0;
+
+  /**
+   * @param workerCount The number of threads used to run match ticks
+   * @param basePort The port of the first match, or -1 to host matches with no network
+   */
+  public DedicatedServer(int workerCount, int basePort) {
+    this.workers = Executors.newFixedThreadPool(workerCount);
+    this.basePort = basePort;
+    this.clock = new TickScheduler(TICK_LENGTH).addPhase(1, tick -> dispatch());
+    this.clock.setCatchUpPolicy(TickScheduler.CatchUpPolicy.SKIP, 0);
+    this.clock.setDaemon(true);
+  }
+
+  /**
+   * Runs the server with AI only matches, printing each match's CPU use every few seconds. Used to
+   * find out how many matches a host can take.
+   *
+   * @param args the number of matches and the number of workers, defaulting to 20 and the number
+   *     of processors
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int matchCount = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int workerCount =
+        args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    DedicatedServer server = new DedicatedServer(workerCount, -1);
+    Map map = new Map(MapGenerator.newRandomMap(2, 2));
+    for (int i = 0; i < matchCount; i++) {
+      server.createMatch(map, new ArrayList<>());
+    }
+    server.start();
+    while (!server.getMatches().isEmpty()) {
+      Thread.sleep(5000);
+      for (HostedMatch match : server.getMatches()) {
+        System.out.printf(
+            "Match %d: %d ticks, %d missed, %.2f%% of a core, slowest tick %.3fms%n",
+            match.getId(),
+            match.getTicks(),
+            match.getMissedTicks(),
+            match.getCpuLoad() * 100,
+            match.getMaxTickCpuTime() / 1000000.0);
+      }
+    }
+    server.shutDown();
+  }
+
+  /** Starts running the registered matches */
+  public void start() {
+    clock.start();
+  }
+
+  /**
+   * Creates a match and adds it to the registry. The match starts on the next tick if the server
+   * is running.
+   *
+   * @param map The map to play on
+   * @param players The addresses of the players, the remaining agents are controlled by AI
+   * @return The new match
+   * @throws IOException If the match's port cannot be bound
+   */
+  public synchronized HostedMatch createMatch(Map map, ArrayList<InetAddress> players)
+      throws IOException {
+    int id = nextId++;
+    int port = basePort < 0 ? -1 : basePort + id;
+    HostedMatch match = new HostedMatch(id, port, map, seeds.nextLong(), players);
+    matches.put(id, match);
+    return match;
+  }
+
+  /**
+   * Hands every match to the worker pool for this tick, and removes those that have finished.
+   * Matches still running their previous tick are left to catch up.
+   */
+  private void dispatch() {
+    for (HostedMatch match : matches.values()) {
+      if (!match.claimTick()) {
+        continue;
+      }
+      if (match.isFinished()) {
+        removeMatch(match.getId());
+      } else {
+        workers.execute(match);
+      }
+    }
+  }
+
+  /**
+   * Stops a match and removes it from the registry
+   *
+   * @param id The id of the match
+   */
+  public void removeMatch(int id) {
+    HostedMatch match = matches.remove(id);
+    if (match != null) {
+      match.close();
+    }
+  }
+
+  /**
+   * @param id The id of the match
+   * @return The match, or null if there is no match with that id
+   */
+  public HostedMatch getMatch(int id) {
+    return matches.get(id);
+  }
+
+  /** @return All matches currently running */
+  public Collection<HostedMatch> getMatches() {
+    return matches.values();
+  }
+
+  /** Stops the clock, the worker pool and then every match */
+  public void shutDown() {
+    clock.close();
+    workers.shutdown();
+    try {
+      workers.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    }
+    for (Integer id : matches.keySet()) {
+      removeMatch(id);
+    }
+  }
+}
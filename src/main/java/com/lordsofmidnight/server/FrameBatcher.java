@@ -0,0 +1,102 @@
+package com.lordsofmidnight.server;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Collects the messages produced during a tick into frames of at most one datagram's worth, so
+ * every recipient gets a single packet per tick rather than one per message. Messages are never
+ * split across frames: one that doesn't fit in what's left of the current frame starts the next.
+ * A batcher given the host's clock starts every frame with a {@link PacketCodec#TICK} message
+ * saying when it was sent. Not thread safe, the owner must hold its own lock around {@link #add}
+ * and {@link #flush}.
+ */
+public class FrameBatcher {
+
+  private final Queue<ByteBuffer> outputs;
+  private final ByteBuffer frame;
+  private final ByteBuffer message = ByteBuffer.allocate(PacketCodec.MAX_MESSAGE_SIZE);
+  private final IntSupplier clock;
+  private final int reserved; // bytes at the start of each frame kept for the tick
+
+  /**
+   * @param frameSize The most bytes of messages to put in a frame
+   * @param outputs The queue finished frames are added to
+   */
+  public FrameBatcher(int frameSize, Queue<ByteBuffer> outputs) {
+    this(frameSize, outputs, null);
+  }
+
+  /**
+   * @param frameSize The most bytes to put in a frame, including the tick
+   * @param outputs The queue finished frames are added to
+   * @param clock Gives the host's tick when a frame is finished, or null to not stamp them
+   */
+  public FrameBatcher(int frameSize, Queue<ByteBuffer> outputs, IntSupplier clock) {
+    this.outputs = outputs;
+    this.frame = ByteBuffer.allocate(frameSize);
+    this.clock = clock;
+    this.reserved = clock == null ? 0 : PacketCodec.TICK_SIZE;
+    this.frame.position(reserved);
+  }
+
+  /**
+   * Adds a message to the current frame, finishing the frame first if the message doesn't fit. A
+   * message larger than a whole frame is sent in a frame of its own.
+   *
+   * @param writer Writes the message into the buffer it is given
+   */
+  public void add(Consumer<ByteBuffer> writer) {
+    message.clear();
+    writer.accept(message);
+    message.flip();
+    if (message.remaining() > frame.remaining()) {
+      flush();
+    }
+    if (message.remaining() > frame.capacity() - reserved) {
+      ByteBuffer alone = ByteBuffer.allocate(reserved + message.remaining());
+      stamp(alone);
+      alone.put(message).flip();
+      outputs.offer(alone);
+    } else {
+      frame.put(message);
+    }
+  }
+
+  /**
+   * Adds the current frame to the output queue, if it holds anything. If a bounded queue is full
+   * the sender has fallen behind, and the frame is dropped as a lost datagram would be.
+   */
+  public void flush() {
+    if (frame.position() == reserved) {
+      return;
+    }
+    int end = frame.position();
+    frame.position(0);
+    stamp(frame);
+    frame.position(end);
+    frame.flip();
+    outputs.offer(copy(frame));
+    frame.clear();
+    frame.position(reserved);
+  }
+
+  /** @param buf The buffer to write the tick to, at its position, if frames are stamped */
+  private void stamp(ByteBuffer buf) {
+    if (clock != null) {
+      PacketCodec.writeTick(buf, clock.getAsInt());
+    }
+  }
+
+  /**
+   * @param buf The bytes to copy, from its position to its limit
+   * @return A buffer holding exactly those bytes, ready to be read
+   */
+  private static ByteBuffer copy(ByteBuffer buf) {
+    ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+    copy.put(buf).flip();
+    return copy;
+  }
+}
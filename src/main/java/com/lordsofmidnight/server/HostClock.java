@@ -0,0 +1,71 @@
+package com.lordsofmidnight.server;
+
+/**
+ * Estimates which tick the host is on, from the ticks stamped on the frames it sends and the round
+ * trip time its pings measure, as NTP does. Each frame gives a sample of the host's tick less the
+ * time the frame took to arrive. The largest sample of the last few seconds is the one delayed
+ * least, and half the round trip is added back for the delay even that one had. The first frame of
+ * the game sets the clock, and every frame after refines it, so a host ticking a little faster or
+ * slower than this machine is followed.
+ */
+public class HostClock {
+
+  private static final int WINDOW = 64; // samples kept, a few seconds of frames
+  private final PeerStats host;
+  private final long origin = System.nanoTime();
+  private final double[] samples = new double[WINDOW];
+  private int count = 0;
+  private int next = 0;
+  private double offset; // the host's tick at the origin, from the least delayed sample
+  private int newestTick = Integer.MIN_VALUE;
+
+  /** @param host The round trip time to the host, or null if it is not measured */
+  public HostClock(PeerStats host) {
+    this.host = host;
+  }
+
+  /**
+   * Adds a sample of the host's clock
+   *
+   * @param tick The tick stamped on a frame from the host
+   * @param now When the frame arrived, from {@link System#nanoTime()}
+   */
+  public synchronized void observe(int tick, long now) {
+    samples[next] = tick - ticksSince(now);
+    next = (next + 1) % WINDOW;
+    count = Math.min(count + 1, WINDOW);
+    offset = samples[0];
+    for (int i = 1; i < count; i++) {
+      offset = Math.max(offset, samples[i]);
+    }
+    newestTick = Math.max(newestTick, tick);
+  }
+
+  /** @return True once a frame from the host has arrived */
+  public synchronized boolean isSynchronised() {
+    return count > 0;
+  }
+
+  /**
+   * @param now The time, from {@link System#nanoTime()}
+   * @return The tick the host is estimated to be on at the time
+   */
+  public synchronized double getTick(long now) {
+    double rtt = host == null ? -1 : host.getRtt();
+    double oneWay = rtt < 0 ? 0 : rtt * 1_000_000 / 2 / DedicatedServer.TICK_LENGTH;
+    return offset + ticksSince(now) + oneWay;
+  }
+
+  /** @return The newest tick stamped on a frame, or {@link Integer#MIN_VALUE} if there are none */
+  public synchronized int getNewestTick() {
+    return newestTick;
+  }
+
+  /**
+   * @param now The time, from {@link System#nanoTime()}
+   * @return The number of ticks since the clock was created
+   */
+  private double ticksSince(long now) {
+    return (now - origin) / (double) DedicatedServer.TICK_LENGTH;
+  }
+}
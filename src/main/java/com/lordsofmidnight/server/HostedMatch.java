@@ -0,0 +1,231 @@
+package com.lordsofmidnight.server;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.server.telemeters.GameListener;
+import com.lordsofmidnight.server.telemeters.HostTelemetry;
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.TickScheduler;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single game hosted by a {@link DedicatedServer}. Rather than running its own threads, each
+ * tick is run on one of the server's shared workers, which also handles the match's networking
+ * for that tick. Keeps track of how much CPU time the match has used so hosts can be sized.
+ */
+public class HostedMatch implements Runnable, GameListener {
+
+  private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+  private final int id;
+  private final int port;
+  private final HostTelemetry telemetry;
+  private final TickScheduler scheduler;
+  private final BlockingQueue<Input> inputs = new LinkedBlockingQueue<>();
+  private final BlockingQueue<ByteBuffer> outputs = new LinkedBlockingQueue<>();
+  private final AtomicBoolean ticking = new AtomicBoolean(false);
+  private final PacketSender sender;
+  private final PacketReceiver receiver;
+
+  private volatile boolean finished = false;
+  private volatile long ticks = 0;
+  private volatile long missedTicks = 0;
+  private volatile long cpuTime = 0;
+  private volatile long maxTickCpuTime = 0;
+
+  /**
+   * @param id The id of the match on the server
+   * @param port The port the match receives client inputs on, or -1 for a match with no network
+   * @param map The map to play on
+   * @param seed The seed for the game
+   * @param players The addresses of the players, the remaining agents are controlled by AI
+   * @throws IOException If the port cannot be bound
+   */
+  public HostedMatch(int id, int port, Map map, long seed, ArrayList<InetAddress> players)
+      throws IOException {
+    this(id, port, map, seed, players, DatagramTransport.UDP);
+  }
+
+  /**
+   * @param id The id of the match on the server
+   * @param port The port the match receives client inputs on, or -1 for a match with no network
+   * @param map The map to play on
+   * @param seed The seed for the game
+   * @param players The addresses of the players, the remaining agents are controlled by AI
+   * @param transports Opens the transports to send and receive through
+   * @throws IOException If the port cannot be bound
+   */
+  public HostedMatch(
+      int id,
+      int port,
+      Map map,
+      long seed,
+      ArrayList<InetAddress> players,
+      DatagramTransport.Factory transports)
+      throws IOException {
+    this.id = id;
+    this.port = port;
+    this.telemetry = new HostTelemetry(players.size(), map, seed, inputs, outputs, this);
+    this.scheduler = telemetry.initialiseScheduler();
+    if (port < 0) {
+      this.sender = null;
+      this.receiver = null;
+    } else {
+      this.sender =
+          new PacketSender(NetworkUtility.CLIENT_DGRAM_PORT, outputs, players, transports.open());
+      // inputs are decoded as they arrive, and applied by the telemetry on the next tick
+      this.receiver =
+          new PacketReceiver(
+              transports.bind(port),
+              frame -> PacketCodec.readInputs(frame, inputs, telemetry),
+              sender);
+      this.receiver.start();
+    }
+  }
+
+  /**
+   * Claims the match for the next tick. A match that is still running its last tick can't be
+   * claimed, so a slow match never has more than one tick queued.
+   *
+   * @return True if the caller should run the tick
+   */
+  boolean claimTick() {
+    if (ticking.compareAndSet(false, true)) {
+      return true;
+    }
+    missedTicks++;
+    return false;
+  }
+
+  /** Runs a single tick of the match, then sends anything it produced to the clients */
+  @Override
+  public void run() {
+    long start = THREAD_BEAN.getCurrentThreadCpuTime();
+    try {
+      scheduler.runTick();
+      flush();
+    } finally {
+      long used = THREAD_BEAN.getCurrentThreadCpuTime() - start;
+      cpuTime += used;
+      if (used > maxTickCpuTime) {
+        maxTickCpuTime = used;
+      }
+      ticks++;
+      ticking.set(false);
+    }
+  }
+
+  /**
+   * Sends every queued frame, and a ping if one is due, or throws them away if the match has no
+   * network
+   */
+  private void flush() {
+    ByteBuffer frame;
+    while ((frame = outputs.poll()) != null) {
+      if (sender == null) {
+        continue;
+      }
+      try {
+        sender.send(frame);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    if (sender != null) {
+      try {
+        sender.pingIfDue();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /** Stops the game and closes the network */
+  void close() {
+    telemetry.stopGame();
+    flush();
+    if (receiver != null) {
+      receiver.shutdown();
+      sender.shutdown();
+    }
+  }
+
+  @Override
+  public void collisionDetected(Entity newMipsman) {}
+
+  @Override
+  public void finishGame() {
+    finished = true;
+  }
+
+  /** @return True once the game timer has run out */
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /** @return The id of the match */
+  public int getId() {
+    return id;
+  }
+
+  /** @return The port the match receives inputs on, -1 if it has no network */
+  public int getPort() {
+    return port;
+  }
+
+  /** @return The telemetry running the game */
+  public HostTelemetry getTelemetry() {
+    return telemetry;
+  }
+
+  /**
+   * Streams the match to spectators as well as the players. A tick only copies its frames for the
+   * relay, however many are watching. Ignored if the match has no network. The relay is not
+   * started or shut down by the match.
+   *
+   * @param spectators The relay, or null to stop streaming
+   */
+  public void setSpectators(SpectatorRelay spectators) {
+    if (sender != null) {
+      sender.setSpectators(spectators);
+    }
+  }
+
+  /** @return The health of the connection to each player, or null if the match has no network */
+  public NetworkStats getNetworkStats() {
+    return sender == null ? null : sender.getStats();
+  }
+
+  /** @return The number of ticks run */
+  public long getTicks() {
+    return ticks;
+  }
+
+  /** @return The number of ticks skipped because the previous tick had not finished */
+  public long getMissedTicks() {
+    return missedTicks;
+  }
+
+  /** @return The total CPU time used by the match's ticks, in nanoseconds */
+  public long getCpuTime() {
+    return cpuTime;
+  }
+
+  /** @return The most CPU time used by a single tick, in nanoseconds */
+  public long getMaxTickCpuTime() {
+    return maxTickCpuTime;
+  }
+
+  /** @return The fraction of a core the match uses when running in real time */
+  public double getCpuLoad() {
+    return ticks == 0 ? 0 : cpuTime / (double) (ticks * DedicatedServer.TICK_LENGTH);
+  }
+}
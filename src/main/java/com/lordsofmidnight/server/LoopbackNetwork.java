@@ -0,0 +1,188 @@
+package com.lordsofmidnight.server;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A network inside the process, so a host and any number of clients can play in one JVM without
+ * sockets, each at an address of its own such as 127.0.0.2. A datagram sent is copied once into a
+ * buffer from {@link BufferPool#DATAGRAMS}, as senders reuse their own, and that buffer is handed
+ * over to the receiver rather than copied again. As with UDP, nothing is sent back to say a
+ * datagram was dropped because nobody was bound to its address or the receiver's queue was full.
+ */
+public class LoopbackNetwork {
+
+  private static final int FIRST_EPHEMERAL_PORT = 49152;
+  private static final int EPHEMERAL_PORTS = 0x10000 - FIRST_EPHEMERAL_PORT;
+  private static final Delivery CLOSED = new Delivery(null, null); // wakes a closed receiver
+
+  private final ConcurrentHashMap<InetSocketAddress, Endpoint> bound = new ConcurrentHashMap<>();
+  private final AtomicInteger nextPort = new AtomicInteger();
+
+  /**
+   * @param address The address of a host on the network
+   * @return Opens transports at the address
+   */
+  public DatagramTransport.Factory at(InetAddress address) {
+    return new DatagramTransport.Factory() {
+      @Override
+      public DatagramTransport open() throws IOException {
+        for (int i = 0; i < EPHEMERAL_PORTS; i++) {
+          int port =
+              FIRST_EPHEMERAL_PORT + Math.floorMod(nextPort.getAndIncrement(), EPHEMERAL_PORTS);
+          Endpoint endpoint = tryBind(new InetSocketAddress(address, port));
+          if (endpoint != null) {
+            return endpoint;
+          }
+        }
+        throw new BindException("No free ports at " + address);
+      }
+
+      @Override
+      public DatagramTransport bind(int port) throws IOException {
+        InetSocketAddress socketAddress = new InetSocketAddress(address, port);
+        Endpoint endpoint = tryBind(socketAddress);
+        if (endpoint == null) {
+          throw new BindException("Address already in use: " + socketAddress);
+        }
+        return endpoint;
+      }
+    };
+  }
+
+  /**
+   * @param address The address and port to bind
+   * @return A transport bound to it, or null if one already is
+   */
+  private Endpoint tryBind(InetSocketAddress address) {
+    Endpoint endpoint = new Endpoint(address);
+    return bound.putIfAbsent(address, endpoint) == null ? endpoint : null;
+  }
+
+  /** @return The number of transports open on the network */
+  public int getOpenCount() {
+    return bound.size();
+  }
+
+  /** A transport bound to an address on the network */
+  private class Endpoint implements DatagramTransport {
+
+    private final InetSocketAddress address;
+    private final ArrayBlockingQueue<Delivery> queue =
+        new ArrayBlockingQueue<>(NetworkUtility.QUEUE_CAPACITY);
+    private volatile boolean open = true;
+
+    private Endpoint(InetSocketAddress address) {
+      this.address = address;
+    }
+
+    @Override
+    public void send(ByteBuffer datagram, InetSocketAddress to) throws IOException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+      Endpoint target = bound.get(to);
+      if (target == null) {
+        datagram.position(datagram.limit());
+        return;
+      }
+      ByteBuffer copy = BufferPool.DATAGRAMS.acquire();
+      ByteBuffer fitting = datagram.duplicate();
+      fitting.limit(fitting.position() + Math.min(fitting.remaining(), copy.capacity()));
+      copy.put(fitting);
+      copy.flip();
+      datagram.position(datagram.limit());
+      target.deliver(copy, address);
+    }
+
+    /**
+     * @param buf A datagram for this transport, which it now owns
+     * @param from Where it came from
+     */
+    private void deliver(ByteBuffer buf, InetSocketAddress from) {
+      if (!open || !queue.offer(new Delivery(buf, from))) {
+        BufferPool.DATAGRAMS.release(buf);
+      }
+    }
+
+    @Override
+    public InetSocketAddress receive(ByteBuffer buf) throws IOException {
+      Delivery delivery = take();
+      ByteBuffer fitting = delivery.buf;
+      fitting.limit(fitting.position() + Math.min(fitting.remaining(), buf.remaining()));
+      buf.put(fitting);
+      BufferPool.DATAGRAMS.release(delivery.buf);
+      return delivery.from;
+    }
+
+    @Override
+    public void receive(Datagram datagram) throws IOException {
+      Delivery delivery = take();
+      BufferPool.DATAGRAMS.release(datagram.buf);
+      datagram.buf = delivery.buf;
+      datagram.from = delivery.from;
+    }
+
+    /**
+     * @return The next datagram delivered
+     * @throws ClosedChannelException If the transport is closed, before or while waiting
+     */
+    private Delivery take() throws IOException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+      Delivery delivery;
+      try {
+        delivery = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ClosedByInterruptException();
+      }
+      if (delivery == CLOSED) {
+        queue.offer(CLOSED); // for anyone else waiting
+        throw new ClosedChannelException();
+      }
+      return delivery;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    /** Unbinds the transport, throwing away anything it hasn't received */
+    @Override
+    public void close() {
+      if (!open) {
+        return;
+      }
+      open = false;
+      bound.remove(address, this);
+      Delivery delivery;
+      while ((delivery = queue.poll()) != null) {
+        BufferPool.DATAGRAMS.release(delivery.buf);
+      }
+      queue.offer(CLOSED);
+    }
+  }
+
+  /** A datagram waiting to be received */
+  private static class Delivery {
+
+    private final ByteBuffer buf;
+    private final InetSocketAddress from;
+
+    private Delivery(ByteBuffer buf, InetSocketAddress from) {
+      this.buf = buf;
+      this.from = from;
+    }
+  }
+}
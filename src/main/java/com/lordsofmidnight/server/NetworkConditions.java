@@ -0,0 +1,173 @@
+package com.lordsofmidnight.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How a {@link SimulatedTransport} treats what is sent through it. Given on the command line as a
+ * list of settings in the {@value #PROPERTY} system property, such as {@code
+ * -Dlordsofmidnight.netsim=latency=80,jitter=20,loss=0.02,duplicate=0.01,reorder=0.05,seed=7}.
+ * Settings left out have no effect. Each transport opened is seeded one after the last, so a run
+ * that opens them in the same order makes the same choices.
+ */
+public final class NetworkConditions {
+
+  /** The system property giving the conditions to simulate */
+  public static final String PROPERTY = "lordsofmidnight.netsim";
+
+  private static final NetworkConditions CONFIGURED = fromProperty();
+  private static final AtomicInteger opened = new AtomicInteger();
+
+  private final int latency;
+  private final int jitter;
+  private final double loss;
+  private final double duplication;
+  private final double reordering;
+  private final long seed;
+
+  /**
+   * @param latency The time every datagram is held back for, in milliseconds
+   * @param jitter The most the latency of a datagram varies by either way, in milliseconds
+   * @param loss The chance a datagram is dropped
+   * @param duplication The chance a datagram is sent twice
+   * @param reordering The chance a datagram is sent straight away, ahead of those held back
+   * @param seed The seed of the choices made
+   * @throws IllegalArgumentException If a time is negative, or a chance is not between 0 and 1
+   */
+  public NetworkConditions(
+      int latency, int jitter, double loss, double duplication, double reordering, long seed) {
+    if (latency < 0 || jitter < 0) {
+      throw new IllegalArgumentException("Latency and jitter can't be negative");
+    }
+    checkChance("loss", loss);
+    checkChance("duplicate", duplication);
+    checkChance("reorder", reordering);
+    this.latency = latency;
+    this.jitter = jitter;
+    this.loss = loss;
+    this.duplication = duplication;
+    this.reordering = reordering;
+    this.seed = seed;
+  }
+
+  /**
+   * @param spec Comma separated settings, each a name and a value: latency and jitter in
+   *     milliseconds, the chances of loss, duplicate and reorder, and seed
+   * @return The conditions
+   * @throws IllegalArgumentException If a setting is unknown or its value is invalid
+   */
+  public static NetworkConditions parse(String spec) {
+    int latency = 0;
+    int jitter = 0;
+    double loss = 0;
+    double duplication = 0;
+    double reordering = 0;
+    long seed = 0;
+    for (String setting : spec.split(",")) {
+      String[] parts = setting.trim().split("=");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Expected name=value, got " + setting);
+      }
+      String value = parts[1].trim();
+      try {
+        switch (parts[0].trim()) {
+          case "latency":
+            latency = Integer.parseInt(value);
+            break;
+          case "jitter":
+            jitter = Integer.parseInt(value);
+            break;
+          case "loss":
+            loss = Double.parseDouble(value);
+            break;
+          case "duplicate":
+            duplication = Double.parseDouble(value);
+            break;
+          case "reorder":
+            reordering = Double.parseDouble(value);
+            break;
+          case "seed":
+            seed = Long.parseLong(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown network condition " + parts[0]);
+        }
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid value for " + parts[0] + ": " + value, e);
+      }
+    }
+    return new NetworkConditions(latency, jitter, loss, duplication, reordering, seed);
+  }
+
+  /** @return The conditions given by the system property, or null if there are none */
+  private static NetworkConditions fromProperty() {
+    String spec = System.getProperty(PROPERTY);
+    if (spec == null || spec.trim().isEmpty()) {
+      return null;
+    }
+    try {
+      NetworkConditions conditions = parse(spec);
+      System.out.println("Simulating network conditions: " + conditions);
+      return conditions;
+    } catch (IllegalArgumentException e) {
+      e.printStackTrace();
+      System.out.println("Ignoring invalid " + PROPERTY + ": " + spec);
+      return null;
+    }
+  }
+
+  /**
+   * @return The conditions given by the system property for the next transport opened, seeded
+   *     after the last, or null if there are none
+   */
+  static NetworkConditions nextConfigured() {
+    if (CONFIGURED == null) {
+      return null;
+    }
+    NetworkConditions c = CONFIGURED;
+    long seed = c.seed + opened.getAndIncrement();
+    return new NetworkConditions(c.latency, c.jitter, c.loss, c.duplication, c.reordering, seed);
+  }
+
+  private static void checkChance(String name, double chance) {
+    if (!(chance >= 0 && chance <= 1)) {
+      throw new IllegalArgumentException("The chance of " + name + " must be from 0 to 1");
+    }
+  }
+
+  /** @return The time every datagram is held back for, in milliseconds */
+  public int getLatency() {
+    return latency;
+  }
+
+  /** @return The most the latency of a datagram varies by either way, in milliseconds */
+  public int getJitter() {
+    return jitter;
+  }
+
+  /** @return The chance a datagram is dropped */
+  public double getLoss() {
+    return loss;
+  }
+
+  /** @return The chance a datagram is sent twice */
+  public double getDuplication() {
+    return duplication;
+  }
+
+  /** @return The chance a datagram is sent straight away, ahead of those held back */
+  public double getReordering() {
+    return reordering;
+  }
+
+  /** @return The seed of the choices made */
+  public long getSeed() {
+    return seed;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "latency=%d,jitter=%d,loss=%s,duplicate=%s,reorder=%s,seed=%d",
+        latency, jitter, loss, duplication, reordering, seed);
+  }
+}
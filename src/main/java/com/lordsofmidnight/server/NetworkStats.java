@@ -0,0 +1,59 @@
+package com.lordsofmidnight.server;
+
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The statistics kept by a {@link PacketSender} and the {@link PacketReceiver} answering its
+ * pings, for every address they talk to and for the queue of frames waiting to be sent. Safe to
+ * poll from any thread, such as the renderer drawing them over the game.
+ */
+public class NetworkStats {
+
+  private final ConcurrentHashMap<InetAddress, PeerStats> peers = new ConcurrentHashMap<>();
+  private volatile int queueDepth = 0;
+  private volatile int maxQueueDepth = 0;
+
+  /**
+   * @param nanos A time from {@link System#nanoTime()}
+   * @return The time in microseconds, as carried by a ping. Wraps around every hour or so, which
+   *     only matters if a ping takes that long to be answered.
+   */
+  static int micros(long nanos) {
+    return (int) (nanos / 1000);
+  }
+
+  /**
+   * @param address The address of a peer
+   * @return The statistics for the peer, which are started if there are none yet
+   */
+  public PeerStats getPeer(InetAddress address) {
+    PeerStats peer = peers.get(address);
+    return peer != null ? peer : peers.computeIfAbsent(address, PeerStats::new);
+  }
+
+  /** @return The statistics of every peer sent to or received from */
+  public Collection<PeerStats> getPeers() {
+    return Collections.unmodifiableCollection(peers.values());
+  }
+
+  /** @param depth The number of frames waiting to be sent */
+  void recordQueueDepth(int depth) {
+    queueDepth = depth;
+    if (depth > maxQueueDepth) {
+      maxQueueDepth = depth;
+    }
+  }
+
+  /** @return The number of frames that were waiting to be sent when the last one was */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /** @return The most frames seen waiting to be sent */
+  public int getMaxQueueDepth() {
+    return maxQueueDepth;
+  }
+}
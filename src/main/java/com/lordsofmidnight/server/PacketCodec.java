@@ -0,0 +1,369 @@
+package com.lordsofmidnight.server;
+
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.powerUps.PowerUp;
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+
+/**
+ * Encodes and decodes the binary messages sent during a game. Every datagram starts with the
+ * protocol {@link #VERSION} and a 16 bit sequence number, counted separately for each address it
+ * is sent to so lost datagrams can be counted, then carries one or more messages. A message is a
+ * byte giving its type followed by fixed width fields, so it can be read straight out of the
+ * datagram without building Strings. Coordinates are quantized to unsigned 16 bit fixed point with
+ * a precision of 1/{@value #COORDINATE_SCALE} of a cell, which covers maps up to 128 cells across.
+ */
+public final class PacketCodec {
+
+  /** The version of the protocol, datagrams of any other version are dropped */
+  public static final byte VERSION = 6;
+  /** The size of the version and sequence number before the messages of a datagram */
+  public static final int HEADER_SIZE = 1 + 2;
+
+  /** Client to server, an {@link Input}: id, direction, the tick the player was seeing or 0xFFFF */
+  public static final byte INPUT = 1;
+  /** Client to server, a {@link Snapshot} being received: id, snapshot tick */
+  public static final byte ACK = 2;
+  /** The state of every agent, as the changes since an acknowledged {@link Snapshot} */
+  public static final byte SNAPSHOT = 3;
+  /** A change of direction: id, direction, x, y, mipsman id */
+  public static final byte MOVEMENT = 4;
+  /** A powerUp being used: id, powerUp, x, y */
+  public static final byte POWERUP_USED = 5;
+  /** A powerUp box appearing, as an event or listed again with each keyframe: x, y */
+  public static final byte POWERUP_BOX = 6;
+  /** The host has stopped the game */
+  public static final byte STOP = 7;
+  /** A message that must arrive, in order: sequence, oldest sequence kept, length, the message */
+  public static final byte EVENT = 8;
+  /** Client to server, the events received: id, first sequence missing, bits for those after */
+  public static final byte EVENT_ACK = 9;
+  /** A round trip time probe, always sent in a datagram of its own: the sender's clock in us */
+  public static final byte PING = 10;
+  /** The reply to a {@link #PING}, sent in a datagram of its own: the time it carried */
+  public static final byte PONG = 11;
+  /** Host to client, first in every frame: the host's tick when the frame was sent */
+  public static final byte TICK = 12;
+
+  /** The size of an {@link #INPUT} message */
+  public static final int INPUT_SIZE = 1 + 1 + 1 + 2;
+  /** The size of an {@link #ACK} message */
+  public static final int ACK_SIZE = 1 + 1 + 4;
+  /** The size of an {@link #EVENT_ACK} message */
+  public static final int EVENT_ACK_SIZE = 1 + 1 + 2 + 4;
+  /** The size of a {@link #PING} or {@link #PONG} message */
+  public static final int PING_SIZE = 1 + 4;
+  /** The size of a {@link #TICK} message */
+  public static final int TICK_SIZE = 1 + 4;
+  /** Large enough for any single message in a game of up to 255 agents */
+  public static final int MAX_MESSAGE_SIZE = Snapshot.MAX_SIZE;
+  /** The most bytes of messages batched into one datagram, small enough not to be fragmented */
+  public static final int MAX_FRAME_SIZE = 1200;
+  /** The largest datagram sent, as a message too big for a frame is sent on its own, stamped */
+  public static final int MAX_DATAGRAM_SIZE =
+      HEADER_SIZE + Math.max(MAX_FRAME_SIZE, TICK_SIZE + MAX_MESSAGE_SIZE);
+
+  static final int COORDINATE_SCALE = 512;
+  private static final int COORDINATE_SIZE = 2;
+  private static final int MAX_COORDINATE = 0xFFFF;
+  private static final int NO_TICK = 0xFFFF; // an input with no tick, or one too late to send
+
+  private PacketCodec() {}
+
+  /**
+   * @param buf The buffer to write to
+   * @param input The input to send to the server
+   */
+  public static void writeInput(ByteBuffer buf, Input input) {
+    buf.put(INPUT);
+    buf.put((byte) input.getClientID());
+    Direction move = input.isItemUsage() ? Direction.USE : input.getMove();
+    buf.put((byte) move.toInt());
+    int tick = input.getTick();
+    buf.putShort((short) (tick >= 0 && tick < NO_TICK ? tick : NO_TICK));
+  }
+
+  /**
+   * @param buf The buffer to read from, positioned after the message type
+   * @return The input that was sent
+   */
+  public static Input readInput(ByteBuffer buf) {
+    int id = readUnsignedByte(buf);
+    Input input = new Input(id, Direction.fromInt(buf.get()));
+    int tick = buf.getShort() & 0xFFFF;
+    if (tick != NO_TICK) {
+      input.setTick(tick);
+    }
+    return input;
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param id The id of the client
+   * @param tick The tick of the snapshot received
+   */
+  public static void writeAck(ByteBuffer buf, int id, int tick) {
+    buf.put(ACK);
+    buf.put((byte) id);
+    buf.putInt(tick);
+  }
+
+  /**
+   * Reads every input in a frame sent by a client, skipping any other messages
+   *
+   * @param frame The frame, without the version
+   * @param inputs The queue to add the inputs to
+   */
+  public static void readInputs(ByteBuffer frame, Queue<Input> inputs) {
+    readInputs(frame, inputs, null);
+  }
+
+  /**
+   * Reads every input and acknowledgement in a frame sent by a client, skipping any other messages
+   *
+   * @param frame The frame, without the version
+   * @param inputs The queue to add the inputs to
+   * @param acks Receives the acknowledgements, or null to skip them
+   */
+  public static void readInputs(ByteBuffer frame, Queue<Input> inputs, AckListener acks) {
+    while (frame.hasRemaining()) {
+      byte type = frame.get();
+      if (type == INPUT) {
+        inputs.add(readInput(frame));
+      } else if (type == ACK && acks != null) {
+        int id = readUnsignedByte(frame);
+        acks.acknowledgeSnapshot(id, frame.getInt());
+      } else if (type == EVENT_ACK && acks != null) {
+        int id = readUnsignedByte(frame);
+        int next = frame.getShort() & 0xFFFF;
+        acks.acknowledgeEvents(id, next, frame.getInt());
+      } else {
+        skip(frame, type);
+      }
+    }
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param input The input that was applied, which holds the id and new direction
+   * @param position The position of the agent when it changed direction
+   * @param mipID The id of mipsman
+   */
+  public static void writeMovement(ByteBuffer buf, Input input, Point position, int mipID) {
+    buf.put(MOVEMENT);
+    buf.put((byte) input.getClientID());
+    buf.put((byte) input.getMove().toInt());
+    writeCoordinate(buf, position.getX());
+    writeCoordinate(buf, position.getY());
+    buf.put((byte) mipID);
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param id The id of the agent that used the powerUp
+   * @param powerUp The powerUp used
+   * @param position Where it was used
+   */
+  public static void writePowerUpUsed(ByteBuffer buf, int id, PowerUp powerUp, Point position) {
+    buf.put(POWERUP_USED);
+    buf.put((byte) id);
+    buf.put((byte) powerUp.toInt());
+    writeCoordinate(buf, position.getX());
+    writeCoordinate(buf, position.getY());
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param position The position of the powerUp box
+   */
+  public static void writePowerUpBox(ByteBuffer buf, Point position) {
+    buf.put(POWERUP_BOX);
+    writeCoordinate(buf, position.getX());
+    writeCoordinate(buf, position.getY());
+  }
+
+  /** @param buf The buffer to write to */
+  public static void writeStop(ByteBuffer buf) {
+    buf.put(STOP);
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param seq The sequence number of the event
+   * @param oldest The oldest sequence the sender still keeps, those before it will not be resent
+   * @param message The message it carries
+   * @param length The length of the message
+   */
+  public static void writeEvent(ByteBuffer buf, int seq, int oldest, byte[] message, int length) {
+    buf.put(EVENT);
+    buf.putShort((short) seq);
+    buf.putShort((short) oldest);
+    buf.put((byte) length);
+    buf.put(message, 0, length);
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param id The id of the client
+   * @param next The sequence of the first event it is missing
+   * @param received Bit i is set if event next + i + 1 has been received
+   */
+  public static void writeEventAck(ByteBuffer buf, int id, int next, int received) {
+    buf.put(EVENT_ACK);
+    buf.put((byte) id);
+    buf.putShort((short) next);
+    buf.putInt(received);
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param time The sender's clock, in microseconds
+   */
+  public static void writePing(ByteBuffer buf, int time) {
+    buf.put(PING);
+    buf.putInt(time);
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param time The time carried by the ping being answered
+   */
+  public static void writePong(ByteBuffer buf, int time) {
+    buf.put(PONG);
+    buf.putInt(time);
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param tick The host's tick
+   */
+  public static void writeTick(ByteBuffer buf, int tick) {
+    buf.put(TICK);
+    buf.putInt(tick);
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param value The coordinate, clamped to what the fixed point can hold
+   */
+  public static void writeCoordinate(ByteBuffer buf, double value) {
+    buf.putShort((short) quantize(value));
+  }
+
+  /**
+   * @param buf The buffer to read from
+   * @return The coordinate
+   */
+  public static double readCoordinate(ByteBuffer buf) {
+    return toCoordinate(buf.getShort() & MAX_COORDINATE);
+  }
+
+  /**
+   * @param value The coordinate
+   * @return The coordinate as it is sent, clamped to what the fixed point can hold
+   */
+  static int quantize(double value) {
+    return (int) Math.max(0, Math.min(MAX_COORDINATE, Math.round(value * COORDINATE_SCALE)));
+  }
+
+  /**
+   * @param quantized The coordinate as it is sent
+   * @return The coordinate
+   */
+  static double toCoordinate(int quantized) {
+    return quantized / (double) COORDINATE_SCALE;
+  }
+
+  /**
+   * @param buf The buffer to read from
+   * @return The next byte, as an unsigned value
+   */
+  public static int readUnsignedByte(ByteBuffer buf) {
+    return buf.get() & 0xFF;
+  }
+
+  /**
+   * Moves past the fields of a message without reading them
+   *
+   * @param buf The buffer, positioned after the message type
+   * @param type The type of the message
+   * @throws IllegalArgumentException If the type is not known
+   */
+  public static void skip(ByteBuffer buf, byte type) {
+    switch (type) {
+      case INPUT:
+        buf.position(buf.position() + INPUT_SIZE - 1);
+        break;
+      case ACK:
+        buf.position(buf.position() + ACK_SIZE - 1);
+        break;
+      case SNAPSHOT:
+        Snapshot.skip(buf);
+        break;
+      case MOVEMENT:
+        buf.position(buf.position() + 3 + 2 * COORDINATE_SIZE);
+        break;
+      case POWERUP_USED:
+        buf.position(buf.position() + 2 + 2 * COORDINATE_SIZE);
+        break;
+      case POWERUP_BOX:
+        buf.position(buf.position() + 2 * COORDINATE_SIZE);
+        break;
+      case STOP:
+        break;
+      case EVENT:
+        buf.position(buf.position() + 4);
+        int length = readUnsignedByte(buf);
+        buf.position(buf.position() + length);
+        break;
+      case EVENT_ACK:
+        buf.position(buf.position() + EVENT_ACK_SIZE - 1);
+        break;
+      case PING:
+      case PONG:
+        buf.position(buf.position() + PING_SIZE - 1);
+        break;
+      case TICK:
+        buf.position(buf.position() + TICK_SIZE - 1);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown message type " + type);
+    }
+  }
+
+  /**
+   * @param frame The frame, without the version. Its position is left unchanged.
+   * @param type The type of message to look for
+   * @return True if the frame holds a message of the given type
+   */
+  public static boolean contains(ByteBuffer frame, byte type) {
+    ByteBuffer buf = frame.duplicate();
+    while (buf.hasRemaining()) {
+      byte next = buf.get();
+      if (next == type) {
+        return true;
+      }
+      skip(buf, next);
+    }
+    return false;
+  }
+
+  /** Receives the acknowledgements clients send for the snapshots and events they have received */
+  public interface AckListener {
+
+    /**
+     * @param id The id of the client
+     * @param tick The tick of the snapshot it received
+     */
+    void acknowledgeSnapshot(int id, int tick);
+
+    /**
+     * @param id The id of the client
+     * @param next The sequence of the first event it hasn't received
+     * @param received Bit i is set if the event i + 1 after next has been received
+     */
+    void acknowledgeEvents(int id, int next, int received);
+  }
+}
@@ -1,63 +1,149 @@
 package com.lordsofmidnight.server;
 
+import com.lordsofmidnight.server.DatagramTransport.Datagram;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.util.Queue;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 
 /**
- * Thread for recieving packets during the running game. It unpacks them from their UDP form into
- * strings then adds them to feedQueue for further processing.
+ * Thread for recieving packets during the running game. Each datagram is received from a {@link
+ * DatagramTransport} into a direct buffer borrowed from {@link BufferPool#DATAGRAMS}, its protocol
+ * version is checked, and the frame of messages it carries is handed straight to a {@link
+ * FrameHandler} on this thread. Pings are answered and pongs timed here instead, and every
+ * datagram is counted in the {@link NetworkStats} of the sender this receiver works with.
+ *
+ * @see PacketCodec
  */
 public class PacketReceiver extends Thread {
 
-  private boolean running = false;
-  private Queue<String> feedQueue;
-  private DatagramSocket ds;
+  private volatile boolean running = false;
+  private final FrameHandler handler;
+  private final DatagramTransport transport;
+  private final PacketSender replies;
+  private final NetworkStats stats;
+  private final ByteBuffer pong = ByteBuffer.allocate(PacketCodec.PING_SIZE);
 
-  public PacketReceiver(int port, Queue<String> feedQueue) throws IOException {
-    this.ds = new DatagramSocket(port);
-    this.feedQueue = feedQueue;
+  /**
+   * @param port The port to receive on
+   * @param handler Called with each frame received
+   * @throws IOException If the port cannot be bound
+   */
+  public PacketReceiver(int port, FrameHandler handler) throws IOException {
+    this(port, handler, null);
+  }
+
+  /**
+   * @param port The port to receive on
+   * @param handler Called with each frame received
+   * @param replies Answers the pings received and shares its stats, or null to ignore pings
+   * @throws IOException If the port cannot be bound
+   */
+  public PacketReceiver(int port, FrameHandler handler, PacketSender replies) throws IOException {
+    this(DatagramTransport.bind(port), handler, replies);
   }
 
   /**
-   * Continuously listens to the port agreed and adds the messages to the relevant queue in the
-   * server
+   * @param transport What to receive the packets from, closed by {@link #shutdown()}
+   * @param handler Called with each frame received
+   * @param replies Answers the pings received and shares its stats, or null to ignore pings
+   */
+  public PacketReceiver(DatagramTransport transport, FrameHandler handler, PacketSender replies) {
+    this.replies = replies;
+    this.stats = replies == null ? new NetworkStats() : replies.getStats();
+    this.transport = transport;
+    this.handler = handler;
+  }
+
+  /**
+   * Continuously listens to the port agreed and passes the frames received to the handler
    */
   @Override
   public void run() {
     super.run();
     running = true;
-    while (running) {
-      try {
-        byte[] buf = new byte[NetworkUtility.STRING_LIMIT];
-        DatagramPacket packet = new DatagramPacket(buf, buf.length);
-        ds.receive(packet);
-
-        String received = new String(packet.getData(), 0, packet.getLength());
-        received = received.replaceAll("\u0000.*", "");
-
-        if (received.startsWith(NetworkUtility.PREFIX)
-            && received.endsWith(NetworkUtility.SUFFIX)) {
-          received =
-              received.substring(
-                  NetworkUtility.PREFIX.length(),
-                  received.length() - NetworkUtility.SUFFIX.length()); // rids PREFIX and SUFFIX
-          feedQueue.add(received.trim());
+    Datagram datagram = new Datagram(BufferPool.DATAGRAMS.acquire());
+    try {
+      while (running) {
+        transport.receive(datagram);
+        ByteBuffer buf = datagram.getBuffer();
+        if (buf.remaining() >= PacketCodec.HEADER_SIZE && buf.get() == PacketCodec.VERSION) {
+          try {
+            receive(buf, datagram.getSource().getAddress());
+          } catch (RuntimeException e) {
+            e.printStackTrace();
+            System.out.println("Frame received had an invalid message");
+          }
         }
-      } catch (IOException e) {
-        e.printStackTrace();
       }
+    } catch (ClosedChannelException e) {
+      // closed by shutdown
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      BufferPool.DATAGRAMS.release(datagram.getBuffer());
     }
   }
 
+  /**
+   * Counts a datagram, then answers it if it is a ping or pong and passes it on otherwise
+   *
+   * @param buf The datagram, positioned after the version
+   * @param from The address it came from
+   */
+  private void receive(ByteBuffer buf, InetAddress from) {
+    long now = System.nanoTime();
+    PeerStats peer = stats.getPeer(from);
+    peer.received(buf.getShort() & 0xFFFF, buf.limit(), now);
+    if (!buf.hasRemaining()) {
+      return;
+    }
+    byte type = buf.get(buf.position());
+    if (type == PacketCodec.PONG) {
+      buf.get();
+      peer.pong(buf.getInt(), now);
+    } else if (type == PacketCodec.PING) {
+      buf.get();
+      int time = buf.getInt();
+      if (replies != null) {
+        pong.clear();
+        PacketCodec.writePong(pong, time);
+        pong.flip();
+        try {
+          replies.sendTo(pong, from);
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    } else {
+      handler.handle(buf);
+    }
+  }
+
+  /** @return What has been received, shared with the sender answering pings if there is one */
+  public NetworkStats getStats() {
+    return stats;
+  }
+
   /**
    * closes the reciever thread.
    */
   public void shutdown() {
     this.running = false;
-    if (ds != null && !ds.isClosed()) {
-      ds.close();
+    try {
+      transport.close();
+    } catch (IOException e) {
+      e.printStackTrace();
     }
   }
+
+  /** Receives the frames that arrive, on the receiving thread */
+  public interface FrameHandler {
+
+    /**
+     * @param frame The messages received, without the version. Only valid until this returns, as
+     *     the buffer is reused for the next datagram.
+     */
+    void handle(ByteBuffer frame);
+  }
 }
@@ -1,22 +1,40 @@
 package com.lordsofmidnight.server;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Packs and sends strings from feedqueue, as UDP packets to a specified IP.
+ * Sends the frames from feedqueue, as UDP packets to a specified IP. The thread sleeps until a
+ * frame is queued, and every frame goes out on the same {@link DatagramTransport}. Every so often a
+ * ping is sent too, and what is sent to each address is counted in the sender's {@link
+ * NetworkStats}. Frames can also be passed on to a {@link SpectatorRelay}, which sends them to any
+ * number of spectators from a thread of its own.
+ *
+ * @see PacketCodec
  */
 public class PacketSender extends Thread {
 
-  private int port;
-  private boolean running = true;
-  private Queue<String> feedQueue;
+  private static final long SHUTDOWN_TIMEOUT = 1000; // ms to wait for pending frames to be sent
+  private static final ByteBuffer WAKE = ByteBuffer.allocate(0); // queued to wake the thread
+  private static final long PING_INTERVAL = 500; // ms
+  private final int port;
+  private volatile boolean running = true;
+  private final BlockingQueue<ByteBuffer> feedQueue;
   private ArrayList<InetAddress> ipStore = new ArrayList<>();
-  private DatagramSocket ds;
+  private final DatagramTransport transport;
+  private final byte[] buf = new byte[PacketCodec.MAX_DATAGRAM_SIZE];
+  private final ByteBuffer datagram = ByteBuffer.wrap(buf);
+  private final HashMap<InetAddress, InetSocketAddress> destinations = new HashMap<>();
+  private final ByteBuffer ping = ByteBuffer.allocate(PacketCodec.PING_SIZE);
+  private final NetworkStats stats = new NetworkStats();
+  private long lastPing = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(PING_INTERVAL);
+  private volatile SpectatorRelay spectators;
 
   /**
    * Constructs a Packet Sender object
@@ -24,76 +42,205 @@ public class PacketSender extends Thread {
    * @param port the port we want to send to
    * @param feedQueue the queue which we are constantly reading from to send messages from.
    * @param ips The list of IP addresses which are listening on the port for a message.
+   * @throws IOException If the socket cannot be opened
    */
-  public PacketSender(int port, Queue<String> feedQueue, ArrayList<InetAddress> ips) {
+  public PacketSender(int port, BlockingQueue<ByteBuffer> feedQueue, ArrayList<InetAddress> ips)
+      throws IOException {
+    this(port, feedQueue, ips, DatagramTransport.open());
+  }
+
+  /**
+   * @param port the port we want to send to
+   * @param feedQueue the queue which we are constantly reading from to send messages from.
+   * @param ips The list of IP addresses which are listening on the port for a message.
+   * @param transport What to send the packets through, closed along with the sender
+   */
+  public PacketSender(
+      int port,
+      BlockingQueue<ByteBuffer> feedQueue,
+      ArrayList<InetAddress> ips,
+      DatagramTransport transport) {
     this.port = port;
     this.feedQueue = feedQueue;
     this.ipStore = ips;
-    try {
-      ds = new DatagramSocket();
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
+    this.transport = transport;
   }
 
   /**
-   * Looks at the queue of messages and sends them to the needed recipient.
+   * Waits for frames on the queue and sends them to the needed recipients, pinging them when it
+   * is time to, starting straight away so the round trip time is known early. Once shut down,
+   * sends whatever is still queued before closing the socket.
    */
   @Override
   public void run() {
     super.run();
-    running = true;
     try {
       while (running) {
-        if (feedQueue.isEmpty()) {
-          continue;
+        pingIfDue();
+        ByteBuffer frame = feedQueue.poll(PING_INTERVAL, TimeUnit.MILLISECONDS);
+        if (frame != null && frame != WAKE) {
+          send(frame);
         }
-        String s = feedQueue.poll();
-        // System.out.println("About to send " + s);
-        send(s);
       }
-
+    } catch (InterruptedException e) {
+      e.printStackTrace();
     } catch (IOException e) {
       running = false;
-      System.out.println("ServerGameplayHandler closed");
+      System.out.println("PacketSender closed");
     }
+    close();
   }
 
   /**
-   * Takes a String and copies it into the outgoing packet byte buffer, as well as adding PREFIX and
-   * SUFFIX strings to the buffer edges.
+   * Copies a frame into the outgoing packet byte buffer, after the header. The sequence number is
+   * filled in for each recipient.
+   *
+   * @param frame The frame, its position is left unchanged
+   * @return The length of the datagram
    */
-  private byte[] prepareBuf(String s) { // will truncate
-
-    byte[] buf;
-    String toSend = NetworkUtility.PREFIX + s + NetworkUtility.SUFFIX;
-    buf = toSend.getBytes(NetworkUtility.CHARSET);
-
-    return buf;
+  private int prepareBuf(ByteBuffer frame) {
+    int length = PacketCodec.HEADER_SIZE + frame.remaining();
+    buf[0] = PacketCodec.VERSION;
+    frame.duplicate().get(buf, PacketCodec.HEADER_SIZE, frame.remaining());
+    return length;
   }
 
   /**
    * Sends packets to each IP in the list of IPs listening to agreed port.
    *
-   * @param message the message which we want to send to the com.lordsofmidnight.server
+   * @param frame the messages which we want to send, as written by {@link PacketCodec}
    * @throws IOException caused by the packets and and interfaces.
    */
-  public void send(String message) throws IOException {
-    byte[] buf = prepareBuf(message);
-
-    DatagramSocket ds = new DatagramSocket();
+  public synchronized void send(ByteBuffer frame) throws IOException {
+    stats.recordQueueDepth(feedQueue.size());
+    broadcast(frame);
+    SpectatorRelay relay = spectators;
+    if (relay != null) {
+      relay.offer(frame);
+    }
+  }
 
+  /**
+   * Sends a frame to each IP in the list, but not to the spectators
+   *
+   * @param frame The messages to send, as written by {@link PacketCodec}
+   * @throws IOException If a packet could not be sent
+   */
+  private void broadcast(ByteBuffer frame) throws IOException {
+    int length = prepareBuf(frame);
     for (InetAddress ip : ipStore) {
-      DatagramPacket packet = new DatagramPacket(buf, 0, buf.length, ip, this.port);
-      ds.send(packet);
+      sendDatagram(length, ip);
     }
   }
 
-  /** Stops thread execution. */
+  /**
+   * Sets where the frames sent are passed on to for spectators, pings are not
+   *
+   * @param spectators The relay, or null to stop passing frames on
+   */
+  public void setSpectators(SpectatorRelay spectators) {
+    this.spectators = spectators;
+  }
+
+  /**
+   * Sends a frame to a single address, on the agreed port
+   *
+   * @param frame The messages to send, as written by {@link PacketCodec}
+   * @param ip The address to send them to
+   * @throws IOException If the packet could not be sent
+   */
+  public synchronized void sendTo(ByteBuffer frame, InetAddress ip) throws IOException {
+    sendDatagram(prepareBuf(frame), ip);
+  }
+
+  /**
+   * @param length The length of the datagram in the outgoing packet byte buffer
+   * @param ip The address to send it to, whose sequence number it is given
+   * @throws IOException If the packet could not be sent
+   */
+  private void sendDatagram(int length, InetAddress ip) throws IOException {
+    PeerStats peer = stats.getPeer(ip);
+    int sequence = peer.nextSequence();
+    buf[1] = (byte) (sequence >> 8);
+    buf[2] = (byte) sequence;
+    InetSocketAddress destination = destinations.get(ip);
+    if (destination == null) {
+      destination = new InetSocketAddress(ip, port);
+      destinations.put(ip, destination);
+    }
+    datagram.clear();
+    datagram.limit(length);
+    transport.send(datagram, destination);
+    peer.sent(length, System.nanoTime());
+  }
+
+  /**
+   * Pings every recipient if none have been pinged for a while. Called by the thread while it is
+   * running, and by whoever sends the frames when it isn't started.
+   *
+   * @throws IOException If a ping could not be sent
+   */
+  public synchronized void pingIfDue() throws IOException {
+    long now = System.nanoTime();
+    if (now - lastPing >= TimeUnit.MILLISECONDS.toNanos(PING_INTERVAL)) {
+      ping(now);
+    }
+  }
+
+  /**
+   * Pings every recipient, their pongs are timed by a {@link PacketReceiver} sharing the stats
+   *
+   * @param now The current time, from {@link System#nanoTime()}
+   * @throws IOException If a ping could not be sent
+   */
+  synchronized void ping(long now) throws IOException {
+    lastPing = now;
+    ping.clear();
+    PacketCodec.writePing(ping, NetworkStats.micros(now));
+    ping.flip();
+    broadcast(ping);
+  }
+
+  /** @return What has been sent and received, shared with the receiver answering its pings */
+  public NetworkStats getStats() {
+    return stats;
+  }
+
+  /** Sends anything left on the queue, then closes the socket */
+  private void close() {
+    ByteBuffer frame;
+    try {
+      while ((frame = feedQueue.poll()) != null) {
+        if (frame != WAKE) {
+          send(frame);
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    try {
+      transport.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Stops thread execution. Frames already queued are sent first, waiting a short time for them
+   * to go if the thread is running.
+   */
   public void shutdown() {
     this.running = false;
-    if (ds != null && !ds.isClosed()) {
-      ds.close();
+    if (isAlive()) {
+      // if the queue is full the thread isn't waiting, and will see it has stopped after a send
+      feedQueue.offer(WAKE);
+      try {
+        join(SHUTDOWN_TIMEOUT);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } else if (transport.isOpen()) {
+      close();
     }
   }
 }
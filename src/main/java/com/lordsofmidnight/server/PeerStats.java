@@ -0,0 +1,210 @@
+package com.lordsofmidnight.server;
+
+import java.net.InetAddress;
+
+/**
+ * The health of the gameplay traffic to and from a single address. Datagrams lost are counted from
+ * the gaps in their sequence numbers, and one that turns up late is taken back off. The round trip
+ * time is smoothed from the pings answered as TCP does, and the jitter is the smoothed deviation
+ * of those samples from it. Updated by the sending and receiving threads and polled by anything
+ * else, so every method is synchronized.
+ */
+public class PeerStats {
+
+  private static final int[] RTT_BUCKETS = {10, 25, 50, 100, 200, 400}; // upper bounds, ms
+  private static final long SECOND = 1_000_000_000L;
+  private static final int SEQUENCE_MASK = 0xFFFF;
+
+  private final InetAddress address;
+  private final long[] rttHistogram = new long[RTT_BUCKETS.length + 1];
+  private final Rate bytesInRate = new Rate();
+  private final Rate bytesOutRate = new Rate();
+  private int nextSequence = 0;
+  private long packetsIn = 0;
+  private long bytesIn = 0;
+  private long packetsOut = 0;
+  private long bytesOut = 0;
+  private boolean receivedAny = false;
+  private int highestSequence;
+  private long packetsLost = 0;
+  private double rtt = -1;
+  private double jitter = 0;
+
+  /** @param address The address of the peer */
+  PeerStats(InetAddress address) {
+    this.address = address;
+  }
+
+  /**
+   * @param bucket A bucket of {@link #getRttHistogram()}
+   * @return The largest round trip time counted in the bucket, in milliseconds
+   */
+  public static int getRttBucketLimit(int bucket) {
+    return bucket < RTT_BUCKETS.length ? RTT_BUCKETS[bucket] : Integer.MAX_VALUE;
+  }
+
+  /** @return The sequence number for the next datagram sent to the peer */
+  synchronized int nextSequence() {
+    int sequence = nextSequence;
+    nextSequence = nextSequence + 1 & SEQUENCE_MASK;
+    return sequence;
+  }
+
+  /**
+   * @param bytes The size of a datagram sent to the peer
+   * @param now The time it was sent, from {@link System#nanoTime()}
+   */
+  synchronized void sent(int bytes, long now) {
+    packetsOut++;
+    bytesOut += bytes;
+    bytesOutRate.add(now, bytes);
+  }
+
+  /**
+   * @param sequence The sequence number of a datagram received from the peer
+   * @param bytes Its size
+   * @param now The time it arrived, from {@link System#nanoTime()}
+   */
+  synchronized void received(int sequence, int bytes, long now) {
+    packetsIn++;
+    bytesIn += bytes;
+    bytesInRate.add(now, bytes);
+    if (!receivedAny) {
+      receivedAny = true;
+      highestSequence = sequence;
+      return;
+    }
+    int ahead = sequence - highestSequence & SEQUENCE_MASK;
+    if (ahead == 0) {
+      return; // duplicated
+    }
+    if (ahead <= SEQUENCE_MASK / 2) {
+      packetsLost += ahead - 1;
+      highestSequence = sequence;
+    } else if (packetsLost > 0) {
+      packetsLost--; // counted as lost when the ones after it arrived first
+    }
+  }
+
+  /**
+   * @param time The time carried by a pong from the peer, from {@link NetworkStats#micros}
+   * @param now The time it arrived, from {@link System#nanoTime()}
+   */
+  synchronized void pong(int time, long now) {
+    int elapsed = NetworkStats.micros(now) - time;
+    if (elapsed < 0) {
+      return; // not a ping of ours
+    }
+    double sample = elapsed / 1000.0;
+    if (rtt < 0) {
+      rtt = sample;
+      jitter = sample / 2;
+    } else {
+      jitter += (Math.abs(rtt - sample) - jitter) / 4;
+      rtt += (sample - rtt) / 8;
+    }
+    int bucket = 0;
+    while (bucket < RTT_BUCKETS.length && sample > RTT_BUCKETS[bucket]) {
+      bucket++;
+    }
+    rttHistogram[bucket]++;
+  }
+
+  /** @return The address of the peer */
+  public InetAddress getAddress() {
+    return address;
+  }
+
+  /** @return The number of datagrams received from the peer */
+  public synchronized long getPacketsIn() {
+    return packetsIn;
+  }
+
+  /** @return The number of bytes received from the peer */
+  public synchronized long getBytesIn() {
+    return bytesIn;
+  }
+
+  /** @return The number of datagrams sent to the peer */
+  public synchronized long getPacketsOut() {
+    return packetsOut;
+  }
+
+  /** @return The number of bytes sent to the peer */
+  public synchronized long getBytesOut() {
+    return bytesOut;
+  }
+
+  /** @return The bytes received from the peer in the last whole second */
+  public synchronized long getBytesInPerSecond() {
+    return bytesInRate.get(System.nanoTime());
+  }
+
+  /** @return The bytes sent to the peer in the last whole second */
+  public synchronized long getBytesOutPerSecond() {
+    return bytesOutRate.get(System.nanoTime());
+  }
+
+  /** @return The number of datagrams from the peer that never arrived */
+  public synchronized long getPacketsLost() {
+    return packetsLost;
+  }
+
+  /** @return The fraction of the datagrams sent by the peer that never arrived */
+  public synchronized double getLossRate() {
+    long sent = packetsIn + packetsLost;
+    return sent == 0 ? 0 : packetsLost / (double) sent;
+  }
+
+  /** @return The smoothed round trip time in milliseconds, or -1 before a ping is answered */
+  public synchronized double getRtt() {
+    return rtt;
+  }
+
+  /** @return The smoothed deviation of the round trip time, in milliseconds */
+  public synchronized double getJitter() {
+    return jitter;
+  }
+
+  /**
+   * @return The number of round trip times measured in each bucket, up to {@link
+   *     #getRttBucketLimit} milliseconds
+   */
+  public synchronized long[] getRttHistogram() {
+    return rttHistogram.clone();
+  }
+
+  /** Counts what happens in each second, to report the last whole one */
+  private static class Rate {
+
+    private boolean started = false;
+    private long start;
+    private long current = 0;
+    private long last = 0;
+
+    private void add(long now, long amount) {
+      roll(now);
+      current += amount;
+    }
+
+    private long get(long now) {
+      roll(now);
+      return last;
+    }
+
+    private void roll(long now) {
+      if (!started) {
+        started = true;
+        start = now;
+      }
+      long elapsed = now - start;
+      if (elapsed < SECOND) {
+        return;
+      }
+      // nothing happened in the last second if the one being counted ended more than a second ago
+      last = elapsed < 2 * SECOND ? current : 0;
+      current = 0;
+      start = elapsed < 2 * SECOND ? start + SECOND : now;
+    }
+  }
+}
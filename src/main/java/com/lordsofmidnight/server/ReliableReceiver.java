@@ -0,0 +1,123 @@
+package com.lordsofmidnight.server;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * The client's end of the reliable channel. Events are delivered exactly once and in the order the
+ * host sent them: duplicates from resends are dropped, and an event that arrives early is held
+ * until the ones before it turn up. Each event says which is the oldest the host still keeps, and
+ * events before that which never arrived are skipped, as the host will not send them again. The
+ * first event received starts the channel at that oldest event, so a receiver that joins part way
+ * through, like a spectator, picks the channel up there. Not thread safe, only the thread
+ * processing frames uses it.
+ *
+ * @see ReliableSender
+ */
+public class ReliableReceiver {
+
+  /** How far past the first missing event an early one can be held */
+  static final int WINDOW = Integer.SIZE;
+
+  private final byte[][] held = new byte[WINDOW][];
+  private int next = 0; // the first sequence not yet delivered
+  private boolean started = false;
+  private boolean unacknowledged = false;
+
+  /**
+   * Reads an event, delivering it and any held events that now follow on in order
+   *
+   * @param buf The buffer, positioned after the {@link PacketCodec#EVENT} type. It is left after
+   *     the event.
+   * @param deliver Given each message in order, positioned at its type
+   */
+  public void receive(ByteBuffer buf, Consumer<ByteBuffer> deliver) {
+    int seq = buf.getShort() & 0xFFFF;
+    int oldest = buf.getShort() & 0xFFFF;
+    int length = PacketCodec.readUnsignedByte(buf);
+    int end = buf.position() + length;
+    unacknowledged = true;
+    if (!started) {
+      next = oldest; // nothing before it will be sent again
+      started = true;
+    } else if ((short) (oldest - next) > 0) {
+      skipTo(oldest, deliver);
+    }
+    int offset = (short) (seq - next);
+    if (offset == 0) {
+      ByteBuffer message = buf.slice();
+      message.limit(length);
+      buf.position(end);
+      deliver.accept(message);
+      next = next + 1 & 0xFFFF;
+      deliverHeld(deliver);
+    } else {
+      if (offset > 0 && offset < WINDOW && held[slot(seq)] == null) {
+        byte[] copy = new byte[length];
+        buf.get(copy);
+        held[slot(seq)] = copy;
+      }
+      buf.position(end);
+    }
+  }
+
+  /** @return True if an event has arrived since the last acknowledgement was written */
+  public boolean needsAck() {
+    return unacknowledged;
+  }
+
+  /**
+   * Writes an acknowledgement of everything received so far
+   *
+   * @param buf The buffer to write to
+   * @param id The id of this client
+   */
+  public void writeAck(ByteBuffer buf, int id) {
+    int received = 0;
+    for (int offset = 1; offset < WINDOW; offset++) {
+      if (held[slot(next + offset)] != null) {
+        received |= 1 << offset - 1;
+      }
+    }
+    PacketCodec.writeEventAck(buf, id, next, received);
+    unacknowledged = false;
+  }
+
+  /**
+   * Gives up on the missing events before one, as the host has. Those held are still delivered in
+   * order, then whatever held events follow on.
+   *
+   * @param oldest The oldest sequence the host still keeps
+   * @param deliver Given the held messages in order
+   */
+  private void skipTo(int oldest, Consumer<ByteBuffer> deliver) {
+    System.out.println("Events " + next + " to " + (oldest - 1 & 0xFFFF) + " were given up on");
+    for (int offset = 0; offset < WINDOW && (next + offset & 0xFFFF) != oldest; offset++) {
+      byte[] message = held[slot(next + offset)];
+      if (message != null) {
+        held[slot(next + offset)] = null;
+        deliver.accept(ByteBuffer.wrap(message));
+      }
+    }
+    next = oldest;
+    deliverHeld(deliver);
+  }
+
+  /** @param deliver Given the held messages that are next in order */
+  private void deliverHeld(Consumer<ByteBuffer> deliver) {
+    byte[] message;
+    while ((message = held[slot(next)]) != null) {
+      held[slot(next)] = null;
+      next = next + 1 & 0xFFFF;
+      deliver.accept(ByteBuffer.wrap(message));
+    }
+  }
+
+  /**
+   * @param seq A sequence number
+   * @return Its index in the held events
+   */
+  private static int slot(int seq) {
+    return seq & (WINDOW - 1);
+  }
+}
@@ -0,0 +1,166 @@
+package com.lordsofmidnight.server;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The host's end of the reliable channel. Messages that must not be lost, like a power up being
+ * used, are numbered and wrapped in an {@link PacketCodec#EVENT} and kept until every client in
+ * the game has told us it received them, whether or not it has acknowledged anything yet. Clients
+ * report the first sequence they are missing and a bitfield of the ones after it they already
+ * have, so only the events somebody is actually missing are resent. An event is only given up on
+ * when {@value #CAPACITY} are outstanding, and every event carries the oldest sequence still kept,
+ * so a client that was given up on skips to it rather than waiting for events that will never
+ * come. Not thread safe, the owner must hold its own lock.
+ *
+ * @see ReliableReceiver
+ */
+public class ReliableSender {
+
+  /** The most events that can be waiting for acknowledgement at once */
+  static final int CAPACITY = 256;
+  static final int RESEND_INTERVAL = 10; // ticks to wait for an acknowledgement before resending
+
+  private final FrameBatcher out;
+  private final ByteBuffer message = ByteBuffer.allocate(PacketCodec.MAX_MESSAGE_SIZE);
+  private final byte[][] events = new byte[CAPACITY][];
+  private final int[] lengths = new int[CAPACITY];
+  private final long[] lastSent = new long[CAPACITY];
+  private final int[] clients; // the ids of the clients every event must reach
+  private final int[] clientNext; // the first sequence each client is missing
+  private final int[] clientReceived; // the events after it each client has
+  private final boolean[] acknowledged; // whether each client has acknowledged anything yet
+  private int base = 0; // the oldest event not yet acknowledged by everyone
+  private int nextSeq = 0;
+  private long ticks = 0;
+
+  /**
+   * @param clients The ids of the clients every event must reach, counted as missing every event
+   *     from the start of the game until they acknowledge otherwise
+   * @param out The batcher that events are sent through
+   */
+  public ReliableSender(int[] clients, FrameBatcher out) {
+    this.out = out;
+    this.clients = clients.clone();
+    int ids = Arrays.stream(clients).max().orElse(-1) + 1;
+    this.clientNext = new int[ids];
+    this.clientReceived = new int[ids];
+    this.acknowledged = new boolean[ids];
+  }
+
+  /**
+   * Numbers a message and sends it, keeping a copy to resend until it is acknowledged. If too many
+   * events are outstanding the oldest is given up on, and the clients still missing it skip it.
+   *
+   * @param writer Writes the message into the buffer it is given
+   */
+  public void send(Consumer<ByteBuffer> writer) {
+    if (nextSeq - base == CAPACITY) {
+      System.out.println("Too many unacknowledged events, dropping event " + base);
+      base++;
+    }
+    message.clear();
+    writer.accept(message);
+    message.flip();
+    int slot = slot(nextSeq);
+    if (events[slot] == null || events[slot].length < message.remaining()) {
+      events[slot] = new byte[message.remaining()];
+    }
+    lengths[slot] = message.remaining();
+    message.get(events[slot], 0, lengths[slot]);
+    transmit(nextSeq++);
+  }
+
+  /**
+   * Advances the channel by a tick. Events every client has are forgotten, and any event a client
+   * has been missing for {@value #RESEND_INTERVAL} ticks is sent again.
+   */
+  public void update() {
+    ticks++;
+    while (base != nextSeq && acknowledgedByAll(base)) {
+      base++;
+    }
+    for (int seq = base; seq != nextSeq; seq++) {
+      if (ticks - lastSent[slot(seq)] >= RESEND_INTERVAL && !acknowledgedByAll(seq)) {
+        transmit(seq);
+      }
+    }
+  }
+
+  /**
+   * Records what a client has received
+   *
+   * @param id The id of the client
+   * @param next The sequence of the first event it is missing, as sent on the wire
+   * @param received Bit i is set if event next + i + 1 has been received
+   */
+  public void acknowledge(int id, int next, int received) {
+    if (id < 0 || id >= clientNext.length) {
+      return; // not a client events are sent to
+    }
+    int full = nextSeq + (short) (next - (nextSeq & 0xFFFF)); // the nearest sequence to ours
+    if (full > nextSeq) {
+      return; // acknowledges events never sent
+    }
+    if (!acknowledged[id] || full > clientNext[id]) {
+      clientNext[id] = full;
+      clientReceived[id] = received;
+    } else if (full == clientNext[id]) {
+      clientReceived[id] |= received;
+    }
+    acknowledged[id] = true;
+  }
+
+  /** @return The number of events waiting to be acknowledged */
+  public int getPending() {
+    return nextSeq - base;
+  }
+
+  /**
+   * @param seq The sequence of an event
+   * @return True if every client has the event
+   */
+  private boolean acknowledgedByAll(int seq) {
+    for (int id : clients) {
+      if (!hasReceived(id, seq)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param id The id of a client
+   * @param seq The sequence of an event
+   * @return True if the client has told us it received the event
+   */
+  private boolean hasReceived(int id, int seq) {
+    if (!acknowledged[id]) {
+      return false;
+    }
+    int offset = seq - clientNext[id];
+    if (offset < 0) {
+      return true;
+    }
+    return offset > 0 && offset <= Integer.SIZE && (clientReceived[id] >>> offset - 1 & 1) != 0;
+  }
+
+  /** @param seq The sequence of the event to send */
+  private void transmit(int seq) {
+    int slot = slot(seq);
+    lastSent[slot] = ticks;
+    byte[] event = events[slot];
+    int length = lengths[slot];
+    int oldest = base;
+    out.add(buf -> PacketCodec.writeEvent(buf, seq, oldest, event, length));
+  }
+
+  /**
+   * @param seq A sequence number
+   * @return Its index in the ring of events
+   */
+  private static int slot(int seq) {
+    return seq & (CAPACITY - 1);
+  }
+}
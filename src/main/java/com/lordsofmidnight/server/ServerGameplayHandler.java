@@ -3,18 +3,18 @@ package com.lordsofmidnight.server;
 import com.lordsofmidnight.utils.Input;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.BlockingQueue;
 
 // input switched from string to input form in this stage
 public class ServerGameplayHandler {
 
   private Queue<Input> inputQueue;
-  private Queue<String> outgoingQueue;
-  private Queue<String> incomingQueue;
+  private BlockingQueue<ByteBuffer> outgoingQueue;
 
-  private Thread incomingPacketManager;
+  private volatile PacketCodec.AckListener ackListener;
 
   private PacketSender sender;
   private PacketReceiver receiver;
@@ -22,55 +22,79 @@ public class ServerGameplayHandler {
   private ArrayList<InetAddress> ipStore;
 
   private int playerCount;
-  private boolean running = true;
 
   /**
    * Creates the appropriate senders and recievers for the running of the game and starts them. the
-   * reciever turns strings recieved into {@link Input}s the queues feed into telemetry.
+   * reciever decodes the frames recieved into {@link Input}s the queues feed into telemetry.
    */
   public ServerGameplayHandler(
       ArrayList<InetAddress> ips,
       int numPlayers,
       Queue<Input> inputQueue,
-      Queue<String> outputQueue)
+      BlockingQueue<ByteBuffer> outputQueue)
+      throws IOException {
+    this(ips, numPlayers, inputQueue, outputQueue, DatagramTransport.UDP);
+  }
+
+  /**
+   * Creates the senders and receivers on a network other than the real one, such as a {@link
+   * LoopbackNetwork}, and starts them.
+   *
+   * @param ips The addresses of the clients
+   * @param numPlayers The number of players
+   * @param inputQueue The queue the inputs received are added to
+   * @param outputQueue The queue of frames to send to the clients
+   * @param transports Opens the transports to send and receive through
+   * @throws IOException If the transports cannot be opened
+   */
+  public ServerGameplayHandler(
+      ArrayList<InetAddress> ips,
+      int numPlayers,
+      Queue<Input> inputQueue,
+      BlockingQueue<ByteBuffer> outputQueue,
+      DatagramTransport.Factory transports)
       throws IOException {
 
     this.inputQueue = inputQueue;
     outgoingQueue = outputQueue;
-    incomingQueue = new ConcurrentLinkedQueue<>();
     this.playerCount = numPlayers;
-    initialisePacketManagers();
 
     this.ipStore = ips;
-    this.sender = new PacketSender(NetworkUtility.CLIENT_DGRAM_PORT, this.outgoingQueue, ipStore);
-    this.receiver = new PacketReceiver(NetworkUtility.SERVER_DGRAM_PORT, this.incomingQueue);
-    this.incomingPacketManager.start();
+    this.sender =
+        new PacketSender(
+            NetworkUtility.CLIENT_DGRAM_PORT, this.outgoingQueue, ipStore, transports.open());
+    // decodes frames into Inputs as they arrive and adds them to the inputQueue
+    this.receiver =
+        new PacketReceiver(
+            transports.bind(NetworkUtility.SERVER_DGRAM_PORT),
+            frame -> PacketCodec.readInputs(frame, this.inputQueue, ackListener),
+            sender);
     this.sender.start();
     this.receiver.start();
   }
 
   /**
-   * Initialises the packet managers
+   * Sets where the snapshot and event acknowledgements from clients go, until then they are dropped
+   *
+   * @param ackListener Receives the acknowledgements
    */
-  private void initialisePacketManagers() {
-    // turns strings from incomingQueue into Inputs and adds them to the inputQueue
-    this.incomingPacketManager =
-        new Thread() {
-          public void run() {
-            while (!isInterrupted() && running) {
-              if (incomingQueue.isEmpty()) {
-                continue;
-              }
-              inputQueue.add(Input.fromString(incomingQueue.poll()));
+  public void setAckListener(PacketCodec.AckListener ackListener) {
+    this.ackListener = ackListener;
+  }
+
+  /**
+   * Streams the game to spectators as well as the clients. The relay is not started or shut down
+   * by the handler.
+   *
+   * @param spectators The relay, or null to stop streaming
+   */
+  public void setSpectators(SpectatorRelay spectators) {
+    sender.setSpectators(spectators);
+  }
 
-              try {
-                Thread.sleep(1);
-              } catch (InterruptedException e) {
-                e.printStackTrace();
-              }
-            }
-          }
-        };
+  /** @return The health of the connection to each client */
+  public NetworkStats getStats() {
+    return sender.getStats();
   }
 
   /**
@@ -79,6 +103,5 @@ public class ServerGameplayHandler {
   public void close() {
     receiver.shutdown();
     sender.shutdown();
-    running = false; // shuts down incoming packet manager
   }
 }
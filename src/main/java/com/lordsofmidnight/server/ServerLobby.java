@@ -1,51 +1,72 @@
 package com.lordsofmidnight.server;
 
 import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapCodec;
 import com.lordsofmidnight.utils.Input;
 import com.lordsofmidnight.utils.Methods;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
-import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Creates a lobby, broadcasts it's status to other players, and handles players joining and
  * leaving. Also tells players when the game starts. This class corresponds to {@link
  * ClientLobbySession} on the client side.
+ *
+ * <p>Every lobby connection is handled by a single thread with a {@link Selector}, so a slow or
+ * stalled client never holds up anyone else joining. Each connection steps through the handshake
+ * as its lines arrive, and is dropped if it doesn't finish within {@value #HANDSHAKE_TIMEOUT}ms.
+ * Once the game's {@value #MAX_PLAYERS} places are taken any number of further joiners wait in a
+ * queue, kept alive with {@link NetworkUtility#QUEUED} lines, and are let in as places free up.
  */
 public class ServerLobby {
 
+  /** The most players in a game, one for each agent */
+  public static final int MAX_PLAYERS = 5;
+  static final long HANDSHAKE_TIMEOUT = 5000; // ms for a joiner to finish the handshake
+  static final long QUEUE_NOTICE_INTERVAL = 1000; // ms between reminders to queued joiners
+  private static final long SELECT_TIMEOUT = 250; // ms between checks of the timers
+  private static final int LINE_LIMIT = 1024; // the longest line a client can send
+  private static final String CONNECT = NetworkUtility.PREFIX + "CONNECT" + NetworkUtility.SUFFIX;
+
   /**
-   * Accepts connections from clients
+   * Runs the selector that accepts and serves every lobby connection
    */
   Thread acceptConnections;
 
-  private Map map;
+  private final byte[] encodedMap;
+  private final String mapHash;
   private AtomicInteger playerCount;
-  private ArrayList<InetAddress> playerIPs;
   private ServerGameplayHandler s;
-  private String[] names = new String[5];
-  private Queue<String> outputQueue;
+  private BlockingQueue<ByteBuffer> outputQueue;
   private int MIPID;
-  private boolean[] usedIDs = {false, false, false, false, false};
-  private ArrayList<Socket> activeClientSockets = new ArrayList<>();
-  private ArrayList<PrintWriter> activeOutstreams = new ArrayList<>();
-  private ArrayList<BufferedReader> activeInputStreams = new ArrayList<>();
-  private ArrayList<lobbyLeaverListener> lobbyLeavers = new ArrayList<>();
-  private ServerSocket server;
-  private boolean hostPresent = true;
+  private final Selector selector;
+  private final ServerSocketChannel server;
+  private final Connection[] players = new Connection[MAX_PLAYERS];
+  private final ArrayDeque<Connection> waiting = new ArrayDeque<>(); // queued for a place
+  private final ArrayList<Connection> connections = new ArrayList<>();
+  private volatile boolean running = true;
+  private volatile boolean hostPresent = true;
   /**
    * Thread which sends messages to multicast group to make com.lordsofmidnight.server IP known but
    * also includes number of players in the lobby
@@ -97,66 +118,91 @@ public class ServerLobby {
    * Constructor
    *
    * @param map The map for the game
+   * @throws IOException If the lobby port cannot be bound
+   */
+  public ServerLobby(Map map) throws IOException {
+    this(map, NetworkUtility.SERVER_DGRAM_PORT);
+    pinger.start();
+  }
+
+  /**
+   * Creates a lobby that isn't announced on the network
+   *
+   * @param map The map for the game
+   * @param port The port to accept joiners on
+   * @throws IOException If the port cannot be bound
    */
-  public ServerLobby(Map map) {
-    this.map = map;
+  ServerLobby(Map map, int port) throws IOException {
+    this.encodedMap = MapCodec.encode(map);
+    this.mapHash = MapCodec.hash(encodedMap);
+    MapCodec.cache(mapHash, map); // the host's own client joins without it being sent
     this.playerCount = new AtomicInteger(0);
-    this.playerIPs = new ArrayList<>();
     this.MIPID = (new Random()).nextInt(5);
-    pinger.start();
-    this.acceptConnections = connectionAccepter();
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    try {
+      server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      server.bind(new InetSocketAddress(port));
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      server.close();
+      selector.close();
+      throw e;
+    }
+    this.acceptConnections = new Thread(this::serve, "ServerLobby");
     acceptConnections.start();
   }
 
   /** Shuts down the internal threads and all TCP connections */
   public void shutDown() {
-    acceptConnections.interrupt();
-    if (server != null && !server.isClosed()) {
-      try {
-        server.close();
-      } catch (IOException err) {
-        err.printStackTrace(System.err);
-      }
-    }
-    shutdownTCP();
+    running = false;
+    selector.wakeup();
     pinger.interrupt();
   }
 
   /**
-   * Starts the game for all clients by sending player names and start game flag.
+   * Starts the game for all clients by sending player names and start game flag. Anyone still
+   * joining or queued is turned away.
    *
    * @return The server gameplay handler which will be used by the client.
    */
-  public ServerGameplayHandler gameStart(Queue<Input> inputQueue, Queue<String> outputQueue) {
+  public ServerGameplayHandler gameStart(
+      Queue<Input> inputQueue, BlockingQueue<ByteBuffer> outputQueue) {
     this.outputQueue = outputQueue;
-    pinger.interrupt();
-    acceptConnections.interrupt();
-    for (InetAddress ip : playerIPs) {
+    shutDown();
+    if (Thread.currentThread() != acceptConnections) {
       try {
-        Socket soc = new Socket(ip, NetworkUtility.CLIENT_DGRAM_PORT);
-        PrintWriter out = new PrintWriter(soc.getOutputStream());
+        acceptConnections.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    String[] names = new String[MAX_PLAYERS];
+    ArrayList<InetAddress> playerIPs = new ArrayList<>();
+    String[] botnames = Methods.getRandomNames(MAX_PLAYERS);
+    for (int i = 0; i < MAX_PLAYERS; i++) {
+      if (players[i] != null && players[i].state == State.JOINED) {
+        names[i] = players[i].name;
+        playerIPs.add(players[i].ip);
+      } else {
+        names[i] = botnames[i];
+      }
+    }
+    for (InetAddress ip : playerIPs) {
+      try (Socket soc = new Socket(ip, NetworkUtility.CLIENT_DGRAM_PORT);
+          PrintWriter out = new PrintWriter(soc.getOutputStream())) {
         out.println(NetworkUtility.GAME_START);
-        out.flush();
-        String[] botnames = Methods.getRandomNames(5 - playerCount.get());
-        for (int i = playerCount.get(); i < 5; i++) {
-          if (names[i] == null) {
-            names[i] = botnames[i - playerCount.get()];
-          }
-        }
         for (String name : names) {
           out.println(name);
-          out.flush();
         }
         out.flush();
-        shutdownTCP();
-        out.close();
       } catch (IOException e) {
         e.printStackTrace();
       }
     }
     try {
-      this.s =
-          new ServerGameplayHandler(this.playerIPs, playerCount.get(), inputQueue, outputQueue);
+      this.s = new ServerGameplayHandler(playerIPs, playerCount.get(), inputQueue, outputQueue);
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -165,177 +211,321 @@ public class ServerLobby {
   }
 
   /**
-   * Listens for TCP session requests, from players trying to join the lobby.
+   * Gets the current number of players in the lobby
+   *
+   * @return the number of players in the lobby
+   */
+  public int getPlayerCount() {
+    return this.playerCount.get();
+  }
+
+  /**
+   * Accepts and serves lobby connections until shut down, then closes them all. Runs on {@link
+   * #acceptConnections}, the only thread that touches the connections.
    */
-  private Thread connectionAccepter() {
-    Thread thread =
-        new Thread() {
-
-          @Override
-          public void run() {
-            super.run();
-
-            try {
-              server = new ServerSocket(NetworkUtility.SERVER_DGRAM_PORT);
-              while (!isInterrupted()) {
-                if (playerCount.get() < 5) {
-                  Socket soc = server.accept();
-                  BufferedReader in =
-                      new BufferedReader(new InputStreamReader(soc.getInputStream()));
-                  PrintWriter out = new PrintWriter(soc.getOutputStream());
-                  activeInputStreams.add(in);
-                  activeOutstreams.add(out);
-                  activeClientSockets.add(soc);
-                  System.out.println("Waiting for new connection...");
-
-                  String r = in.readLine();
-                  String name = in.readLine();
-                  names[playerCount.get()] = name;
-
-                  if (r.equals(NetworkUtility.PREFIX + "CONNECT" + NetworkUtility.SUFFIX)) {
-                    InetAddress ip = soc.getInetAddress();
-                    System.out.println("Connecting to: " + ip);
-                    playerIPs.add(ip);
-
-                    int playerID = getNextID();
-                    out.println("" + playerID);
-                    out.flush();
-                    System.out.println("Sent client " + playerID + " their ID...");
-                    out.println(Map.serialiseMap(map));
-                    out.println("" + MIPID);
-                    out.flush();
-                    out.println("SUCCESS");
-                    out.flush();
-                    System.out.println(
-                        "Sent client " + playerID + " a successful connection message...");
-                    playerCount.set(playerCount.get() + 1);
-                    lobbyLeaverListener l = new lobbyLeaverListener(soc, in, out, ip, playerID);
-                    lobbyLeavers.add(l);
-                    l.start();
-                  }
-
-                } else {
-                  return;
-                }
-              }
-              server.close();
-            } catch (SocketException e) {
-              System.out.println("Sockets were closed while waiting to accept");
-            } catch (IOException e) {
-              e.printStackTrace();
+  private void serve() {
+    try {
+      while (running) {
+        selector.select(SELECT_TIMEOUT);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) {
+            continue;
+          }
+          if (key.isAcceptable()) {
+            accept();
+            continue;
+          }
+          Connection connection = (Connection) key.attachment();
+          try {
+            if (key.isReadable()) {
+              connection.read();
             }
+            if (key.isValid() && key.isWritable()) {
+              connection.write();
+            }
+          } catch (IOException e) {
+            close(connection);
           }
-        };
-    return thread;
+        }
+        checkTimers(System.currentTimeMillis());
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      for (Connection connection : new ArrayList<>(connections)) {
+        closeChannel(connection);
+      }
+      try {
+        server.close();
+        selector.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /** Accepts every joiner waiting to connect */
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = server.accept()) != null) {
+      channel.configureBlocking(false);
+      Connection connection = new Connection(channel);
+      connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+      connections.add(connection);
+      System.out.println("Waiting for new connection...");
+    }
   }
 
   /**
-   * Gets the next available ID in the lobby to assign to the incoming client.
+   * Drops joiners that have taken too long over the handshake, and reminds queued joiners that
+   * they are still waiting
    *
-   * @return the integer of the available ID
+   * @param now The current time in ms
    */
-  private int getNextID() {
-    for (int i = 0; i < usedIDs.length; i++) {
-      if (!usedIDs[i]) {
-        usedIDs[i] = true;
-        return i;
+  private void checkTimers(long now) {
+    for (Connection connection : new ArrayList<>(connections)) {
+      if (connection.state == State.QUEUED) {
+        if (now >= connection.deadline) {
+          connection.send(NetworkUtility.QUEUED);
+          connection.deadline = now + QUEUE_NOTICE_INTERVAL;
+        }
+      } else if (connection.state != State.JOINED && now >= connection.deadline) {
+        System.out.println("Joiner from " + connection.ip + " timed out");
+        close(connection);
       }
     }
-    return 0;
   }
 
   /**
-   * Gets the current number of players in the lobby
+   * Handles a line from a client, according to how far through the handshake it is
    *
-   * @return the number of players in the lobby
+   * @param connection The client's connection
+   * @param line The line, without its ending
    */
-  public int getPlayerCount() {
-    return this.playerCount.get();
+  private void handle(Connection connection, String line) {
+    switch (connection.state) {
+      case CONNECTING:
+        if (!line.equals(CONNECT)) {
+          close(connection);
+        } else {
+          connection.state = State.NAMING;
+        }
+        break;
+      case NAMING:
+        connection.name = line;
+        if (!admit(connection)) {
+          connection.state = State.QUEUED;
+          waiting.add(connection);
+          System.out.println(connection.ip + " queued for a place, " + waiting.size() + " waiting");
+          connection.send(NetworkUtility.QUEUED);
+          connection.deadline = System.currentTimeMillis() + QUEUE_NOTICE_INTERVAL;
+        }
+        break;
+      case ADMITTING:
+        if (line.equals(NetworkUtility.MAP_SEND)) {
+          ByteBuffer data = ByteBuffer.allocate(4 + encodedMap.length);
+          data.putInt(encodedMap.length).put(encodedMap).flip();
+          connection.send(data);
+        }
+        connection.send("" + MIPID);
+        connection.send("SUCCESS");
+        connection.state = State.JOINED;
+        playerCount.incrementAndGet();
+        System.out.println(
+            "Sent client " + connection.id + " a successful connection message...");
+        break;
+      case JOINED:
+        leave(connection, line);
+        break;
+      default:
+        break;
+    }
   }
 
-  /** Shuts down all the TCP connections in the current client */
-  private void shutdownTCP() {
-    try {
-      for (Socket s : activeClientSockets) {
-        s.close();
+  /**
+   * Gives a joiner a place in the game if one is free, sending its id and the hash of the map
+   *
+   * @param connection The joiner's connection
+   * @return False if the game is full
+   */
+  private boolean admit(Connection connection) {
+    for (int id = 0; id < MAX_PLAYERS; id++) {
+      if (players[id] == null) {
+        players[id] = connection;
+        connection.id = id;
+        connection.state = State.ADMITTING;
+        connection.deadline = System.currentTimeMillis() + HANDSHAKE_TIMEOUT;
+        System.out.println("Connecting to: " + connection.ip);
+        connection.send("" + id);
+        connection.send(mapHash);
+        System.out.println("Sent client " + id + " their ID...");
+        return true;
       }
+    }
+    return false;
+  }
 
-      for (PrintWriter p : activeOutstreams) {
-        p.close();
-      }
+  /**
+   * Handles a joined player's message that they are leaving
+   *
+   * @param connection The player's connection
+   * @param message The message
+   */
+  private void leave(Connection connection, String message) {
+    if (message.equals(NetworkUtility.DISCONNECT_NON_HOST)) {
+      close(connection);
+      System.out.println("Removed Player: " + connection.id + " from game");
+    } else if (message.equals(NetworkUtility.DISCONNECT_HOST)) {
+      hostPresent = false;
+      close(connection);
+      System.out.println(
+          "Removed Host Player: " + connection.id + " from game. And shut down the game");
+      shutDown();
+    }
+  }
 
-      for (BufferedReader b : activeInputStreams) {
-        b.close();
+  /**
+   * Closes a connection, freeing its place in the game for the next queued joiner
+   *
+   * @param connection The connection
+   */
+  private void close(Connection connection) {
+    closeChannel(connection);
+    connections.remove(connection);
+    waiting.remove(connection);
+    if (connection.id >= 0 && players[connection.id] == connection) {
+      players[connection.id] = null;
+      if (connection.state == State.JOINED) {
+        playerCount.decrementAndGet();
       }
-
-      for (lobbyLeaverListener l : lobbyLeavers) {
-        l.interrupt();
+      Connection next;
+      while (running && (next = waiting.poll()) != null) {
+        if (admit(next)) {
+          break;
+        }
       }
+    }
+    connection.state = State.CLOSED;
+  }
+
+  /** @param connection The connection whose channel to close */
+  private static void closeChannel(Connection connection) {
+    try {
+      connection.channel.close();
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
-  /** Private class which is listening for clients in the lobby who leave. */
-  private class lobbyLeaverListener extends Thread {
-
-    private Socket client;
-    private BufferedReader in;
-    private PrintWriter out;
-    private int id;
-    private InetAddress ip;
-
-    public lobbyLeaverListener(
-        Socket client, BufferedReader in, PrintWriter out, InetAddress ip, int id) {
-      this.client = client;
-      this.in = in;
-      this.out = out;
-      this.ip = ip;
-      this.id = id;
+  /** How far through joining a connection is */
+  private enum State {
+    /** Waiting for the connect message */
+    CONNECTING,
+    /** Waiting for the player's name */
+    NAMING,
+    /** Sent an id and the map's hash, waiting to hear if the map is needed */
+    ADMITTING,
+    /** In the game, waiting for a message that the player is leaving */
+    JOINED,
+    /** Waiting for a place in the game */
+    QUEUED,
+    CLOSED
+  }
+
+  /** A lobby connection, with the lines read and the bytes waiting to be written */
+  private class Connection {
+
+    private final SocketChannel channel;
+    private final InetAddress ip;
+    private final ByteBuffer in = ByteBuffer.allocate(LINE_LIMIT);
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    private SelectionKey key;
+    private State state = State.CONNECTING;
+    private long deadline = System.currentTimeMillis() + HANDSHAKE_TIMEOUT;
+    private int id = -1;
+    private String name;
+
+    private Connection(SocketChannel channel) throws IOException {
+      this.channel = channel;
+      this.ip = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
     }
 
-    @Override
-    public void run() {
-      while (!isInterrupted()) {
-        try {
-          String message = in.readLine();
-          if (message.equals(NetworkUtility.DISCONNECT_NON_HOST)) {
-            ServerLobby.this.usedIDs[id] = false;
-            ServerLobby.this.playerIPs.remove(ip);
-            ServerLobby.this.names[id] = null;
-            ServerLobby.this.playerCount.set(ServerLobby.this.playerCount.get() - 1);
-            in.close();
-            out.close();
-            client.close();
-            System.out.println("Removed Player: " + id + " from game");
-          } else if (message.equals(NetworkUtility.DISCONNECT_HOST)) {
-            hostPresent = false;
-            ServerLobby.this.usedIDs[id] = false;
-            ServerLobby.this.playerIPs.remove(ip);
-            ServerLobby.this.names[id] = null;
-            ServerLobby.this.playerCount.set(ServerLobby.this.playerCount.get() - 1);
-            in.close();
-            out.close();
-            client.close();
-            System.out.println("Removed Host Player: " + id + " from game. And shut down the game");
-            ServerLobby.this.shutDown();
-          }
-        } catch (IOException e) {
+    /** Reads what has arrived, handling each complete line */
+    private void read() throws IOException {
+      int read = channel.read(in);
+      in.flip();
+      int start = 0;
+      for (int i = 0; i < in.limit() && state != State.CLOSED; i++) {
+        if (in.get(i) == '\n') {
+          handle(this, line(start, i));
+          start = i + 1;
+        }
+      }
+      if (read < 0) {
+        if (start < in.limit() && state != State.CLOSED) {
+          handle(this, line(start, in.limit())); // the last line may not be ended
+        }
+        if (state != State.CLOSED) {
+          close(this);
+        }
+        return;
+      }
+      in.position(start);
+      in.compact();
+      if (!in.hasRemaining()) {
+        throw new IOException("Line too long from " + ip);
+      }
+    }
 
-        } catch (NullPointerException e1) {
-          ServerLobby.this.usedIDs[id] = false;
-          ServerLobby.this.playerIPs.remove(ip);
-          ServerLobby.this.names[id] = null;
-          ServerLobby.this.playerCount.set(ServerLobby.this.playerCount.get() - 1);
-          try {
-            in.close();
-            out.close();
-            client.close();
-          } catch (IOException e) {
-            e.printStackTrace();
-          }
-          System.out.println("Removed Player: " + id + " from game");
+    /**
+     * @param start The index of the first byte
+     * @param end The index after the last byte
+     * @return The line between, without a carriage return
+     */
+    private String line(int start, int end) {
+      if (end > start && in.get(end - 1) == '\r') {
+        end--;
+      }
+      byte[] bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = in.get(start + i);
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** @param line A line of text to send */
+    private void send(String line) {
+      send(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** @param data Bytes to send, once everything before has been sent */
+    private void send(ByteBuffer data) {
+      if (state == State.CLOSED) {
+        return;
+      }
+      out.add(data);
+      try {
+        write();
+      } catch (IOException e) {
+        close(this);
+      }
+    }
+
+    /** Writes as much of what is waiting as the socket will take */
+    private void write() throws IOException {
+      while (!out.isEmpty()) {
+        channel.write(out.peek());
+        if (out.peek().hasRemaining()) {
+          break;
         }
+        out.poll();
+      }
+      if (key.isValid()) {
+        int writing = out.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+        key.interestOps(SelectionKey.OP_READ | writing);
       }
     }
   }
@@ -0,0 +1,148 @@
+package com.lordsofmidnight.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps another transport, dropping, duplicating, delaying and reordering what is sent through it
+ * as the {@link NetworkConditions} say, for testing the game over a bad network on one machine.
+ * Datagrams held back are sent by a thread of the transport's own once they are due. Only what is
+ * sent is affected, so both ends of a connection need one for both directions to be. Every choice
+ * comes from a generator seeded by the conditions, so sending the same datagrams makes the same
+ * choices, although a slow machine may still send the delayed ones later.
+ */
+public class SimulatedTransport implements DatagramTransport {
+
+  private final DatagramTransport inner;
+  private final NetworkConditions conditions;
+  private final Random random;
+  private final DelayQueue<Delivery> held = new DelayQueue<>();
+  private final Thread deliverer;
+  private volatile boolean open = true;
+  private long sent = 0; // orders the deliveries due at the same time
+
+  /**
+   * @param inner The transport to send through
+   * @param conditions What to do to the datagrams sent
+   */
+  public SimulatedTransport(DatagramTransport inner, NetworkConditions conditions) {
+    this.inner = inner;
+    this.conditions = conditions;
+    this.random = new Random(conditions.getSeed());
+    this.deliverer = new Thread(this::deliver, "SimulatedTransport");
+    this.deliverer.setDaemon(true);
+    this.deliverer.start();
+  }
+
+  /**
+   * Drops the datagram, or holds back one or two copies of it to send later
+   *
+   * @param datagram The datagram to send, from its position to its limit, which it is moved past
+   * @param to The address and port to send it to
+   * @throws IOException If it could not be sent
+   */
+  @Override
+  public synchronized void send(ByteBuffer datagram, InetSocketAddress to) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    if (random.nextDouble() < conditions.getLoss()) {
+      datagram.position(datagram.limit());
+      return;
+    }
+    int copies = random.nextDouble() < conditions.getDuplication() ? 2 : 1;
+    byte[] data = new byte[datagram.remaining()];
+    datagram.get(data);
+    long now = System.nanoTime();
+    for (int i = 0; i < copies; i++) {
+      long delay = random.nextDouble() < conditions.getReordering() ? 0 : delay();
+      if (delay == 0) {
+        inner.send(ByteBuffer.wrap(data), to);
+      } else {
+        held.add(new Delivery(data, to, now + delay, sent++));
+      }
+    }
+  }
+
+  /** @return How long to hold back a datagram for, in nanoseconds */
+  private long delay() {
+    double jitter = conditions.getJitter() * (2 * random.nextDouble() - 1);
+    double millis = Math.max(0, conditions.getLatency() + jitter);
+    return (long) (millis * 1_000_000);
+  }
+
+  /** Sends each datagram held back once it is due, until closed */
+  private void deliver() {
+    try {
+      while (open) {
+        Delivery delivery = held.take();
+        try {
+          inner.send(ByteBuffer.wrap(delivery.data), delivery.to);
+        } catch (ClosedChannelException e) {
+          return;
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    } catch (InterruptedException e) {
+      // woken by close
+    }
+  }
+
+  @Override
+  public InetSocketAddress receive(ByteBuffer buf) throws IOException {
+    return inner.receive(buf);
+  }
+
+  @Override
+  public void receive(Datagram datagram) throws IOException {
+    inner.receive(datagram);
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open && inner.isOpen();
+  }
+
+  /** Closes the transport, the datagrams still held back are never sent */
+  @Override
+  public void close() throws IOException {
+    open = false;
+    deliverer.interrupt();
+    inner.close();
+  }
+
+  /** A datagram held back until it is due */
+  private static class Delivery implements Delayed {
+
+    private final byte[] data;
+    private final InetSocketAddress to;
+    private final long due;
+    private final long order;
+
+    private Delivery(byte[] data, InetSocketAddress to, long due, long order) {
+      this.data = data;
+      this.to = to;
+      this.due = due;
+      this.order = order;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+      Delivery other = (Delivery) o;
+      int byDue = Long.compare(due - other.due, 0);
+      return byDue != 0 ? byDue : Long.compare(order, other.order);
+    }
+  }
+}
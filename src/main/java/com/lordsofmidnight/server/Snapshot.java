@@ -0,0 +1,300 @@
+package com.lordsofmidnight.server;
+
+import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.objects.powerUps.PowerUp;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The state of every agent at one tick, as sent to clients: the game time, mipsman, and each
+ * agent's direction, position, score and items. Positions are held quantized as they are sent, so
+ * an agent that hasn't moved compares equal.
+ *
+ * <p>A snapshot is written as the fields that changed since a baseline the client already has,
+ * or in full as a keyframe when there is no baseline. On the wire it is the {@link
+ * PacketCodec#SNAPSHOT} type, the tick, the number of ticks back to the baseline (0 for a
+ * keyframe), the time, the mipsman id and the agent count, then for each agent a byte flagging
+ * which fields follow.
+ */
+public class Snapshot {
+
+  /** The most items an agent can carry */
+  public static final int MAX_ITEMS = 2;
+  private static final int DIRECTION = 1;
+  private static final int POSITION = 2;
+  private static final int SCORE = 4;
+  private static final int ITEMS = 8;
+  private static final int ALL = DIRECTION | POSITION | SCORE | ITEMS;
+  private static final int HEADER_SIZE = 1 + 4 + 1 + 4 + 1 + 1;
+  private static final int MAX_AGENT_SIZE = 1 + 1 + 2 + 2 + 4 + 1 + MAX_ITEMS;
+  /** The size of a keyframe for 255 agents */
+  static final int MAX_SIZE = HEADER_SIZE + 255 * MAX_AGENT_SIZE;
+
+  private int tick = -1;
+  private int time;
+  private int mipID;
+  private int count;
+  private final byte[] directions;
+  private final int[] xs;
+  private final int[] ys;
+  private final int[] scores;
+  private final byte[] itemCounts;
+  private final byte[] items;
+
+  /** @param capacity The most agents the snapshot can hold */
+  public Snapshot(int capacity) {
+    directions = new byte[capacity];
+    xs = new int[capacity];
+    ys = new int[capacity];
+    scores = new int[capacity];
+    itemCounts = new byte[capacity];
+    items = new byte[capacity * MAX_ITEMS];
+  }
+
+  /**
+   * Records the current state of the game
+   *
+   * @param tick The tick the snapshot is taken on
+   * @param agents The agents, in id order
+   * @param mipID The id of mipsman
+   * @param time The time left in the game
+   */
+  public void capture(int tick, Entity[] agents, int mipID, int time) {
+    this.tick = tick;
+    this.time = time;
+    this.mipID = mipID;
+    this.count = agents.length;
+    for (int i = 0; i < count; i++) {
+      Entity agent = agents[i];
+      directions[i] = (byte) agent.getDirection().toInt();
+      xs[i] = PacketCodec.quantize(agent.getLocation().getX());
+      ys[i] = PacketCodec.quantize(agent.getLocation().getY());
+      scores[i] = agent.getScore();
+      List<PowerUp> held = agent.getItems();
+      int n = Math.min(MAX_ITEMS, held.size());
+      itemCounts[i] = (byte) n;
+      for (int j = 0; j < MAX_ITEMS; j++) {
+        items[i * MAX_ITEMS + j] = j < n ? (byte) held.get(j).toInt() : 0;
+      }
+    }
+  }
+
+  /**
+   * @param buf The buffer to write to
+   * @param baseline A snapshot the clients have, or null to write a keyframe
+   */
+  public void write(ByteBuffer buf, Snapshot baseline) {
+    buf.put(PacketCodec.SNAPSHOT);
+    buf.putInt(tick);
+    buf.put((byte) (baseline == null ? 0 : tick - baseline.tick));
+    buf.putInt(time);
+    buf.put((byte) mipID);
+    buf.put((byte) count);
+    for (int i = 0; i < count; i++) {
+      int changed = baseline == null || i >= baseline.count ? ALL : changes(i, baseline);
+      buf.put((byte) changed);
+      if ((changed & DIRECTION) != 0) {
+        buf.put(directions[i]);
+      }
+      if ((changed & POSITION) != 0) {
+        buf.putShort((short) xs[i]);
+        buf.putShort((short) ys[i]);
+      }
+      if ((changed & SCORE) != 0) {
+        buf.putInt(scores[i]);
+      }
+      if ((changed & ITEMS) != 0) {
+        buf.put(itemCounts[i]);
+        buf.put(items, i * MAX_ITEMS, itemCounts[i]);
+      }
+    }
+  }
+
+  /**
+   * @param i The index of the agent
+   * @param baseline The snapshot to compare to
+   * @return The flags of the fields that differ from the baseline
+   */
+  private int changes(int i, Snapshot baseline) {
+    int changed = 0;
+    if (directions[i] != baseline.directions[i]) {
+      changed |= DIRECTION;
+    }
+    if (xs[i] != baseline.xs[i] || ys[i] != baseline.ys[i]) {
+      changed |= POSITION;
+    }
+    if (scores[i] != baseline.scores[i]) {
+      changed |= SCORE;
+    }
+    if (itemCounts[i] != baseline.itemCounts[i]) {
+      changed |= ITEMS;
+    }
+    for (int j = i * MAX_ITEMS; j < (i + 1) * MAX_ITEMS; j++) {
+      if (items[j] != baseline.items[j]) {
+        changed |= ITEMS;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Reads the rest of a snapshot, starting from the baseline and applying the changes
+   *
+   * @param buf The buffer, positioned after the baseline offset
+   * @param tick The tick of the snapshot
+   * @param baseline The baseline it was written against, or null for a keyframe
+   */
+  void read(ByteBuffer buf, int tick, Snapshot baseline) {
+    if (baseline != null) {
+      copy(baseline);
+    }
+    this.tick = tick;
+    time = buf.getInt();
+    mipID = PacketCodec.readUnsignedByte(buf);
+    count = PacketCodec.readUnsignedByte(buf);
+    if (count > directions.length) {
+      throw new IllegalArgumentException("Snapshot of " + count + " agents");
+    }
+    for (int i = 0; i < count; i++) {
+      int changed = buf.get();
+      if ((changed & DIRECTION) != 0) {
+        directions[i] = buf.get();
+      }
+      if ((changed & POSITION) != 0) {
+        xs[i] = buf.getShort() & 0xFFFF;
+        ys[i] = buf.getShort() & 0xFFFF;
+      }
+      if ((changed & SCORE) != 0) {
+        scores[i] = buf.getInt();
+      }
+      if ((changed & ITEMS) != 0) {
+        itemCounts[i] = buf.get();
+        if (itemCounts[i] > MAX_ITEMS) {
+          throw new IndexOutOfBoundsException();
+        }
+        for (int j = 0; j < MAX_ITEMS; j++) {
+          items[i * MAX_ITEMS + j] = j < itemCounts[i] ? buf.get() : 0;
+        }
+      }
+    }
+  }
+
+  /** @param other The snapshot to copy the state of */
+  private void copy(Snapshot other) {
+    time = other.time;
+    mipID = other.mipID;
+    count = other.count;
+    System.arraycopy(other.directions, 0, directions, 0, count);
+    System.arraycopy(other.xs, 0, xs, 0, count);
+    System.arraycopy(other.ys, 0, ys, 0, count);
+    System.arraycopy(other.scores, 0, scores, 0, count);
+    System.arraycopy(other.itemCounts, 0, itemCounts, 0, count);
+    System.arraycopy(other.items, 0, items, 0, count * MAX_ITEMS);
+  }
+
+  /**
+   * Moves past a snapshot message without reading it
+   *
+   * @param buf The buffer, positioned after the message type
+   */
+  static void skip(ByteBuffer buf) {
+    buf.position(buf.position() + 4 + 1);
+    skipBody(buf);
+  }
+
+  /**
+   * Moves past the rest of a snapshot message
+   *
+   * @param buf The buffer, positioned after the baseline offset
+   */
+  static void skipBody(ByteBuffer buf) {
+    buf.position(buf.position() + 4 + 1);
+    int agents = PacketCodec.readUnsignedByte(buf);
+    for (int i = 0; i < agents; i++) {
+      int changed = buf.get();
+      int size = 0;
+      if ((changed & DIRECTION) != 0) {
+        size += 1;
+      }
+      if ((changed & POSITION) != 0) {
+        size += 4;
+      }
+      if ((changed & SCORE) != 0) {
+        size += 4;
+      }
+      buf.position(buf.position() + size);
+      if ((changed & ITEMS) != 0) {
+        buf.position(buf.position() + PacketCodec.readUnsignedByte(buf));
+      }
+    }
+  }
+
+  /** @return The tick the snapshot was taken on, -1 if it holds nothing */
+  public int getTick() {
+    return tick;
+  }
+
+  /** @return The time left in the game */
+  public int getTime() {
+    return time;
+  }
+
+  /** @return The id of mipsman */
+  public int getMipID() {
+    return mipID;
+  }
+
+  /** @return The number of agents */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @param i The id of the agent
+   * @return The value of the agent's direction
+   */
+  public int getDirection(int i) {
+    return directions[i];
+  }
+
+  /**
+   * @param i The id of the agent
+   * @return The agent's x coordinate
+   */
+  public double getX(int i) {
+    return PacketCodec.toCoordinate(xs[i]);
+  }
+
+  /**
+   * @param i The id of the agent
+   * @return The agent's y coordinate
+   */
+  public double getY(int i) {
+    return PacketCodec.toCoordinate(ys[i]);
+  }
+
+  /**
+   * @param i The id of the agent
+   * @return The agent's score
+   */
+  public int getScore(int i) {
+    return scores[i];
+  }
+
+  /**
+   * @param i The id of the agent
+   * @return The number of items the agent holds
+   */
+  public int getItemCount(int i) {
+    return itemCounts[i];
+  }
+
+  /**
+   * @param i The id of the agent
+   * @param j The index of the item
+   * @return The value of the item
+   */
+  public int getItem(int i, int j) {
+    return items[i * MAX_ITEMS + j];
+  }
+}
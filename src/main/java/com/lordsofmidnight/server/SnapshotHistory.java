@@ -0,0 +1,120 @@
+package com.lordsofmidnight.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The most recent {@link Snapshot}s sent or received, kept in a ring so they can be used as
+ * baselines without allocating. The host also records which clients have acknowledged each one,
+ * so that a snapshot is only written against a baseline every client is known to have.
+ */
+public class SnapshotHistory {
+
+  /** The number of snapshots kept, baselines further back than this are forgotten */
+  public static final int SIZE = 32;
+
+  private final Snapshot[] snapshots = new Snapshot[SIZE];
+  private final int[] ackedBy = new int[SIZE];
+  private int newest = -1;
+
+  /** @param capacity The most agents a snapshot can hold */
+  public SnapshotHistory(int capacity) {
+    for (int i = 0; i < SIZE; i++) {
+      snapshots[i] = new Snapshot(capacity);
+    }
+  }
+
+  /**
+   * @param tick The tick of the snapshot
+   * @return The snapshot taken on that tick, or null if it is not held
+   */
+  public synchronized Snapshot get(int tick) {
+    if (tick < 0 || tick > newest || newest - tick >= SIZE) {
+      return null;
+    }
+    Snapshot snapshot = snapshots[tick % SIZE];
+    return snapshot.getTick() == tick ? snapshot : null;
+  }
+
+  /**
+   * Gives the snapshot to record the given tick in, replacing the oldest one held
+   *
+   * @param tick The tick of the snapshot, newer than any held
+   * @return The snapshot to capture the state into
+   */
+  public synchronized Snapshot next(int tick) {
+    newest = tick;
+    ackedBy[tick % SIZE] = 0;
+    return snapshots[tick % SIZE];
+  }
+
+  /**
+   * Records that a client has received a snapshot
+   *
+   * @param id The id of the client
+   * @param tick The tick of the snapshot
+   */
+  public synchronized void acknowledge(int id, int tick) {
+    if (id >= 0 && id < Integer.SIZE && get(tick) != null) {
+      ackedBy[tick % SIZE] |= 1 << id;
+    }
+  }
+
+  /**
+   * Picks the newest snapshot acknowledged by every client that has acknowledged anything still
+   * held. Clients that have gone quiet for the whole history stop holding the others back, and pick
+   * up again from the next keyframe.
+   *
+   * @param tick The tick of the snapshot about to be sent
+   * @return The baseline to write it against, or null if a keyframe is needed
+   */
+  public synchronized Snapshot getBaseline(int tick) {
+    int live = 0;
+    for (int i = 0; i < SIZE; i++) {
+      if (isBaselineFor(snapshots[i], tick)) {
+        live |= ackedBy[i];
+      }
+    }
+    Snapshot baseline = null;
+    for (int i = 0; i < SIZE; i++) {
+      Snapshot snapshot = snapshots[i];
+      if (live != 0
+          && isBaselineFor(snapshot, tick)
+          && (ackedBy[i] & live) == live
+          && (baseline == null || snapshot.getTick() > baseline.getTick())) {
+        baseline = snapshot;
+      }
+    }
+    return baseline;
+  }
+
+  /**
+   * @param snapshot A snapshot held
+   * @param tick The tick of the snapshot about to be sent
+   * @return True if the snapshot is recent enough to be written against and won't be replaced by
+   *     the new one
+   */
+  private boolean isBaselineFor(Snapshot snapshot, int tick) {
+    int age = tick - snapshot.getTick();
+    return snapshot.getTick() >= 0 && snapshot.getTick() <= newest && age > 0 && age < SIZE;
+  }
+
+  /**
+   * Reads a snapshot sent by the host, building it on the baseline it was written against
+   *
+   * @param buf The buffer, positioned after the message type
+   * @return The snapshot, or null if it is older than the newest held or its baseline is not held,
+   *     in which case the message is skipped
+   */
+  public synchronized Snapshot read(ByteBuffer buf) {
+    int tick = buf.getInt();
+    int offset = PacketCodec.readUnsignedByte(buf);
+    Snapshot baseline = offset == 0 ? null : get(tick - offset);
+    if (tick <= newest || offset >= SIZE || (offset != 0 && baseline == null)) {
+      Snapshot.skipBody(buf);
+      return null;
+    }
+    Snapshot snapshot = next(tick);
+    snapshot.read(buf, tick, baseline);
+    return snapshot;
+  }
+}
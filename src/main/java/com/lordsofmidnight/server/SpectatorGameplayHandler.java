@@ -0,0 +1,64 @@
+package com.lordsofmidnight.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+
+/**
+ * Receives a game streamed by a {@link SpectatorRelay}. Spectators send nothing back, not even
+ * acknowledgements, so the frames received can be played by a telemetry with no acknowledgement
+ * queue.
+ */
+public class SpectatorGameplayHandler {
+
+  private final Queue<ByteBuffer> clientIn;
+  private final PacketReceiver receiver;
+
+  /**
+   * Watches a game multicast to {@link NetworkUtility#GROUP} on the LAN
+   *
+   * @param clientIn The queue that received frames are passed on to
+   * @throws IOException If the group cannot be joined
+   */
+  public SpectatorGameplayHandler(Queue<ByteBuffer> clientIn) throws IOException {
+    this(
+        clientIn,
+        DatagramTransport.join(NetworkUtility.GROUP, NetworkUtility.SPECTATOR_DGRAM_PORT));
+  }
+
+  /**
+   * @param clientIn The queue that received frames are passed on to
+   * @param transport What to receive the game on, such as one bound to the spectator port when the
+   *     host relays to this address directly
+   */
+  public SpectatorGameplayHandler(Queue<ByteBuffer> clientIn, DatagramTransport transport) {
+    this.clientIn = clientIn;
+    this.receiver = new PacketReceiver(transport, this::receive, null);
+    this.receiver.start();
+  }
+
+  /**
+   * Passes a frame received on, closing once the host stops. The frame is copied as the receiver
+   * reuses its buffer.
+   *
+   * @param frame The frame received
+   */
+  private void receive(ByteBuffer frame) {
+    ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+    copy.put(frame).flip();
+    clientIn.offer(copy);
+    if (PacketCodec.contains(copy, PacketCodec.STOP)) {
+      close();
+    }
+  }
+
+  /** @return What has been received from the host */
+  public NetworkStats getStats() {
+    return receiver.getStats();
+  }
+
+  /** Stops receiving */
+  public void close() {
+    receiver.shutdown();
+  }
+}
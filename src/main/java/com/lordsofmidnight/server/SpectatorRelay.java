@@ -0,0 +1,220 @@
+package com.lordsofmidnight.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a game to spectators, who only watch and never send anything back. Each frame offered is
+ * encoded into a datagram once, then held back for the relay's delay and sent from that one buffer
+ * to every spectator by the relay's own thread, so the player's sender does the same work however
+ * many are watching. Every spectator is sent the same sequence numbers. Adding {@link
+ * NetworkUtility#GROUP} as a spectator multicasts the game, so a whole LAN can watch for the cost
+ * of a single send.
+ *
+ * <p>Spectators are only sent what the players are, and never acknowledge anything. One that
+ * misses a snapshot recovers from the next keyframe, which also lists every power up box. Events
+ * are only resent while a player is missing them, so a spectator that misses one, or starts
+ * watching part way through, may never get it. It goes on from the oldest event the host still
+ * keeps, skipping any it missed once the players have them all, so a power up used then is not
+ * shown.
+ */
+public class SpectatorRelay extends Thread {
+
+  /** How long the game is held back from spectators by default, in milliseconds */
+  public static final long DEFAULT_DELAY = 1000;
+  private static final long SHUTDOWN_TIMEOUT = 1000; // ms to wait for held frames to be sent
+  private static final Held WAKE = new Held(null, 0); // queued to wake the thread
+
+  private final int port;
+  private final DatagramTransport transport;
+  private final long delay;
+  private final CopyOnWriteArrayList<InetSocketAddress> spectators =
+      new CopyOnWriteArrayList<>();
+  private final BlockingQueue<Held> held = new ArrayBlockingQueue<>(NetworkUtility.QUEUE_CAPACITY);
+  private final Object clock = new Object(); // waited on until the next frame is due
+  private volatile boolean running = true;
+  private volatile long dropped = 0;
+  private int sequence = 0;
+
+  /**
+   * Relays to the spectators' default port on the real network, after the default delay
+   *
+   * @throws IOException If the socket cannot be opened
+   */
+  public SpectatorRelay() throws IOException {
+    this(NetworkUtility.SPECTATOR_DGRAM_PORT, DatagramTransport.open(), DEFAULT_DELAY);
+  }
+
+  /**
+   * @param port The port spectators receive on
+   * @param transport What to send the game through, closed along with the relay
+   * @param delay How long to hold the game back from spectators, in milliseconds
+   */
+  public SpectatorRelay(int port, DatagramTransport transport, long delay) {
+    super("SpectatorRelay");
+    this.port = port;
+    this.transport = transport;
+    this.delay = TimeUnit.MILLISECONDS.toNanos(delay);
+  }
+
+  /** @param ip The address of a spectator, or a multicast group they have joined */
+  public void addSpectator(InetAddress ip) {
+    spectators.addIfAbsent(new InetSocketAddress(ip, port));
+  }
+
+  /** @param ip The address of a spectator, who is sent nothing more */
+  public void removeSpectator(InetAddress ip) {
+    spectators.remove(new InetSocketAddress(ip, port));
+  }
+
+  /** @return The number of spectators, counting a multicast group as one */
+  public int getSpectatorCount() {
+    return spectators.size();
+  }
+
+  /**
+   * Encodes a frame into a datagram to send the spectators once it is due. Never waits, if the
+   * relay has fallen behind the frame is dropped as a lost datagram would be. Nothing is done if
+   * nobody is watching.
+   *
+   * @param frame The messages to send, as written by {@link PacketCodec}, its position is left
+   *     unchanged
+   */
+  public synchronized void offer(ByteBuffer frame) {
+    if (!running || spectators.isEmpty()) {
+      return;
+    }
+    ByteBuffer datagram = BufferPool.DATAGRAMS.acquire();
+    datagram.put(PacketCodec.VERSION).putShort((short) sequence++).put(frame.duplicate()).flip();
+    if (!held.offer(new Held(datagram, System.nanoTime() + delay))) {
+      BufferPool.DATAGRAMS.release(datagram);
+      dropped++;
+    }
+  }
+
+  /** @return The number of frames dropped because the relay had fallen behind */
+  public long getDroppedFrames() {
+    return dropped;
+  }
+
+  /**
+   * Sends each frame to every spectator once it is due. Once shut down, sends whatever is still
+   * held straight away before closing the socket.
+   */
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        Held next = held.take();
+        if (next == WAKE) {
+          break;
+        }
+        waitUntil(next.due);
+        fanOut(next.datagram);
+      }
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } catch (ClosedChannelException e) {
+      running = false;
+      System.out.println("SpectatorRelay closed");
+    }
+    close();
+  }
+
+  /**
+   * Waits until a frame is due, or the relay is shut down
+   *
+   * @param due When the frame is due, from {@link System#nanoTime()}
+   */
+  private void waitUntil(long due) throws InterruptedException {
+    synchronized (clock) {
+      long wait;
+      while (running && (wait = due - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.timedWait(clock, wait);
+      }
+    }
+  }
+
+  /**
+   * Sends a datagram to every spectator, then returns its buffer to the pool
+   *
+   * @param datagram The datagram, from its start to its limit
+   * @throws ClosedChannelException If the socket has been closed
+   */
+  private void fanOut(ByteBuffer datagram) throws ClosedChannelException {
+    try {
+      for (InetSocketAddress spectator : spectators) {
+        datagram.rewind();
+        try {
+          transport.send(datagram, spectator);
+        } catch (ClosedChannelException e) {
+          throw e;
+        } catch (IOException e) {
+          e.printStackTrace(); // the others can still be sent to
+        }
+      }
+    } finally {
+      BufferPool.DATAGRAMS.release(datagram);
+    }
+  }
+
+  /** Sends anything still held, then closes the socket */
+  private void close() {
+    Held rest;
+    try {
+      while ((rest = held.poll()) != null) {
+        if (rest != WAKE) {
+          fanOut(rest.datagram);
+        }
+      }
+    } catch (ClosedChannelException e) {
+      e.printStackTrace();
+    }
+    try {
+      transport.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Stops the relay. Frames still held back are sent without waiting for them to be due, so the
+   * spectators see the end of the game.
+   */
+  public void shutdown() {
+    running = false;
+    if (isAlive()) {
+      // if the queue is full the thread isn't waiting on it, and will see it has stopped
+      held.offer(WAKE);
+      synchronized (clock) {
+        clock.notifyAll();
+      }
+      try {
+        join(SHUTDOWN_TIMEOUT);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } else if (transport.isOpen()) {
+      close();
+    }
+  }
+
+  /** A datagram held back until it is due */
+  private static class Held {
+
+    private final ByteBuffer datagram;
+    private final long due;
+
+    private Held(ByteBuffer datagram, long due) {
+      this.datagram = datagram;
+      this.due = due;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.lordsofmidnight.server;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Enumeration;
+
+/** Sends and receives datagrams on a blocking {@link DatagramChannel} */
+class UdpTransport implements DatagramTransport {
+
+  private final DatagramChannel channel;
+
+  private UdpTransport(DatagramChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * @return A transport for sending, on whichever port is free
+   * @throws IOException If the channel cannot be opened
+   */
+  static UdpTransport open() throws IOException {
+    return new UdpTransport(DatagramChannel.open());
+  }
+
+  /**
+   * @param port The port to receive on
+   * @return A transport receiving on the port
+   * @throws IOException If the port cannot be bound
+   */
+  static UdpTransport bind(int port) throws IOException {
+    DatagramChannel channel = DatagramChannel.open();
+    try {
+      channel.bind(new InetSocketAddress(port));
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return new UdpTransport(channel);
+  }
+
+  /**
+   * @param group The multicast group to receive
+   * @param port The port to receive on, shared with anything else on the machine receiving it
+   * @return A transport receiving what is sent to the group, on every interface that can join it
+   * @throws IOException If the port cannot be bound, or no interface can join the group
+   */
+  static UdpTransport join(InetAddress group, int port) throws IOException {
+    StandardProtocolFamily family =
+        group instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+    DatagramChannel channel = DatagramChannel.open(family);
+    try {
+      channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      channel.bind(new InetSocketAddress(port));
+      boolean joined = false;
+      Enumeration<NetworkInterface> faces = NetworkInterface.getNetworkInterfaces();
+      while (faces.hasMoreElements()) {
+        NetworkInterface iface = faces.nextElement();
+        if (iface.isLoopback() || !iface.isUp() || !iface.supportsMulticast()) {
+          continue;
+        }
+        try {
+          channel.join(group, iface);
+          joined = true;
+        } catch (IOException e) {
+          // not every interface has an address of the group's family
+        }
+      }
+      if (!joined) {
+        throw new IOException("No interface could join " + group);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return new UdpTransport(channel);
+  }
+
+  @Override
+  public void send(ByteBuffer datagram, InetSocketAddress to) throws IOException {
+    channel.send(datagram, to);
+  }
+
+  @Override
+  public InetSocketAddress receive(ByteBuffer buf) throws IOException {
+    return (InetSocketAddress) channel.receive(buf);
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
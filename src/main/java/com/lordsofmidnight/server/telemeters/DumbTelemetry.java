@@ -1,6 +1,8 @@
 package com.lordsofmidnight.server.telemeters;
 
 import com.lordsofmidnight.audio.AudioController;
+import com.lordsofmidnight.audio.MutedAudioController;
+import com.lordsofmidnight.gamestate.maps.Map;
 import com.lordsofmidnight.gamestate.points.Point;
 import com.lordsofmidnight.gamestate.points.PointMap;
 import com.lordsofmidnight.main.Client;
@@ -8,25 +10,105 @@ import com.lordsofmidnight.objects.EmptyPowerUpBox;
 import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.objects.Pellet;
 import com.lordsofmidnight.objects.powerUps.PowerUp;
-import com.lordsofmidnight.server.NetworkUtility;
-import com.lordsofmidnight.utils.GameLoop;
+import com.lordsofmidnight.server.HostClock;
+import com.lordsofmidnight.server.PacketCodec;
+import com.lordsofmidnight.server.ReliableReceiver;
+import com.lordsofmidnight.server.Snapshot;
+import com.lordsofmidnight.server.SnapshotHistory;
 import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.Methods;
+import com.lordsofmidnight.utils.TickScheduler;
 import com.lordsofmidnight.utils.enums.Direction;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Queue;
+import java.util.Random;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Behaves similar to Host Telemetry but relies on input from the server exclusively to know what is
  * happening with the other game entities, and for the usage or collection of powerups.
+ *
+ * <p>The player's own agent is predicted: their inputs are applied straight away rather than after
+ * a round trip to the server, and each snapshot is checked against the path they were predicted to
+ * take, only correcting them if the server disagrees. The other agents are drawn a short delay
+ * behind the newest state received, between the positions either side, so they move smoothly even
+ * though positions only arrive every few ticks.
+ *
+ * <p>Every frame from the server says which tick it was sent on. Positions are buffered at that
+ * tick rather than when they arrive, and the changes of direction in a frame older than one
+ * already applied are dropped. Given the {@link HostClock}, the game's clock follows the server's
+ * rather than only being moved on by snapshots.
  */
 public class DumbTelemetry extends Telemetry {
 
-  private BlockingQueue<String> inputs;
+  /** Ticks the other agents are drawn behind, long enough to ride out a lost snapshot */
+  public static final int DEFAULT_INTERPOLATION_DELAY = 20;
+  private static final int HISTORY = 64; // ticks of predicted positions kept for the player
+  private static final double TOLERANCE = 0.25; // cells from the predicted path the server can be
+  private static final double LAG_SMOOTHING = 0.2; // weight of each new estimate of the lag
+  private static final int MAX_CLOCK_LEAD = 50; // ticks ahead of a snapshot before resyncing
+  private static final int MAX_CLOCK_ERROR = 1; // ticks from the host's clock before resyncing
+  private static final int NO_TICK = Integer.MIN_VALUE;
+  private final Client client;
+  private BlockingQueue<ByteBuffer> inputs;
+  private Queue<ByteBuffer> acks;
   private Queue<Input> clientQueue;
+  private final SnapshotHistory snapshots = new SnapshotHistory(AGENT_COUNT);
+  private final ReliableReceiver events = new ReliableReceiver();
+  private final boolean predicting;
+  private final Queue<Direction> predictedInputs = new ConcurrentLinkedQueue<>();
+  private final int[] historyTicks = new int[HISTORY];
+  private final double[] historyX = new double[HISTORY];
+  private final double[] historyY = new double[HISTORY];
+  private double lag = 0; // ticks the snapshots trail the predicted player
+  private int lastInputTick = Integer.MIN_VALUE;
+  private final InterpolationBuffer[] remote = new InterpolationBuffer[AGENT_COUNT];
+  private int interpolationDelay = DEFAULT_INTERPOLATION_DELAY;
+  private HostClock hostClock;
+  private int frameTick = NO_TICK; // the tick of the frame being applied
+  private int newestFrameTick = NO_TICK;
+  private boolean staleFrame = false;
 
-  public DumbTelemetry(Queue<String> inputQueue, Client client, AudioController audioController) {
+  /**
+   * @param inputQueue The queue of packets from the server
+   * @param ackQueue The queue of packets to the server, the snapshots and events received are
+   *     acknowledged on
+   * @param client The client controlling the telemetry
+   * @param audioController The clients Audio Controller
+   */
+  public DumbTelemetry(
+      Queue<ByteBuffer> inputQueue,
+      Queue<ByteBuffer> ackQueue,
+      Client client,
+      AudioController audioController) {
     super(client, audioController);
-    inputs = (BlockingQueue<String>) inputQueue;
+    this.client = client;
+    this.clientID = client.getId();
+    inputs = (BlockingQueue<ByteBuffer>) inputQueue;
+    acks = ackQueue;
+    predicting = true;
+    initialise();
+  }
+
+  /**
+   * The constructor for a headless client that runs without a {@link Client}. Nothing is rendered
+   * or played, packets from the server are applied on each {@link #tick()}, and there is no player
+   * to predict.
+   *
+   * @param map The map being played on
+   * @param inputQueue The queue of packets from the server
+   * @param ackQueue The queue of packets to the server, or null if nothing is acknowledged
+   * @param listener Receives the collision and game over events
+   */
+  public DumbTelemetry(
+      Map map, Queue<ByteBuffer> inputQueue, Queue<ByteBuffer> ackQueue, GameListener listener) {
+    super(map, null, new MutedAudioController(), listener, new Random());
+    this.client = null;
+    inputs = (BlockingQueue<ByteBuffer>) inputQueue;
+    acks = ackQueue;
+    predicting = false;
     initialise();
   }
 
@@ -36,6 +118,10 @@ public class DumbTelemetry extends Telemetry {
   private void initialise() {
     initialiseEntities();
     initialisePellets();
+    for (int i = 0; i < AGENT_COUNT; i++) {
+      remote[i] = new InterpolationBuffer();
+    }
+    Arrays.fill(historyTicks, Integer.MIN_VALUE);
   }
 
   /**
@@ -47,213 +133,361 @@ public class DumbTelemetry extends Telemetry {
     pellets = new PointMap<>(map);
     for (int i = 0; i < map.getMaxX(); i++) {
       for (int j = 0; j < map.getMaxY(); j++) {
-        Point point = new Point(i + 0.5, j + 0.5);
+        Point point = new Point(i + 0.5, j + 0.5, map);
         if (!map.isWall(point)) {
           pellet = new Pellet(point);
-          pellet.updateImages(resourceLoader);
-          pellets.put(new Point(i, j), pellet);
+          if (resourceLoader != null) {
+            pellet.updateImages(resourceLoader);
+          }
+          pellets.put(new Point(i, j, map), pellet);
         }
       }
     }
   }
 
   /**
-   * Not needed as the only input received is from server and not from client.
+   * Predicts the player's own input, which is also sent to the server. Their agent turns on the
+   * next tick rather than once the server has confirmed it. The input is stamped with the tick the
+   * other agents are being drawn at, so the server can check catches against what the player saw.
    *
-   * @param in Erroneous input
+   * @param in The player's input
    */
   public void addInput(Input in) {
-    System.err.println("DumbTelemetry receiving inputs");
+    if (!predicting || in.getClientID() != clientID) {
+      System.err.println("DumbTelemetry receiving inputs");
+      return;
+    }
+    in.setTick(clock() - interpolationDelay);
+    Direction d = in.getMove();
+    if (d != Direction.USE && d != Direction.STOP) {
+      predictedInputs.offer(d);
+    }
+  }
+
+  /**
+   * @param ticks How many ticks behind the newest state received the other agents are drawn. More
+   *     hides more jitter and loss, but shows them further in the past.
+   */
+  public void setInterpolationDelay(int ticks) {
+    this.interpolationDelay = ticks;
+  }
+
+  /**
+   * @param hostClock The estimate of the server's tick to keep the game's clock on, or null to
+   *     follow the snapshots alone
+   */
+  public void setHostClock(HostClock hostClock) {
+    this.hostClock = hostClock;
+  }
+
+  /**
+   * Advances the game a tick, then draws the other agents where they were the interpolation delay
+   * ago and records where the player is predicted to be.
+   */
+  @Override
+  public void tick() {
+    followHostClock();
+    super.tick();
+    int now = clock();
+    for (int id = 0; id < AGENT_COUNT; id++) {
+      if (!isPredicted(id)) {
+        remote[id].apply(now - interpolationDelay, agents[id]);
+      }
+    }
+    if (predicting) {
+      int slot = Math.floorMod(now, HISTORY);
+      historyTicks[slot] = now;
+      historyX[slot] = agents[clientID].getLocation().getX();
+      historyY[slot] = agents[clientID].getLocation().getY();
+    }
   }
 
   /** Starts the main game loop for the client and processing of inputs. */
   public void startGame() {
     System.out.println("Started dumb telemetry");
     gameTimer = GAME_TIME;
-    final long DELAY = (long) Math.pow(10, 7);
-    inputProcessor =
-        new GameLoop(DELAY) {
-          @Override
-          public void handle() {
-            processInputs();
-            processPhysics(agents, map, resourceLoader, pellets, activePowerUps);
-          }
-        };
+    inputProcessor = new TickScheduler(TICK_LENGTH).addPhase(1, tick -> tick());
     inputProcessor.start();
   }
 
   /**
-   * Removes each of the inputs in the queue and performs the appropriate action based on the
-   * contents.
+   * Removes each of the frames in the queue and performs the appropriate action for every message
+   * it holds, then acknowledges any events received.
    */
   void processInputs() {
+    Direction predicted;
+    while ((predicted = predictedInputs.poll()) != null) {
+      Entity player = agents[clientID];
+      if (Methods.validateDirection(predicted, player.getLocation(), map)) {
+        player.setDirection(predicted);
+        lastInputTick = clock();
+      }
+    }
     while (!inputs.isEmpty()) {
-      String input = inputs.poll();
+      ByteBuffer frame = inputs.poll();
+      frameTick = NO_TICK;
+      staleFrame = false;
+      while (frame.hasRemaining()) {
+        applyMessage(frame.get(), frame);
+      }
+    }
+    if (acks != null && events.needsAck()) {
+      ByteBuffer ack = ByteBuffer.allocate(PacketCodec.EVENT_ACK_SIZE);
+      events.writeAck(ack, clientID);
+      ack.flip();
+      acks.offer(ack);
+    }
+  }
 
-      switch (input.substring(0, 4)) { // looks at first 4 characters
-        case "POS1":
-          setEntityMovement(input.substring(4));
-          break;
-        case "POS3":
-          setEntityPositions(input.substring(4));
-          break;
-        case "POW0":
-          updateInventory(input.substring(5));
-          break;
-        case "POW1":
-          activatePowerup(input.substring(4));
-          break;
-        case "POW2":
-          setPowerupBox(input.substring(4));
-          break;
-        case "SCOR":
-          setScore(input.substring(5));
-          break;
-        case NetworkUtility.STOP_CODE:
-          // set client flag that server has left
+  /**
+   * Performs the action for a message
+   *
+   * @param type The type of the message
+   * @param buf The buffer, positioned after the type. It is left after the message.
+   */
+  private void applyMessage(byte type, ByteBuffer buf) {
+    switch (type) {
+      case PacketCodec.SNAPSHOT:
+        applySnapshot(buf);
+        break;
+      case PacketCodec.EVENT:
+        events.receive(buf, event -> applyMessage(event.get(), event));
+        break;
+      case PacketCodec.TICK:
+        frameTick = buf.getInt();
+        staleFrame = frameTick < newestFrameTick;
+        newestFrameTick = Math.max(newestFrameTick, frameTick);
+        break;
+      case PacketCodec.MOVEMENT:
+        if (staleFrame) {
+          PacketCodec.skip(buf, type); // overtaken by a newer frame
+        } else {
+          setEntityMovement(buf);
+        }
+        break;
+      case PacketCodec.POWERUP_USED:
+        activatePowerup(buf);
+        break;
+      case PacketCodec.POWERUP_BOX:
+        setPowerupBox(buf);
+        break;
+      case PacketCodec.STOP:
+        // set client flag that server has left
+        if (client != null) {
           client.setHostGone(true);
-          stopGame();
-          break;
-        default:
-          throw new IllegalArgumentException();
-      }
+        }
+        stopGame();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown message type " + type);
     }
   }
 
   /** Called when the server informs the client that the game needs to end. */
   @Override
   public void stopGame() {
-    inputProcessor.close();
+    if (inputProcessor != null) {
+      inputProcessor.close();
+    }
   }
 
   /**
-   * Updates the positions each of the entities
+   * Updates the time, mipsman, and the position, direction, score and items of each of the
+   * entities, then acknowledges the snapshot so the server can send the next as changes from it.
+   * The player's position is reconciled with their prediction, and the others are buffered to be
+   * drawn after the interpolation delay.
    *
-   * @param s Packet containing the positions of each of the entities as defined by
-   *     NetworkUtility.makeEntitiesPositionPacket(Entity[])
+   * @param buf Message containing a snapshot as defined by Snapshot.write(ByteBuffer, Snapshot)
    */
-  private void setEntityPositions(String s) {
-    String[] positions = s.split("\\|");
-    int mipID = Integer.parseInt(positions[positions.length - 2]);
-    int gameTime = Integer.parseInt(positions[positions.length - 1]);
-    setTime(gameTime);
-    for (Entity ent : agents) {
-      if (ent.getClientId() == mipID) {
-        ent.setMipsman(true);
+  private void applySnapshot(ByteBuffer buf) {
+    Snapshot snapshot = snapshots.read(buf);
+    if (snapshot == null) {
+      return; // out of order, or waiting on a keyframe
+    }
+    if (hostClock == null || !hostClock.isSynchronised()) {
+      syncTime(snapshot.getTime());
+    }
+    setMipsman(snapshot.getMipID());
+    int tick = GAME_TIME - snapshot.getTime();
+    for (int id = 0; id < snapshot.getCount(); id++) {
+      Direction direction = Direction.fromInt(snapshot.getDirection(id));
+      if (isPredicted(id)) {
+        reconcile(snapshot.getX(id), snapshot.getY(id), direction);
       } else {
-        ent.setMipsman(false);
+        addRemotePosition(id, tick, snapshot.getX(id), snapshot.getY(id), direction);
+      }
+      agents[id].setScore(snapshot.getScore(id));
+      switch (snapshot.getItemCount(id)) {
+        case 0:
+          agents[id].setItems();
+          break;
+        case 1:
+          agents[id].setItems(snapshot.getItem(id, 0));
+          break;
+        default:
+          agents[id].setItems(snapshot.getItem(id, 0), snapshot.getItem(id, 1));
+          break;
       }
     }
+    if (acks != null) {
+      ByteBuffer ack = ByteBuffer.allocate(PacketCodec.ACK_SIZE);
+      PacketCodec.writeAck(ack, clientID, snapshot.getTick());
+      ack.flip();
+      acks.offer(ack);
+    }
+  }
 
-    for (int i = 0; i < positions.length - 2; i++) {
-      String[] ls = positions[i].split(":");
-      int id = Integer.parseInt(ls[0]);
-      int direction = Integer.parseInt(ls[1]);
-      Double x = Double.valueOf(ls[2]);
-      Double y = Double.valueOf(ls[3]);
-      agents[id].setLocation(x, y);
-      agents[id].setDirection(Direction.fromInt(direction));
+  /**
+   * Updates the client od current movement status of a given entity. The player's own movements
+   * have already been predicted, and the server's echo of them is ignored.
+   *
+   * @param buf Message about where the entity is and the direction it is moving
+   */
+  private void setEntityMovement(ByteBuffer buf) {
+    int id = PacketCodec.readUnsignedByte(buf);
+    Direction direction = Direction.fromInt(buf.get());
+    double x = PacketCodec.readCoordinate(buf);
+    double y = PacketCodec.readCoordinate(buf);
+    if (!isPredicted(id)) {
+      addRemotePosition(id, frameTick == NO_TICK ? clock() : frameTick, x, y, direction);
     }
+    setMipsman(PacketCodec.readUnsignedByte(buf));
   }
 
   /**
-   * Updates the client od current movement status of a given entity
+   * Buffers where an agent controlled by someone else was, placing it there straight away if it is
+   * the first position known
    *
-   * @param s String containing packet about where each of the entities are moving.
+   * @param id The id of the agent
+   * @param tick The tick of the game the position was true at
+   * @param x The x coordinate
+   * @param y The y coordinate
+   * @param direction The direction it was moving
    */
-  private void setEntityMovement(String s) {
-    String[] ls = s.split("\\|");
-    Input input = Input.fromString(ls[0]);
-    int id = input.getClientID();
-    double x = Double.valueOf(ls[1]);
-    double y = Double.valueOf(ls[2]);
-    agents[id].setLocation(x, y);
-    agents[id].setDirection(input.getMove());
-    int MIPID = Integer.parseInt(ls[3]);
-    for (Entity ent : agents) {
-      if (ent.getClientId() == MIPID) {
-        ent.setMipsman(true);
-      } else {
-        ent.setMipsman(false);
-      }
+  private void addRemotePosition(int id, int tick, double x, double y, Direction direction) {
+    if (remote[id].isEmpty()) {
+      agents[id].setLocation(x, y);
+      agents[id].setDirection(direction);
     }
+    remote[id].add(tick, x, y, direction);
   }
 
   /**
-   * Sets the scores for each client to maintain consistency
+   * Checks where the server had the player against where they were predicted to be. A position on
+   * the predicted path just means the server is behind, and how far behind is remembered. Anywhere
+   * else the prediction was wrong, from a turn the server refused, a stun or a respawn, so the
+   * server's position is taken and moved on by how far behind it is.
    *
-   * @param scores Packet containing scores of each client
+   * @param x The x coordinate the server had
+   * @param y The y coordinate the server had
+   * @param direction The direction the server had
    */
-  private void setScore(String scores) {
-    try {
-      String[] ls = scores.split("\\|");
-      for (int i = 0; i < ls.length; i++) {
-        int score = Integer.parseInt(ls[i]);
-        agents[i].setScore(score);
+  private void reconcile(double x, double y, Direction direction) {
+    int now = clock();
+    int behind = -1;
+    double closest = TOLERANCE;
+    for (int i = 0; i < HISTORY; i++) {
+      int slot = Math.floorMod(now - i, HISTORY);
+      if (historyTicks[slot] == now - i) {
+        double distance = Math.hypot(historyX[slot] - x, historyY[slot] - y);
+        if (distance <= closest) {
+          closest = distance;
+          behind = i;
+        }
       }
-    } catch (NumberFormatException e) {
-      System.out.println("ERROR: INVALID SCORE");
+    }
+    if (behind >= 0) {
+      lag += (behind - lag) * LAG_SMOOTHING;
+      return;
+    }
+    Entity player = agents[clientID];
+    int ahead = (int) Math.round(lag);
+    player.setLocation(x, y);
+    if (now - lastInputTick > ahead) { // else the server hasn't seen the last turn yet
+      player.setDirection(direction);
+    }
+    for (int i = 0; i < ahead; i++) {
+      moveAgent(player, map);
     }
   }
 
   /**
-   * Updates the inventories of all clients
+   * Moves the game time forwards to a snapshot's if it has fallen behind. Snapshots arrive late,
+   * so the time is only moved back if it has got well ahead.
    *
-   * @param s Packet containing the inventories of each of the clients
+   * @param time The time of the snapshot
    */
-  private void updateInventory(String s) {
-    String[] inventories = s.split("\\|");
-    for (String inventory : inventories) {
-      String[] ls = inventory.split(":");
-      int id = Integer.parseInt(ls[0]);
-      switch (ls.length) {
-        case 1:
-          agents[id].setItems();
-          break;
-        case 2:
-          agents[id].setItems(Integer.parseInt(ls[1]));
-          break;
-        case 3:
-          agents[id].setItems(Integer.parseInt(ls[1]), Integer.parseInt(ls[2]));
-          break;
-        default:
-          throw new IndexOutOfBoundsException();
-      }
+  private void syncTime(int time) {
+    if (gameTimer > time || time - gameTimer > MAX_CLOCK_LEAD) {
+      setTime(time);
+    }
+  }
+
+  /** Moves the game's clock to the tick the server is estimated to be on, if it has drifted */
+  private void followHostClock() {
+    if (hostClock == null || !hostClock.isSynchronised()) {
+      return;
+    }
+    int host = (int) Math.round(hostClock.getTick(System.nanoTime()));
+    if (Math.abs(host - clock()) > MAX_CLOCK_ERROR) {
+      setTime(GAME_TIME - host);
+    }
+  }
+
+  /** @return The number of ticks the game has run for, on this client's clock */
+  private int clock() {
+    return GAME_TIME - gameTimer;
+  }
+
+  /**
+   * @param id The id of an agent
+   * @return True if it is the player's own agent, and is predicted rather than interpolated
+   */
+  private boolean isPredicted(int id) {
+    return predicting && id == clientID;
+  }
+
+  /** @param mipID The id of the agent that is mipsman, every other agent is not */
+  private void setMipsman(int mipID) {
+    for (Entity ent : agents) {
+      ent.setMipsman(ent.getClientId() == mipID);
     }
   }
 
   /**
-   * Adds a power up box to the pellets
+   * Adds a power up box to the pellets, unless there is one there already
    *
-   * @param s The packet used to relay the power up information
+   * @param buf The message used to relay the power up information
    */
-  private void setPowerupBox(String s) {
-    String[] ls = s.split("\\|");
-    double x = Double.valueOf(ls[0]);
-    double y = Double.valueOf(ls[1]);
+  private void setPowerupBox(ByteBuffer buf) {
+    double x = PacketCodec.readCoordinate(buf);
+    double y = PacketCodec.readCoordinate(buf);
     Point point = new Point(x, y);
+    Pellet old = pellets.get(point);
+    if (old != null && old.isPowerUpBox()) {
+      return; // already placed, by the event or an earlier keyframe
+    }
     pellets.remove(point);
     EmptyPowerUpBox pellet = new EmptyPowerUpBox(point);
-    pellet.updateImages(resourceLoader);
+    if (resourceLoader != null) {
+      pellet.updateImages(resourceLoader);
+    }
     pellets.put(point, pellet);
   }
 
   /**
    * Handles activation of a power up for a client
    *
-   * @param s Packet String as defined in NetworkUtility.makePowerUPPacket(Input, Point)
+   * @param buf Message as defined in PacketCodec.writePowerUpUsed(ByteBuffer, int, PowerUp, Point)
    */
-  private void activatePowerup(String s) {
-    String[] ls = s.split("\\|");
-
-    int id = Integer.parseInt(ls[0]);
-    int powerint = Integer.parseInt(ls[1]);
-    double x = Double.valueOf(ls[2]);
-    double y = Double.valueOf(ls[3]);
+  private void activatePowerup(ByteBuffer buf) {
+    int id = PacketCodec.readUnsignedByte(buf);
+    PowerUp powerup = PowerUp.fromInt(buf.get());
+    double x = PacketCodec.readCoordinate(buf);
+    double y = PacketCodec.readCoordinate(buf);
 
     agents[id].setLocation(x, y);
-    PowerUp powerup = PowerUp.fromInt(powerint);
-    powerup.use(agents[id], activePowerUps, pellets, agents, audioController);
+    usePowerUp(agents[id], powerup);
   }
 
   /**
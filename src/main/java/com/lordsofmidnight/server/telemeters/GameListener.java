@@ -0,0 +1,21 @@
+package com.lordsofmidnight.server.telemeters;
+
+import com.lordsofmidnight.objects.Entity;
+
+/**
+ * Receives the events a {@link Telemetry} produces while running a game. Implemented by the
+ * {@link com.lordsofmidnight.main.Client Client} for rendered games and by whatever is hosting a
+ * headless game otherwise.
+ */
+public interface GameListener {
+
+  /**
+   * Called when a ghoul catches mipsman
+   *
+   * @param newMipsman The entity that has become mipsman
+   */
+  void collisionDetected(Entity newMipsman);
+
+  /** Called once when the game timer runs out. Final scores are available from the agents. */
+  void finishGame();
+}
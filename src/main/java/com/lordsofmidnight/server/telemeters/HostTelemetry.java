@@ -2,6 +2,8 @@ package com.lordsofmidnight.server.telemeters;
 
 import com.lordsofmidnight.ai.AILoopControl;
 import com.lordsofmidnight.audio.AudioController;
+import com.lordsofmidnight.audio.MutedAudioController;
+import com.lordsofmidnight.gamestate.maps.Map;
 import com.lordsofmidnight.gamestate.points.Point;
 import com.lordsofmidnight.gamestate.points.PointMap;
 import com.lordsofmidnight.main.Client;
@@ -9,29 +11,43 @@ import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.objects.Pellet;
 import com.lordsofmidnight.objects.PowerUpBox;
 import com.lordsofmidnight.objects.powerUps.PowerUp;
-import com.lordsofmidnight.server.NetworkUtility;
-import com.lordsofmidnight.utils.GameLoop;
+import com.lordsofmidnight.server.FrameBatcher;
+import com.lordsofmidnight.server.PacketCodec;
+import com.lordsofmidnight.server.ReliableSender;
+import com.lordsofmidnight.server.Snapshot;
+import com.lordsofmidnight.server.SnapshotHistory;
 import com.lordsofmidnight.utils.Input;
 import com.lordsofmidnight.utils.Methods;
+import com.lordsofmidnight.utils.TickScheduler;
 import com.lordsofmidnight.utils.enums.Direction;
+import java.nio.ByteBuffer;
 import java.util.Queue;
 import java.util.Random;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
 
 /**
  * This acts as the telemetry for the host of a multiplayer game, or for the user in a singleplayer
  * game. It has authority over how a game is run.
  */
-public class HostTelemetry extends Telemetry {
+public class HostTelemetry extends Telemetry implements PacketCodec.AckListener {
 
+  private static final int SNAPSHOT_INTERVAL = 10; // ticks between snapshot broadcasts
+  private static final int KEYFRAME_INTERVAL = 10; // snapshots between full snapshots
   private final int playerCount;
   private BlockingQueue<Input> inputs;
-  private BlockingQueue<String> outputs;
+  private BlockingQueue<ByteBuffer> outputs;
+  private FrameBatcher batcher;
+  private ReliableSender events;
+  private final SnapshotHistory snapshots = new SnapshotHistory(AGENT_COUNT);
+  private int snapshotTick = -1;
+  private PositionHistory history;
+  private final int[] viewLags = new int[AGENT_COUNT]; // ticks behind each player sees the others
   private boolean singlePlayer;
+  private boolean headless;
   private AILoopControl ai;
   private boolean aiRunning;
-  private GameLoop inventoryUpdater;
 
   /**
    * The constructor for multiplayer
@@ -45,12 +61,12 @@ public class HostTelemetry extends Telemetry {
   public HostTelemetry(
       int playerCount,
       Queue<Input> inputQueue,
-      Queue<String> outputQueue,
+      Queue<ByteBuffer> outputQueue,
       Client client,
       AudioController audioController) {
     super(client, audioController);
     inputs = (BlockingQueue<Input>) inputQueue;
-    outputs = (BlockingQueue<String>) outputQueue;
+    outputs = (BlockingQueue<ByteBuffer>) outputQueue;
     this.playerCount = playerCount;
     this.singlePlayer = false;
     initialise();
@@ -73,6 +89,34 @@ public class HostTelemetry extends Telemetry {
     initialise();
   }
 
+  /**
+   * The constructor for a headless game that runs without a {@link Client}. Nothing is rendered or
+   * played, and the AI is advanced as part of each {@link #tick()} rather than on its own thread,
+   * so the game can be stepped as fast as the caller likes.
+   *
+   * @param playerCount The number of players, the remaining agents are given to the AI
+   * @param map The map to play on
+   * @param seed The seed for spawn points, the starting mipsman and power up box placement
+   * @param inputQueue The Input queue
+   * @param outputQueue The output queue for packets to clients, or null if there are none
+   * @param listener Receives the collision and game over events
+   */
+  public HostTelemetry(
+      int playerCount,
+      Map map,
+      long seed,
+      Queue<Input> inputQueue,
+      Queue<ByteBuffer> outputQueue,
+      GameListener listener) {
+    super(map, null, new MutedAudioController(), listener, new Random(seed));
+    inputs = (BlockingQueue<Input>) inputQueue;
+    outputs = (BlockingQueue<ByteBuffer>) outputQueue;
+    this.playerCount = playerCount;
+    this.singlePlayer = false;
+    this.headless = true;
+    initialise();
+  }
+
   /**
    * Initialises the game agents/entities and AI to control them
    *
@@ -80,10 +124,15 @@ public class HostTelemetry extends Telemetry {
    */
   private void initialise() {
 
+    if (outputs != null && !singlePlayer) { // nobody reads the single player queue
+      batcher = new FrameBatcher(PacketCodec.MAX_FRAME_SIZE, outputs, this::clock);
+      events = new ReliableSender(remotePlayers(), batcher);
+      history = new PositionHistory(AGENT_COUNT);
+    }
     initialiseEntities();
 
-    if (singlePlayer) {
-      agents[(new Random()).nextInt(AGENT_COUNT)].setMipsman(true);
+    if (singlePlayer || headless) {
+      agents[random.nextInt(AGENT_COUNT)].setMipsman(true);
     }
 
     initialisePellets();
@@ -103,6 +152,19 @@ public class HostTelemetry extends Telemetry {
     }
   }
 
+  /**
+   * @return The ids of the players on other machines. A player hosting from their own client plays
+   *     as id 0 and reads the game directly, a headless host has no player of its own.
+   */
+  private int[] remotePlayers() {
+    int first = headless ? 0 : 1;
+    int[] ids = new int[Math.max(0, playerCount - first)];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = first + i;
+    }
+    return ids;
+  }
+
   /**
    * Adds an input to the input queue
    *
@@ -116,60 +178,58 @@ public class HostTelemetry extends Telemetry {
    * Handles starting the game for the host
    */
   public void startGame() {
-    updateClients(agents); // set starting positions
+    initialiseScheduler().start();
+  }
+
+  /**
+   * Sets the game up to start and creates the scheduler that runs its physics and client updates,
+   * without starting it. {@link #startGame()} runs the scheduler on its own thread, whereas a
+   * dedicated server steps it from a shared worker pool.
+   *
+   * @return The scheduler for this game
+   */
+  public TickScheduler initialiseScheduler() {
+    updateClients(agents); // set starting positions, as a keyframe
     startAI();
     audioController.gameIntro();
     gameTimer = GAME_TIME;
-    final long DELAY = (long) Math.pow(10, 7);
-    final long positionDELAY = (long) Math.pow(10, 8);
-    final long scoreDELAY = (long) Math.pow(10, 9);
+    // physics runs every tick, the snapshots for clients on every nth tick of the same thread,
+    // then any events clients are missing are resent and everything goes out together
     inputProcessor =
-        new GameLoop(DELAY) {
-          @Override
-          public void handle() {
-            processInputs();
-            processPhysics(agents, map, resourceLoader, pellets, activePowerUps);
-          }
-        };
-    inputProcessor.start();
-
-    positionUpdater =
-        new GameLoop(positionDELAY) {
-          @Override
-          public void handle() {
-            updateClients(agents);
-          }
-        };
-    positionUpdater.start();
-
-    inventoryUpdater =
-        new GameLoop(positionDELAY) {
-          @Override
-          public void handle() {
-            updateInventories(agents);
-          }
-        };
-    inventoryUpdater.start();
-
-    scoreUpdater =
-        new GameLoop(scoreDELAY) {
-          @Override
-          public void handle() {
-            updateScores(agents);
-          }
-        };
-    scoreUpdater.start();
+        new TickScheduler(TICK_LENGTH)
+            .addPhase(1, tick -> tick())
+            .addPhase(SNAPSHOT_INTERVAL, tick -> updateClients(agents))
+            .addPhase(1, tick -> resendEvents())
+            .addPhase(1, tick -> flushClients());
+    return inputProcessor;
   }
 
   /**
    * Starts the AI-controlled agents
    */
   public void startAI() {
-    if (!aiRunning && ai != null) {
+    if (!aiRunning && ai != null && !headless) {
       ai.start();
+      aiRunning = true;
     }
   }
 
+  @Override
+  public void tick() {
+    if (headless && ai != null) {
+      ai.step();
+    }
+    super.tick();
+    if (history != null) {
+      history.record(clock(), agents);
+    }
+  }
+
+  /** @return The number of ticks the game has run for */
+  private int clock() {
+    return GAME_TIME - gameTimer;
+  }
+
   /**
    * Method to deal with the inputs provided in the inputs queue
    *
@@ -179,6 +239,9 @@ public class HostTelemetry extends Telemetry {
     while (!inputs.isEmpty()) {
       Input input = inputs.poll();
       int id = input.getClientID();
+      if (input.getTick() != Input.NO_TICK) {
+        viewLags[id] = Math.max(0, Math.min(clock() - input.getTick(), PositionHistory.SIZE));
+      }
       Direction d = input.getMove();
       if (d.equals(Direction.USE)) {
         if (agents[id].isDead()) {
@@ -212,20 +275,21 @@ public class HostTelemetry extends Telemetry {
   @Override
   void initialisePellets() {
     Pellet pellet;
-    Random r = new Random();
     pellets = new PointMap<>(map);
     for (int i = 0; i < map.getMaxX(); i++) {
       for (int j = 0; j < map.getMaxY(); j++) {
-        Point point = new Point(i + 0.5, j + 0.5);
+        Point point = new Point(i + 0.5, j + 0.5, map);
         if (!map.isWall(point)) {
-          if (r.nextInt(30) == 1) {
+          if (random.nextInt(30) == 1) {
             pellet = new PowerUpBox(point);
             informPowerupBox(point);
           } else {
             pellet = new Pellet(point);
           }
-          pellet.updateImages(resourceLoader);
-          pellets.put(new Point(i, j), pellet);
+          if (resourceLoader != null) {
+            pellet.updateImages(resourceLoader);
+          }
+          pellets.put(new Point(i, j, map), pellet);
         }
       }
     }
@@ -239,11 +303,37 @@ public class HostTelemetry extends Telemetry {
   private void usePowerUp(int id) {
     PowerUp item;
     if ((item = agents[id].getFirstItem()) != null) {
-      item.use(agents[id], activePowerUps, pellets, agents, audioController);
+      usePowerUp(agents[id], item);
       informPowerup(id, item, agents[id].getLocation());
     }
   }
 
+  /**
+   * Checks the catcher against where the victim is now, and for a remote player also against where
+   * they last said they were seeing it, up to {@value PositionHistory#SIZE} ticks ago. Players see
+   * the others behind where the host has them, so without looking back they miss catches that
+   * looked certain on their screen.
+   *
+   * @param victim The agent that would be caught
+   * @param catcher The agent catching it, whose face is checked against the victim
+   * @return True if the catcher has caught the victim, now or as the catcher saw it
+   */
+  @Override
+  boolean caught(Entity victim, Entity catcher) {
+    if (super.caught(victim, catcher)) {
+      return true;
+    }
+    int lag = viewLags[catcher.getClientId()];
+    if (history == null || lag == 0) {
+      return false;
+    }
+    int slot = history.find(clock() - lag);
+    int id = victim.getClientId();
+    return slot >= 0
+        && !history.isDead(slot, id)
+        && Point.inRange(history.getX(slot, id), history.getY(slot, id), catcher.getFaceLocation());
+  }
+
   /** @return The id of the player that is MIPSman */
   private int getMipID() {
     for (Entity e : agents) {
@@ -256,12 +346,52 @@ public class HostTelemetry extends Telemetry {
 
   @Override
   public void stopGame() {
-    outputs.add(NetworkUtility.STOP_CODE);
-    inputProcessor.close();
-    positionUpdater.close();
-    scoreUpdater.close();
-    inventoryUpdater.close();
-    ai.killAI();
+    send(PacketCodec::writeStop);
+    flushClients();
+    if (inputProcessor != null) {
+      inputProcessor.close();
+    }
+    if (ai != null) {
+      ai.killAI();
+    }
+  }
+
+  /**
+   * Adds a message to the frame for the clients, if there is anyone to send to. Everything sent in
+   * a tick goes out together when the tick ends.
+   *
+   * @param writer Writes the message into the buffer it is given
+   */
+  private synchronized void send(Consumer<ByteBuffer> writer) {
+    if (batcher != null) {
+      batcher.add(writer);
+    }
+  }
+
+  /**
+   * Adds a message that must arrive to the frame for the clients. It is resent until every client
+   * has acknowledged it, and clients apply these in the order they were sent.
+   *
+   * @param writer Writes the message into the buffer it is given
+   */
+  private synchronized void sendEvent(Consumer<ByteBuffer> writer) {
+    if (events != null) {
+      events.send(writer);
+    }
+  }
+
+  /** Resends the events clients have not acknowledged in time */
+  private synchronized void resendEvents() {
+    if (events != null) {
+      events.update();
+    }
+  }
+
+  /** Queues the messages sent since the last flush for the clients */
+  private synchronized void flushClients() {
+    if (batcher != null) {
+      batcher.flush();
+    }
   }
 
   /**
@@ -272,7 +402,7 @@ public class HostTelemetry extends Telemetry {
    * @param location The location it was used at
    */
   private void informPowerup(int id, PowerUp powerup, Point location) {
-    outputs.add(NetworkUtility.makePowerUpPacket(id, powerup, location));
+    sendEvent(buf -> PacketCodec.writePowerUpUsed(buf, id, powerup, location));
   }
 
   /**
@@ -281,34 +411,61 @@ public class HostTelemetry extends Telemetry {
    * @param point The point where it is.
    */
   private void informPowerupBox(Point point) {
-    outputs.add(NetworkUtility.makePowerUpBoxPacket(point));
+    sendEvent(buf -> PacketCodec.writePowerUpBox(buf, point));
   }
 
   /**
-   * Informs clients of the updated inventory of each of the agents.
+   * Informs clients of where each agent is, their direction, score and items, and the game time.
+   * Only what changed since the newest snapshot every client has acknowledged is sent, with a full
+   * keyframe every {@value #KEYFRAME_INTERVAL} snapshots so a client that missed too much can
+   * recover. Keyframes also list every power up box, for spectators that missed the events placing
+   * them.
    *
    * @param agents The game agents
    */
-  private void updateInventories(Entity[] agents) {
-    outputs.add(NetworkUtility.makeInventoryPacket(agents));
+  private void updateClients(Entity[] agents) {
+    if (batcher == null) {
+      return;
+    }
+    int tick = ++snapshotTick;
+    Snapshot baseline = tick % KEYFRAME_INTERVAL == 0 ? null : snapshots.getBaseline(tick);
+    Snapshot snapshot = snapshots.next(tick);
+    snapshot.capture(tick, agents, getMipID(), gameTimer);
+    send(buf -> snapshot.write(buf, baseline));
+    if (baseline == null) {
+      for (int cell = pellets.nextCell(0); cell >= 0; cell = pellets.nextCell(cell + 1)) {
+        Pellet pellet = pellets.get(cell);
+        if (pellet.isPowerUpBox()) {
+          Point point = pellet.getLocation();
+          send(buf -> PacketCodec.writePowerUpBox(buf, point));
+        }
+      }
+    }
   }
 
   /**
-   * Informs clients of the scores of each of the agents
+   * Records that a client has received a snapshot, so later ones can be sent as changes from it
    *
-   * @param agents The game agents
+   * @param id The id of the client
+   * @param tick The tick of the snapshot
    */
-  private void updateScores(Entity[] agents) {
-    outputs.add(NetworkUtility.makeScorePacket(agents));
+  @Override
+  public void acknowledgeSnapshot(int id, int tick) {
+    snapshots.acknowledge(id, tick);
   }
 
   /**
-   * Informs clients of where each agent is and their direction
+   * Records which events a client has received, so only those it is missing are resent
    *
-   * @param agents The game agents
+   * @param id The id of the client
+   * @param next The sequence of the first event it is missing
+   * @param received Bit i is set if event next + i + 1 has been received
    */
-  private void updateClients(Entity[] agents) {
-    outputs.add(NetworkUtility.makeEntitiesPositionPacket(agents) + getMipID() + "|" + gameTimer);
+  @Override
+  public synchronized void acknowledgeEvents(int id, int next, int received) {
+    if (events != null) {
+      events.acknowledge(id, next, received);
+    }
   }
 
   /**
@@ -318,6 +475,6 @@ public class HostTelemetry extends Telemetry {
    * @param location The location which the input took place.
    */
   private void informClients(Input input, Point location) {
-    outputs.add(NetworkUtility.makeEntitiyMovementPacket(input, location, getMipID()));
+    send(buf -> PacketCodec.writeMovement(buf, input, location, getMipID()));
   }
 }
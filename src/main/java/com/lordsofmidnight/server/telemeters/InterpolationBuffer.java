@@ -0,0 +1,121 @@
+package com.lordsofmidnight.server.telemeters;
+
+import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.utils.enums.Direction;
+
+/**
+ * The recent positions of an agent controlled by someone else, by the tick of the game they were
+ * true at. The agent is drawn a short delay behind the newest position received, part way between
+ * the two it falls between, so it moves smoothly however unevenly the updates arrive.
+ */
+class InterpolationBuffer {
+
+  static final int SIZE = 16;
+  static final double MAX_STEP = 2; // cells between positions that are jumped between, not blended
+  private final int[] ticks = new int[SIZE];
+  private final double[] xs = new double[SIZE];
+  private final double[] ys = new double[SIZE];
+  private final Direction[] directions = new Direction[SIZE];
+  private int count = 0; // positions held, oldest first
+
+  /**
+   * Adds a position, in order of its tick. If the buffer is full the oldest position is dropped.
+   *
+   * @param tick The tick of the game it was true at
+   * @param x The x coordinate
+   * @param y The y coordinate
+   * @param direction The direction the agent was moving
+   */
+  void add(int tick, double x, double y, Direction direction) {
+    int i = count;
+    while (i > 0 && ticks[i - 1] > tick) {
+      i--;
+    }
+    if (i > 0 && ticks[i - 1] == tick) {
+      set(i - 1, tick, x, y, direction);
+      return;
+    }
+    if (count == SIZE) {
+      if (i == 0) {
+        return; // older than everything held
+      }
+      drop(1);
+      i--;
+    }
+    System.arraycopy(ticks, i, ticks, i + 1, count - i);
+    System.arraycopy(xs, i, xs, i + 1, count - i);
+    System.arraycopy(ys, i, ys, i + 1, count - i);
+    System.arraycopy(directions, i, directions, i + 1, count - i);
+    set(i, tick, x, y, direction);
+    count++;
+  }
+
+  /**
+   * Places the agent where it was at a tick, blending between the positions either side of it.
+   * Positions before those are no longer needed and are dropped.
+   *
+   * @param tick The tick to draw the agent at
+   * @param agent The agent
+   * @return False if the tick is outside the positions held, and the agent was left alone
+   */
+  boolean apply(int tick, Entity agent) {
+    if (count == 0 || tick < ticks[0] || tick > ticks[count - 1]) {
+      return false;
+    }
+    int next = 0;
+    while (ticks[next] < tick) {
+      next++;
+    }
+    if (ticks[next] == tick) {
+      place(next, agent);
+      drop(next);
+      return true;
+    }
+    int previous = next - 1;
+    double dx = xs[next] - xs[previous];
+    double dy = ys[next] - ys[previous];
+    if (Math.abs(dx) > MAX_STEP || Math.abs(dy) > MAX_STEP) {
+      place(previous, agent); // wrapped around the map or respawned
+    } else {
+      double t = (tick - ticks[previous]) / (double) (ticks[next] - ticks[previous]);
+      agent.setLocation(xs[previous] + dx * t, ys[previous] + dy * t);
+      agent.setDirection(directions[previous]);
+    }
+    drop(previous);
+    return true;
+  }
+
+  /** @return True if no positions are held */
+  boolean isEmpty() {
+    return count == 0;
+  }
+
+  /** Forgets every position */
+  void clear() {
+    count = 0;
+  }
+
+  private void set(int i, int tick, double x, double y, Direction direction) {
+    ticks[i] = tick;
+    xs[i] = x;
+    ys[i] = y;
+    directions[i] = direction;
+  }
+
+  private void place(int i, Entity agent) {
+    agent.setLocation(xs[i], ys[i]);
+    agent.setDirection(directions[i]);
+  }
+
+  /** @param n The number of oldest positions to drop */
+  private void drop(int n) {
+    if (n == 0) {
+      return;
+    }
+    count -= n;
+    System.arraycopy(ticks, n, ticks, 0, count);
+    System.arraycopy(xs, n, xs, 0, count);
+    System.arraycopy(ys, n, ys, 0, count);
+    System.arraycopy(directions, n, directions, 0, count);
+  }
+}
@@ -0,0 +1,96 @@
+package com.lordsofmidnight.server.telemeters;
+
+import com.lordsofmidnight.objects.Entity;
+import java.util.Arrays;
+
+/**
+ * Where every agent was over the last {@value #SIZE} ticks, so the host can check a collision
+ * against the positions a remote player was seeing rather than those it has now. Each tick writes
+ * over the oldest in a ring of arrays allocated up front, so keeping the history allocates nothing.
+ */
+class PositionHistory {
+
+  /** Ticks kept, enough for the interpolation delay and a round trip of a little over 100ms */
+  static final int SIZE = 32;
+  private final int agentCount;
+  private final int[] ticks = new int[SIZE];
+  private final double[] xs;
+  private final double[] ys;
+  private final boolean[] dead;
+  private int newest = Integer.MIN_VALUE;
+
+  /** @param agentCount The number of agents in the game */
+  PositionHistory(int agentCount) {
+    this.agentCount = agentCount;
+    this.xs = new double[SIZE * agentCount];
+    this.ys = new double[SIZE * agentCount];
+    this.dead = new boolean[SIZE * agentCount];
+    Arrays.fill(ticks, Integer.MIN_VALUE);
+  }
+
+  /**
+   * Records where every agent is, in place of the oldest tick held
+   *
+   * @param tick The tick of the game the positions are true at, one after the last recorded
+   * @param agents The agents
+   */
+  void record(int tick, Entity[] agents) {
+    int slot = Math.floorMod(tick, SIZE);
+    ticks[slot] = tick;
+    newest = tick;
+    for (int id = 0; id < agentCount; id++) {
+      int i = slot * agentCount + id;
+      xs[i] = agents[id].getLocation().getX();
+      ys[i] = agents[id].getLocation().getY();
+      dead[i] = agents[id].isDead();
+    }
+  }
+
+  /**
+   * Finds the positions at a tick. A tick older than those held is moved forward to the oldest, so
+   * nobody is compensated for more than {@value #SIZE} ticks of lag.
+   *
+   * @param tick The tick wanted
+   * @return Where the positions at the tick are held, or -1 if they are not
+   */
+  int find(int tick) {
+    if (newest == Integer.MIN_VALUE) {
+      return -1;
+    }
+    int clamped = Math.max(Math.min(tick, newest), newest - SIZE + 1);
+    int slot = Math.floorMod(clamped, SIZE);
+    return ticks[slot] == clamped ? slot : -1;
+  }
+
+  /**
+   * @param slot Where the positions are held, from {@link #find(int)}
+   * @param id The id of the agent
+   * @return The x coordinate of the agent
+   */
+  double getX(int slot, int id) {
+    return xs[slot * agentCount + id];
+  }
+
+  /**
+   * @param slot Where the positions are held, from {@link #find(int)}
+   * @param id The id of the agent
+   * @return The y coordinate of the agent
+   */
+  double getY(int slot, int id) {
+    return ys[slot * agentCount + id];
+  }
+
+  /**
+   * @param slot Where the positions are held, from {@link #find(int)}
+   * @param id The id of the agent
+   * @return True if the agent was dead
+   */
+  boolean isDead(int slot, int id) {
+    return dead[slot * agentCount + id];
+  }
+
+  /** @return The newest tick recorded, or {@link Integer#MIN_VALUE} if there are none */
+  int getNewest() {
+    return newest;
+  }
+}
@@ -1,21 +1,24 @@
 package com.lordsofmidnight.server.telemeters;
 
 import com.lordsofmidnight.audio.AudioController;
+import com.lordsofmidnight.gamestate.maps.EntityGrid;
 import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.points.Cell;
 import com.lordsofmidnight.gamestate.points.Point;
 import com.lordsofmidnight.gamestate.points.PointMap;
 import com.lordsofmidnight.main.Client;
 import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.objects.Pellet;
+import com.lordsofmidnight.objects.powerUps.ActivePowerUps;
 import com.lordsofmidnight.objects.powerUps.PowerUp;
 import com.lordsofmidnight.renderer.ResourceLoader;
-import com.lordsofmidnight.utils.GameLoop;
 import com.lordsofmidnight.utils.Input;
 import com.lordsofmidnight.utils.Methods;
+import com.lordsofmidnight.utils.TickScheduler;
+import com.lordsofmidnight.utils.TimerWheel;
 import com.lordsofmidnight.utils.enums.Direction;
-import java.util.ArrayList;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * Parent class for DumbTelemetry and HostTelemetry A telemetry object is responsible for keeping
@@ -25,70 +28,137 @@ public abstract class Telemetry {
 
   static final int AGENT_COUNT = 5;
   static final int GAME_TIME = 150 * 100; // Number of seconds *100
-  static Client client;
+  private static final int PELLET_TIMER_SLOTS = 512;
+  protected final GameListener listener;
+  protected final Random random;
   protected int gameTimer = GAME_TIME;
+  protected boolean finished;
   protected int clientID;
   protected Map map;
-  protected GameLoop inputProcessor;
-  protected GameLoop positionUpdater;
-  protected GameLoop scoreUpdater;
+  public static final long TICK_LENGTH = (long) Math.pow(10, 7); // 100 ticks per second
+  protected TickScheduler inputProcessor;
   protected AudioController audioController;
   Entity[] agents;
   PointMap<Pellet> pellets;
   ResourceLoader resourceLoader;
-  ConcurrentHashMap<UUID, PowerUp> activePowerUps = new ConcurrentHashMap<>();
+  ActivePowerUps activePowerUps = new ActivePowerUps();
+  private EntityGrid collisionGrid;
+  private final int[] collisionCandidates = new int[AGENT_COUNT];
+  private long physicsUpdates = 0;
+  private final TimerWheel<Pellet> pelletTimers = new TimerWheel<>(PELLET_TIMER_SLOTS);
+  private final Consumer<Pellet> firePelletTimer = pellet -> pellet.onTimer(physicsUpdates);
+  private final Pellet[] usedUpPellets = new Pellet[AGENT_COUNT];
 
   /**
    * @param client The client it belongs to
    * @param audioController The Audio Controller for the client
    */
   Telemetry(Client client, AudioController audioController) {
-    this.map = client.getMap();
-    Telemetry.client = client;
-    this.resourceLoader = client.getResourceLoader();
+    this(client.getMap(), client.getResourceLoader(), audioController, client, new Random());
     this.agents = client.getAgents();
+  }
+
+  /**
+   * Creates a telemetry that does not depend on a {@link Client}, allowing several games to run
+   * side by side in the same process.
+   *
+   * @param map The map the game is played on
+   * @param resourceLoader The resource loader for pellet images, null if nothing is rendered
+   * @param audioController The Audio Controller to play game sounds on
+   * @param listener Receives the collision and game over events
+   * @param random The source of randomness for spawning entities and pellets
+   */
+  Telemetry(
+      Map map,
+      ResourceLoader resourceLoader,
+      AudioController audioController,
+      GameListener listener,
+      Random random) {
+    this.map = map;
+    this.resourceLoader = resourceLoader;
     this.audioController = audioController;
+    this.listener = listener;
+    this.random = random;
   }
 
   /**
-   * Static method to detect if the mipsman entity will eat a pellet
+   * Method to detect if the mipsman entity will eat a pellet. Pellets that are eaten have their
+   * respawn timer started, and traps that are used up are replaced with a new pellet.
    *
    * @param agents The entities
    * @param pellets The pellets
    * @author Matthew Jones
    */
-  private static void pelletCollision(
+  private void pelletCollision(
       Entity[] agents,
       PointMap<Pellet> pellets,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps,
+      ActivePowerUps activePowerUps,
       AudioController audioController) {
+    int usedUp = 0;
     for (Entity agent : agents) {
       Point p = agent.getLocation();
       Pellet pellet = pellets.get(p);
       if (pellet != null) {
+        boolean wasActive = pellet.isActive();
         pellet.interact(agent, agents, activePowerUps, audioController);
+        if (pellet.replace()) {
+          usedUpPellets[usedUp++] = pellet;
+        } else if (wasActive && !pellet.isActive()) {
+          startPelletTimer(pellet);
+        }
+      }
+    }
+    for (int i = 0; i < usedUp; i++) {
+      Point p = usedUpPellets[i].getLocation();
+      if (pellets.get(p) == usedUpPellets[i]) {
+        pellets.put(p, new Pellet(p));
       }
+      usedUpPellets[i] = null;
     }
   }
+
+  /**
+   * Schedules the pellet's timer, if it has one, to fire on the right physics update
+   *
+   * @param pellet The pellet, may be null
+   */
+  private void startPelletTimer(Pellet pellet) {
+    if (pellet == null) {
+      return;
+    }
+    long due = pellet.startTimer(physicsUpdates);
+    if (due >= 0) {
+      pelletTimers.schedule(pellet, due);
+    }
+  }
+
+  /**
+   * Uses a powerUp, starting the timer of any pellet it places on the map
+   *
+   * @param user The entity using the powerUp
+   * @param item The powerUp
+   */
+  void usePowerUp(Entity user, PowerUp item) {
+    item.use(user, activePowerUps, pellets, agents, audioController);
+    startPelletTimer(item.getPlaced());
+  }
   // abstract methods
 
   /**
-   * Static method for 'swapping' a mipsman and ghoul if they occupy the same area.
+   * Method for 'swapping' a mipsman and ghoul if they occupy the same area.
    *
    * @param mipsman Entity currently acting as mipsman
    * @param ghoul Entity currently running as ghoul
    * @author Alex Banks, Matthew Jones
    */
-  private static void detectEntityCollision(
+  private void detectEntityCollision(
       Entity mipsman, Entity ghoul, AudioController audioController) {
     if (mipsman.isDead() || ghoul.isDead()) {
       return;
     }
-    Point mipsmanCenter = mipsman.getLocation();
-    Point ghoulFace = ghoul.getFaceLocation();
-    if (mipsmanCenter.inRange(ghoulFace)) { // check temporary invincibility here
+    if (caught(mipsman, ghoul)) { // check temporary invincibility here
       if (mipsman.isMipsman()) {
-        client.collisionDetected(ghoul);
+        listener.collisionDetected(ghoul);
       }
       /*mipsman.setMipsman(false);
       ghoul.setMipsman(true);
@@ -101,10 +171,33 @@ public abstract class Telemetry {
     }
   }
 
+  /**
+   * @param victim The agent that would be caught
+   * @param catcher The agent catching it, whose face is checked against the victim
+   * @return True if the catcher has caught the victim
+   */
+  boolean caught(Entity victim, Entity catcher) {
+    return victim.getLocation().inRange(catcher.getFaceLocation());
+  }
+
   public int getGameTimer() {
     return gameTimer;
   }
 
+  /** @return True once the game timer has run out */
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * Advances the game by a single physics update. Called by the input processor loop, or directly
+   * by whatever is driving a headless game.
+   */
+  public void tick() {
+    processInputs();
+    processPhysics(agents, map, resourceLoader, pellets, activePowerUps);
+  }
+
   /**
    * Starts the AI controller
    */
@@ -169,19 +262,19 @@ public abstract class Telemetry {
       default:
         {
           for (int i = AGENT_COUNT - 1; i >= 5; i--) {
-            agents[i] = new Entity(false, i, new Point(1.5, 1.5));
+            agents[i] = new Entity(false, i, new Point(1.5, 1.5, map));
           }
         }
       case 5:
-        agents[4] = new Entity(false, 4, map.getRandomSpawnPoint(agents));
+        agents[4] = new Entity(false, 4, map.getRandomSpawnPoint(agents, random));
       case 4:
-        agents[3] = new Entity(false, 3, map.getRandomSpawnPoint(agents));
+        agents[3] = new Entity(false, 3, map.getRandomSpawnPoint(agents, random));
       case 3:
-        agents[2] = new Entity(false, 2, map.getRandomSpawnPoint(agents));
+        agents[2] = new Entity(false, 2, map.getRandomSpawnPoint(agents, random));
       case 2:
-        agents[1] = new Entity(false, 1, map.getRandomSpawnPoint(agents));
+        agents[1] = new Entity(false, 1, map.getRandomSpawnPoint(agents, random));
       case 1:
-        agents[0] = new Entity(false, 0, map.getRandomSpawnPoint(agents));
+        agents[0] = new Entity(false, 0, map.getRandomSpawnPoint(agents, random));
     }
 
     // Methods.updateImages(agents, resourceLoader);
@@ -193,41 +286,37 @@ public abstract class Telemetry {
    *
    * @param agents array of entities in current state
    * @author Alex Banks, Matthew Jones
-   * @see this#detectEntityCollision(Entity, Entity, AudioController)
+   * @see #detectEntityCollision(Entity, Entity, AudioController)
    */
   void processPhysics(
       Entity[] agents,
       Map m,
       ResourceLoader resourceLoader,
       PointMap<Pellet> pellets,
-      ConcurrentHashMap<UUID, PowerUp> activePowerUps) {
+      ActivePowerUps activePowerUps) {
 
     for (int i = 0; i < AGENT_COUNT; i++) {
-      if (agents[i].getDirection() != Direction.STOP) {
-        Point prevLocation = agents[i].getLocation();
-        agents[i].move();
-        Point faceLocation = agents[i].getFaceLocation();
-
-        if (m.isWall(faceLocation)) {
-          // System.out.println("~Player" + i + " drove into a wall");
-          agents[i].setLocation(prevLocation.centralise());
-          agents[i].setDirection(Direction.STOP);
-          agents[i].setDirectionSetFlag(false);
-        }
-      }
+      moveAgent(agents[i], m);
       if (agents[i].isDead()) {
         agents[i].countRespawn();
         int deathCounter = agents[i].getDeathCounter();
         if (deathCounter == 20) {
-          agents[i].setLocation(map.getRandomSpawnPoint(agents));
+          agents[i].setLocation(map.getRandomSpawnPoint(agents, random));
         }
       }
     }
 
     // separate loop for checking collision after iteration
+    // only agents in the same or neighbouring cells can be close enough to collide
 
+    if (collisionGrid == null) {
+      collisionGrid = new EntityGrid(m, AGENT_COUNT);
+    }
+    collisionGrid.rebuild(agents);
     for (int i = 0; i < AGENT_COUNT; i++) {
-      for (int j = (i + 1); j < AGENT_COUNT; j++) {
+      int candidates = collisionGrid.collectLaterNeighbours(i, collisionCandidates);
+      for (int c = 0; c < candidates; c++) {
+        int j = collisionCandidates[c];
 
         if (agents[i].isMipsman() && !agents[j].isMipsman() && !agents[i].isInvincible()) {
           detectEntityCollision(agents[i], agents[j], audioController);
@@ -243,29 +332,36 @@ public abstract class Telemetry {
     }
 
     pelletCollision(agents, pellets, activePowerUps, audioController);
-    ArrayList<Point> replace = new ArrayList<>();
-    for (Pellet p : pellets.values()) {
-      p.incrementRespawn();
-      if (p.replace()) {
-        replace.add(p.getLocation());
-      }
-    }
-    for (Point p : replace) {
-      pellets.put(p, new Pellet(p));
+    pelletTimers.advanceTo(physicsUpdates, firePelletTimer);
+    physicsUpdates++;
+    activePowerUps.update(audioController);
+    gameTimer--;
+    if (Math.round(gameTimer / (double) 100) == 0 && !finished) {
+      finished = true;
+      listener.finishGame();
     }
-    ArrayList<UUID> toRemove = new ArrayList<>();
-    for (PowerUp p : activePowerUps.values()) {
-      if (p.incrementTime(audioController)) {
-        toRemove.add(p.id);
+  }
+
+  /**
+   * Moves an agent a single physics update in its direction, stopping it in the centre of its cell
+   * if it drives into a wall
+   *
+   * @param agent The agent to move
+   * @param m The map it is on
+   */
+  void moveAgent(Entity agent, Map m) {
+    if (agent.getDirection() != Direction.STOP) {
+      Point prevLocation = agent.getLocation();
+      agent.move();
+      int faceCell = Cell.of(agent.getLocation(), agent.getDirection(), 0.5, m);
+
+      if (m.isWall(faceCell)) {
+        // System.out.println("~Player" + agent.getClientId() + " drove into a wall");
+        agent.setLocation(prevLocation.centralise());
+        agent.setDirection(Direction.STOP);
+        agent.setDirectionSetFlag(false);
       }
     }
-    for (UUID id : toRemove) {
-      activePowerUps.remove(id);
-    }
-    gameTimer--;
-    if (Math.round(gameTimer / (double) 100) == 0) {
-      client.finishGame();
-    }
   }
 
   /**
@@ -278,12 +374,12 @@ public abstract class Telemetry {
   }
 
   /** @return the input processor */
-  public GameLoop getInputProcessor() {
+  public TickScheduler getInputProcessor() {
     return inputProcessor;
   }
 
-  /** @return The hashmap of the active powerups */
-  public ConcurrentHashMap<UUID, PowerUp> getActivePowerUps() {
+  /** @return The active powerups */
+  public ActivePowerUps getActivePowerUps() {
     return activePowerUps;
   }
 
@@ -1,69 +1,20 @@
 package com.lordsofmidnight.utils;
 
 /**
- * A game loop to run out game on
+ * A game loop to run out game on. A {@link TickScheduler} with a single phase that calls {@link
+ * #handle()} every tick.
  *
  * @author Tim
  */
-public abstract class GameLoop extends Thread {
-
-  long gameSpeed;
-  private boolean running;
-  private boolean pause;
+public abstract class GameLoop extends TickScheduler {
 
   /**
    * @param gameSpeed the length of time each loop should last e.g. gamespeed = 10^9 would mean the
    *     loop occurs 10 times per second
    */
   public GameLoop(long gameSpeed) {
-    this.gameSpeed = gameSpeed;
-    running = true;
-  }
-
-  @Override
-  public void run() {
-    long currentTime = System.nanoTime();
-    while (running) {
-      if (pause) {
-        try {
-          Thread.sleep(1);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
-        currentTime = System.nanoTime();
-        continue;
-      }
-      this.handle();
-      while (System.nanoTime() - currentTime < gameSpeed) {
-        try {
-          Thread.sleep(1);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
-      }
-
-      // correct over-run of thread sleep
-      currentTime = System.nanoTime() - (System.nanoTime() - currentTime - gameSpeed);
-    }
-  }
-
-  /**
-   * pauses game loop - doesn't execute handle
-   */
-  public void pause() {
-    pause = true;
-  }
-
-  /**
-   * unpauses game loop
-   */
-  public void unpause() {
-    pause = false;
-  }
-
-  /** ends game loop */
-  public void close() {
-    running = false;
+    super(gameSpeed);
+    addPhase(1, tick -> handle());
   }
 
   /** method that is called each game loop. OVERRIDE THIS */
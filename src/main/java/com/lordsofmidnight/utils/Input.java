@@ -7,9 +7,13 @@ import com.lordsofmidnight.utils.enums.Direction;
  */
 public class Input {
 
+  /** The tick of an input that doesn't say what its player was seeing */
+  public static final int NO_TICK = -1;
+
   private int clientID;
   private Direction move;
   private Boolean useItem;
+  private int tick = NO_TICK;
 
   /**
    * Creates a new input
@@ -64,6 +68,19 @@ public class Input {
     return move;
   }
 
+  /**
+   * @return The tick of the game the player was seeing the other agents at when they made the
+   *     input, or {@link #NO_TICK} if it is not known
+   */
+  public int getTick() {
+    return tick;
+  }
+
+  /** @param tick The tick of the game the player was seeing the other agents at */
+  public void setTick(int tick) {
+    this.tick = tick;
+  }
+
   /**
    * Converts the Input into a string
    *
@@ -3,6 +3,7 @@ package com.lordsofmidnight.utils;
 import com.lordsofmidnight.audio.AudioController;
 import com.lordsofmidnight.audio.Sounds;
 import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.points.Cell;
 import com.lordsofmidnight.gamestate.points.Point;
 import com.lordsofmidnight.objects.Entity;
 import com.lordsofmidnight.utils.enums.Direction;
@@ -53,8 +54,28 @@ public class Methods {
    * @author Alex Banks, Matty Jones
    */
   public static boolean validateDirection(Direction d, Point p, Map m) {
-    Point movedPoint = p.getCopy().moveInDirection(1, d);
-    return !m.isWall(movedPoint) && p.isCentered();
+    return !m.isWall(Cell.of(p, d, 1, m)) && p.isCentered();
+  }
+
+  /**
+   * checks if the direction given from the centre of the cell given is valid
+   *
+   * @param d Direction to move in
+   * @param cell Packed cell to move from
+   * @param m Map the cell is located on
+   * @return true if the move is valid
+   * @see Cell
+   */
+  public static boolean validateDirection(Direction d, int cell, Map m) {
+    switch (d) {
+      case UP:
+      case DOWN:
+      case LEFT:
+      case RIGHT:
+        return (m.getExits(cell) & (1 << d.toInt())) != 0;
+      default:
+        return !m.isWall(cell);
+    }
   }
 
   /**
@@ -0,0 +1,240 @@
+package com.lordsofmidnight.utils;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed timestep loop that counts ticks and runs a list of phases on each one. A phase can run
+ * every tick or every n ticks, so one thread can drive physics, network updates and scoring in a
+ * set order.
+ *
+ * <p>Ticks are scheduled against an absolute deadline rather than the end of the previous tick,
+ * so over-running a tick does not make the loop drift. What happens when the loop falls behind is
+ * decided by the {@link CatchUpPolicy}.
+ */
+public class TickScheduler extends Thread {
+
+  private static final long PAUSE_WAIT = 1000000; // how long to wait between checks when paused
+
+  private final long tickLength;
+  private final ArrayList<Phase> phases = new ArrayList<>();
+  private volatile boolean running;
+  private volatile boolean pause;
+  private volatile long tick = 0;
+  private CatchUpPolicy catchUpPolicy = CatchUpPolicy.BOUNDED;
+  private int maxCatchUp = 5;
+  private boolean parking = true;
+
+  // jitter statistics, measured as how late each tick started compared to its deadline
+  private volatile long maxLateness = 0;
+  private volatile long totalLateness = 0;
+  private volatile long measuredTicks = 0;
+  private volatile long skippedTicks = 0;
+
+  /**
+   * @param tickLength the length of each tick in nanoseconds e.g. tickLength = 10^7 would mean
+   *     the loop ticks 100 times per second
+   */
+  public TickScheduler(long tickLength) {
+    this.tickLength = tickLength;
+    running = true;
+  }
+
+  /**
+   * Adds a phase to be run every interval ticks. Phases run in the order they were added. Must be
+   * called before the scheduler is started.
+   *
+   * @param interval how many ticks between each run of the phase, 1 to run every tick
+   * @param phase the phase to run
+   * @return this scheduler, so phases can be chained
+   */
+  public TickScheduler addPhase(int interval, TickPhase phase) {
+    if (interval < 1) {
+      throw new IllegalArgumentException("Phase interval must be at least 1 tick");
+    }
+    phases.add(new Phase(interval, phase));
+    return this;
+  }
+
+  /**
+   * Sets what happens when the loop falls behind its schedule
+   *
+   * @param policy the policy to use
+   * @param maxCatchUp the number of missed ticks to run late when using {@link
+   *     CatchUpPolicy#BOUNDED}
+   */
+  public void setCatchUpPolicy(CatchUpPolicy policy, int maxCatchUp) {
+    this.catchUpPolicy = policy;
+    this.maxCatchUp = maxCatchUp;
+  }
+
+  /**
+   * @param parking true to park the thread until the next tick is due, false to poll with
+   *     one millisecond sleeps
+   */
+  public void setParking(boolean parking) {
+    this.parking = parking;
+  }
+
+  @Override
+  public void run() {
+    long deadline = System.nanoTime();
+    while (running) {
+      if (pause) {
+        LockSupport.parkNanos(this, PAUSE_WAIT);
+        deadline = System.nanoTime();
+        continue;
+      }
+      long now = System.nanoTime();
+      if (now - deadline < 0) {
+        waitFor(deadline - now);
+        continue;
+      }
+      recordLateness(now - deadline);
+      long behind = (now - deadline) / tickLength; // whole ticks missed on top of this one
+      runTick();
+      deadline += tickLength;
+      switch (catchUpPolicy) {
+        case SKIP:
+          deadline += behind * tickLength;
+          skippedTicks += behind;
+          break;
+        case BOUNDED:
+          if (behind > maxCatchUp) {
+            deadline += (behind - maxCatchUp) * tickLength;
+            skippedTicks += behind - maxCatchUp;
+          }
+          break;
+        case ACCUMULATE:
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * Runs every phase that is due on the current tick then moves on to the next tick. Called by the
+   * scheduler's own thread once started, or by an external driver for a scheduler that is never
+   * started.
+   */
+  public void runTick() {
+    for (Phase phase : phases) {
+      if (tick % phase.interval == 0) {
+        phase.phase.onTick(tick);
+      }
+    }
+    tick++;
+  }
+
+  /**
+   * Waits until the next tick is due
+   *
+   * @param nanos how long until the next tick
+   */
+  private void waitFor(long nanos) {
+    if (parking) {
+      LockSupport.parkNanos(this, nanos);
+      return;
+    }
+    try {
+      Thread.sleep(1);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Adds how late a tick started to the jitter statistics
+   *
+   * @param lateness how late the tick started in nanoseconds
+   */
+  private void recordLateness(long lateness) {
+    if (lateness > maxLateness) {
+      maxLateness = lateness;
+    }
+    totalLateness += lateness;
+    measuredTicks++;
+  }
+
+  /** @return the number of ticks that have been run */
+  public long getTick() {
+    return tick;
+  }
+
+  /** @return the latest any tick has started, in nanoseconds */
+  public long getMaxLateness() {
+    return maxLateness;
+  }
+
+  /** @return the average amount ticks have started late by, in nanoseconds */
+  public long getMeanLateness() {
+    return measuredTicks == 0 ? 0 : totalLateness / measuredTicks;
+  }
+
+  /** @return the number of ticks dropped by the catch up policy */
+  public long getSkippedTicks() {
+    return skippedTicks;
+  }
+
+  /** Resets the jitter statistics */
+  public void resetStatistics() {
+    maxLateness = 0;
+    totalLateness = 0;
+    measuredTicks = 0;
+    skippedTicks = 0;
+  }
+
+  /**
+   * pauses the scheduler - no phases are run
+   */
+  public void pause() {
+    pause = true;
+  }
+
+  /**
+   * unpauses the scheduler
+   */
+  public void unpause() {
+    pause = false;
+    LockSupport.unpark(this);
+  }
+
+  /** ends the scheduler */
+  public void close() {
+    running = false;
+    LockSupport.unpark(this);
+  }
+
+  /** What the scheduler does when it has fallen behind */
+  public enum CatchUpPolicy {
+    /** Drops all missed ticks and carries on from the current time */
+    SKIP,
+    /** Runs every missed tick back to back until it has caught up */
+    ACCUMULATE,
+    /** Runs up to a set number of missed ticks back to back and drops the rest */
+    BOUNDED
+  }
+
+  /** A callback run by the scheduler */
+  public interface TickPhase {
+
+    /**
+     * Called when the phase is due
+     *
+     * @param tick the number of the tick being run
+     */
+    void onTick(long tick);
+  }
+
+  /** A phase along with how often it runs */
+  private static class Phase {
+
+    private final int interval;
+    private final TickPhase phase;
+
+    private Phase(int interval, TickPhase phase) {
+      this.interval = interval;
+      this.phase = phase;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.lordsofmidnight.utils;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timer wheel keyed by tick. Timers are put in the slot for their due tick modulo the
+ * number of slots, so advancing a tick only looks at the timers in one slot rather than every
+ * timer. Timers further away than the number of slots share a slot with earlier ones and are
+ * skipped until the wheel comes round to their tick. Fired timers are kept for reuse, so once the
+ * wheel has held as many timers as it will at once, scheduling allocates nothing.
+ *
+ * @param <T> The type of item the timers are for
+ */
+public class TimerWheel<T> {
+
+  private final ArrayList<Timer<T>>[] slots;
+  private final ArrayList<Timer<T>> free = new ArrayList<>(); // fired timers, to reuse
+  private final int mask;
+  private long tick = 0; // the next tick to be processed
+  private int size = 0;
+
+  /** @param slotCount The number of slots, rounded up to a power of two */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public TimerWheel(int slotCount) {
+    int count = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+    this.slots = new ArrayList[count];
+    this.mask = count - 1;
+    for (int i = 0; i < count; i++) {
+      slots[i] = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Schedules an item to be fired on the given tick. Ticks that have already been processed fire
+   * on the next tick processed.
+   *
+   * @param item The item to fire
+   * @param due The tick to fire it on
+   */
+  public void schedule(T item, long due) {
+    if (due < tick) {
+      due = tick;
+    }
+    Timer<T> timer = free.isEmpty() ? new Timer<>() : free.remove(free.size() - 1);
+    timer.item = item;
+    timer.due = due;
+    slots[(int) (due & mask)].add(timer);
+    size++;
+  }
+
+  /**
+   * Processes every tick up to and including the given one, firing the timers due on each
+   *
+   * @param now The tick to advance to
+   * @param action Called with each item whose timer is due
+   */
+  public void advanceTo(long now, Consumer<T> action) {
+    while (tick <= now) {
+      ArrayList<Timer<T>> slot = slots[(int) (tick & mask)];
+      int i = 0;
+      while (i < slot.size()) {
+        Timer<T> timer = slot.get(i);
+        if (timer.due != tick) {
+          i++;
+          continue;
+        }
+        // swap the last timer into this one's place so removal doesn't shift the list
+        int last = slot.size() - 1;
+        slot.set(i, slot.get(last));
+        slot.remove(last);
+        size--;
+        T item = timer.item;
+        timer.item = null; // don't keep the item reachable while the timer is free
+        free.add(timer);
+        action.accept(item);
+      }
+      tick++;
+    }
+  }
+
+  /** @return The next tick to be processed */
+  public long getTick() {
+    return tick;
+  }
+
+  /** @return The number of timers waiting to fire */
+  public int size() {
+    return size;
+  }
+
+  /** An item along with the tick it is due on */
+  private static class Timer<T> {
+
+    private T item;
+    private long due;
+  }
+}
@@ -0,0 +1,76 @@
+package com.lordsofmidnight.gamestate.maps;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.Entity;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class EntityGridTest {
+
+  private static final Map map = new Map(new int[10][10]);
+
+  private static Entity entityAt(int id, double x, double y) {
+    return new Entity(false, id, new Point(x, y, map));
+  }
+
+  @Test
+  void findsOnlyNearbyLaterEntities() {
+    Entity[] agents = {
+      entityAt(0, 1.5, 1.5), entityAt(1, 2.5, 1.5), entityAt(2, 5.5, 5.5), entityAt(3, 1.2, 0.7)
+    };
+    EntityGrid grid = new EntityGrid(map, agents.length);
+    grid.rebuild(agents);
+    int[] buffer = new int[agents.length];
+
+    int count = grid.collectLaterNeighbours(0, buffer);
+    assertEquals(2, count);
+    assertArrayEquals(new int[] {1, 3}, new int[] {buffer[0], buffer[1]});
+    assertEquals(0, grid.collectLaterNeighbours(2, buffer));
+  }
+
+  @Test
+  void wrapsAroundEdges() {
+    Entity[] agents = {entityAt(0, 0.2, 5.5), entityAt(1, 9.8, 5.5)};
+    EntityGrid grid = new EntityGrid(map, agents.length);
+    grid.rebuild(agents);
+
+    assertEquals(1, grid.collectLaterNeighbours(0, new int[agents.length]));
+  }
+
+  @Test
+  void coversEveryPairInRange() {
+    Random random = new Random(0);
+    Entity[] agents = new Entity[5];
+    EntityGrid grid = new EntityGrid(map, agents.length);
+    int[] buffer = new int[agents.length];
+    for (int round = 0; round < 1000; round++) {
+      for (int i = 0; i < agents.length; i++) {
+        agents[i] = entityAt(i, random.nextDouble() * 3, random.nextDouble() * 3);
+      }
+      grid.rebuild(agents);
+      for (int i = 0; i < agents.length; i++) {
+        int count = grid.collectLaterNeighbours(i, buffer);
+        for (int j = i + 1; j < agents.length; j++) {
+          boolean close =
+              agents[i].getLocation().inRange(agents[j].getLocation())
+                  || agents[j].getLocation().inRange(agents[i].getLocation());
+          if (close) {
+            assert (contains(buffer, count, j));
+          }
+        }
+      }
+    }
+  }
+
+  private static boolean contains(int[] buffer, int count, int value) {
+    for (int i = 0; i < count; i++) {
+      if (buffer[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,56 @@
+package com.lordsofmidnight.gamestate.maps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MapCodecTest {
+
+  @Test
+  void decodesWhatWasEncoded() {
+    Map small = new Map(new int[][] {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}, {0, 0, 1}});
+    assertEquals(small, MapCodec.decode(MapCodec.encode(small)));
+
+    Map generated = new Map(MapGenerator.generateNewMap(20, 20, new Random(1)));
+    byte[] data = MapCodec.encode(generated);
+    assertEquals(generated, MapCodec.decode(data));
+    assertTrue(data.length < 20 * 20 / 4 + 10); // about two bits a cell, or better
+  }
+
+  @Test
+  void encodesLongWallRuns() {
+    int[][] cells = new int[30][20];
+    for (int[] column : cells) {
+      Arrays.fill(column, 1);
+    }
+    cells[29][19] = 0;
+    Map walls = new Map(cells);
+    byte[] data = MapCodec.encode(walls);
+    assertEquals(walls, MapCodec.decode(data));
+    assertTrue(data.length < 20);
+  }
+
+  @Test
+  void rejectsCorruptedData() {
+    Map map = new Map(MapGenerator.generateNewMap(20, 20, new Random(1)));
+    byte[] data = MapCodec.encode(map);
+    data[data.length / 2] ^= 0x10;
+    assertThrows(IllegalArgumentException.class, () -> MapCodec.decode(data));
+    assertThrows(IllegalArgumentException.class, () -> MapCodec.decode(new byte[3]));
+  }
+
+  @Test
+  void cachesByHash() {
+    Map map = new Map(MapGenerator.generateNewMap(20, 20, new Random(2)));
+    String hash = MapCodec.hash(MapCodec.encode(map));
+    assertNull(MapCodec.getCached(hash));
+    MapCodec.cache(hash, map);
+    assertSame(map, MapCodec.getCached(hash));
+  }
+}
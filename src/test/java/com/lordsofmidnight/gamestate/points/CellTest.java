@@ -0,0 +1,54 @@
+package com.lordsofmidnight.gamestate.points;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import com.lordsofmidnight.utils.Methods;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class CellTest {
+
+  private static final Map map = new Map(new int[4][3]);
+
+  @Test
+  void packsAndUnpacks() {
+    int cell = Cell.of(3, 2, map);
+    assertEquals(2 * 4 + 3, cell);
+    assertEquals(3, Cell.getX(cell, map));
+    assertEquals(2, Cell.getY(cell, map));
+    assertEquals(cell, Cell.of(new Point(3.7, 2.2, map), map));
+  }
+
+  @Test
+  void wrapsAroundEdges() {
+    assertEquals(Cell.of(3, 0, map), Cell.of(-1, 3, map));
+    assertEquals(Cell.of(0, 2, map), Cell.move(Cell.of(3, 2, map), Direction.RIGHT, map));
+    assertEquals(Cell.of(1, 2, map), Cell.move(Cell.of(1, 0, map), Direction.UP, map));
+    assertEquals(Cell.of(3, 1, map), Cell.of(new Point(0.2, 1.5, map), Direction.LEFT, 0.5, map));
+  }
+
+  @Test
+  void matchesPointBasedChecks() {
+    Map generated = new Map(MapGenerator.generateNewMap(20, 20));
+    for (int x = 0; x < generated.getMaxX(); x++) {
+      for (int y = 0; y < generated.getMaxY(); y++) {
+        Point p = new Point(x + 0.5, y + 0.5, generated);
+        int cell = Cell.of(p, generated);
+        assertEquals(generated.isWall(p), generated.isWall(cell));
+        assertEquals(generated.raw()[x][y] == 1, generated.isWall(cell));
+        for (Direction d : Direction.MOVEMENT_DIRECTIONS) {
+          assertEquals(
+              Methods.validateDirection(d, p, generated),
+              Methods.validateDirection(d, cell, generated));
+          assertEquals(
+              Methods.validateDirection(d, p, generated),
+              Arrays.asList(generated.getValidDirections(cell)).contains(d));
+        }
+        assertEquals(generated.isWall(cell), generated.isWall(x - generated.getMaxX(), y));
+      }
+    }
+  }
+}
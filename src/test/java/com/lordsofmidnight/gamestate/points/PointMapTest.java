@@ -1,17 +1,28 @@
 package com.lordsofmidnight.gamestate.points;
 
+import com.lordsofmidnight.gamestate.maps.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class PointMapTest {
 
+  private final Map map = new Map(new int[5][4]);
+
   @Test
   void getShallowClone() {
   }
 
   @Test
   void clear() {
+    PointMap<String> pointMap = new PointMap<>(map);
+    pointMap.put(new Point(1, 1, map), "a");
+    pointMap.clear();
+    assertTrue(pointMap.isEmpty());
+    assertNull(pointMap.get(new Point(1, 1, map)));
+    assertNull(pointMap.put(new Point(1, 1, map), "b"));
+    assertEquals("b", pointMap.get(Cell.of(1, 1, map)));
   }
 
   @Test
@@ -36,14 +47,36 @@ class PointMapTest {
 
   @Test
   void keySet() {
+    PointMap<String> pointMap = new PointMap<>(map);
+    Point a = new Point(0, 3, map);
+    Point b = new Point(3, 1, map);
+    pointMap.put(a, "a");
+    pointMap.put(b, "b");
+    Set<Point> keys = pointMap.keySet();
+    assertEquals(2, keys.size());
+    assertTrue(keys.contains(a) && keys.contains(b));
+    keys.remove(a);
+    assertFalse(pointMap.containsKey(a));
+    assertEquals(-1, pointMap.nextCell(Cell.of(3, 1, map) + 1));
+    assertSame(b, pointMap.getPoint(pointMap.nextCell(0)));
   }
 
   @Test
   void put() {
+    PointMap<String> pointMap = new PointMap<>(map);
+    assertNull(pointMap.put(new Point(2.5, 1.5, map), "a"));
+    assertEquals("a", pointMap.put(new Point(2.2, 1.2, map), "b"));
+    assertEquals(1, pointMap.size());
+    assertEquals("b", pointMap.get(new Point(2, 1, map)));
   }
 
   @Test
   void remove() {
+    PointMap<String> pointMap = new PointMap<>(map);
+    pointMap.put(new Point(4, 3, map), "a");
+    assertEquals("a", pointMap.remove(new Point(4.5, 3.5, map)));
+    assertNull(pointMap.remove(new Point(4.5, 3.5, map)));
+    assertFalse(pointMap.containsKey(Cell.of(4, 3, map)));
   }
 
   @Test
@@ -52,6 +85,11 @@ class PointMapTest {
 
   @Test
   void values() {
+    PointMap<String> pointMap = new PointMap<>(map);
+    pointMap.put(new Point(3, 3, map), "b");
+    pointMap.put(new Point(1, 0, map), "a");
+    assertEquals("[a, b]", pointMap.values().toString());
+    assertTrue(pointMap.containsValue("b"));
   }
 
   @Test
@@ -1,17 +1,27 @@
 package com.lordsofmidnight.gamestate.points;
 
+import com.lordsofmidnight.gamestate.maps.Map;
+import java.util.Iterator;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class PointSetTest {
 
+  private final Map map = new Map(new int[5][4]);
+
   @Test
   void getShallowClone() {
   }
 
   @Test
   void contains() {
+    PointSet set = new PointSet(map);
+    set.add(new Point(2.5, 3.5, map));
+    assertTrue(set.contains(new Point(2.1, 3.9, map)));
+    assertTrue(set.contains(Cell.of(2, 3, map)));
+    assertFalse(set.contains(new Point(3.5, 2.5, map)));
+    assertFalse(set.contains(-1));
   }
 
   @Test
@@ -20,6 +30,11 @@ class PointSetTest {
 
   @Test
   void remove() {
+    PointSet set = new PointSet(map);
+    set.add(new Point(1, 1, map));
+    assertTrue(set.remove(new Point(1.5, 1.5, map)));
+    assertFalse(set.remove(new Point(1.5, 1.5, map)));
+    assertTrue(set.isEmpty());
   }
 
   @Test
@@ -52,6 +67,16 @@ class PointSetTest {
 
   @Test
   void clear() {
+    PointSet set = new PointSet(map);
+    set.add(new Point(0, 0, map));
+    set.add(new Point(4, 3, map));
+    set.clear();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(new Point(4, 3, map)));
+    assertEquals(-1, set.nextCell(0));
+    set.add(new Point(4, 3, map));
+    assertEquals(1, set.size());
+    assertEquals(Cell.of(4, 3, map), set.nextCell(0));
   }
 
   @Test
@@ -64,5 +89,17 @@ class PointSetTest {
 
   @Test
   void iterator() {
+    PointSet set = new PointSet(map);
+    Point a = new Point(3, 0, map);
+    Point b = new Point(1, 2, map);
+    set.add(b);
+    set.add(a);
+    Iterator<Point> iterator = set.iterator();
+    assertSame(a, iterator.next());
+    iterator.remove();
+    assertSame(b, iterator.next());
+    assertFalse(iterator.hasNext());
+    assertEquals(1, set.size());
+    assertFalse(set.contains(a));
   }
 }
\ No newline at end of file
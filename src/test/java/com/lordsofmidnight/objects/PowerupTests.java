@@ -1,22 +1,22 @@
 package com.lordsofmidnight.objects;
 
 import com.lordsofmidnight.audio.AudioController;
+import com.lordsofmidnight.audio.MutedAudioController;
 import com.lordsofmidnight.gamestate.maps.Map;
 import com.lordsofmidnight.gamestate.points.Point;
 import com.lordsofmidnight.gamestate.points.PointMap;
+import com.lordsofmidnight.objects.powerUps.ActivePowerUps;
 import com.lordsofmidnight.objects.powerUps.Invincible;
 import com.lordsofmidnight.objects.powerUps.PowerUp;
 import com.lordsofmidnight.objects.powerUps.Rocket;
 import com.lordsofmidnight.objects.powerUps.Speed;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import org.junit.jupiter.api.Test;
 
 public class PowerupTests {
 
   @Test
   void effectPowerups() {
-    ConcurrentHashMap<UUID, PowerUp> activePowerups = new ConcurrentHashMap<>();
+    ActivePowerUps activePowerups = new ActivePowerUps();
     int[][] map = new int[][]{{1, 1}, {0, 0}};
     PointMap<Pellet> pellets = new PointMap<Pellet>(new Map(map));
     Entity entity = new Entity(false, 0, new Point(0, 0));
@@ -33,7 +33,7 @@ public class PowerupTests {
   @Test
   void rocketTest() {
     AudioController controller = new AudioController(1);
-    ConcurrentHashMap<UUID, PowerUp> activePowerups = new ConcurrentHashMap<>();
+    ActivePowerUps activePowerups = new ActivePowerUps();
     int[][] map = new int[][]{{0, 0, 0, 0, 0}, {0, 0, 0, 0, 0}, {0, 0, 0, 0, 0}, {0, 0, 0, 0, 0},
         {0, 0, 0, 0, 0}};
     PointMap<Pellet> pellets = new PointMap<Pellet>(new Map(map));
@@ -46,4 +46,23 @@ public class PowerupTests {
     rocket.use(entity2, activePowerups, pellets, agents, controller);
     assert (rocket.getTargeted() == entity1);
   }
+
+  @Test
+  void effectsExpireAfterEffectTime() {
+    AudioController controller = new MutedAudioController();
+    ActivePowerUps activePowerups = new ActivePowerUps();
+    int[][] map = new int[][]{{1, 1}, {0, 0}};
+    PointMap<Pellet> pellets = new PointMap<Pellet>(new Map(map));
+    Entity entity = new Entity(false, 0, new Point(0, 0));
+    Entity[] agents = new Entity[]{entity};
+    new Invincible().use(entity, activePowerups, pellets, agents, controller);
+    for (int i = 0; i < 199; i++) {
+      activePowerups.update(controller);
+    }
+    assert (entity.isInvincible());
+    assert (activePowerups.size() == 1);
+    activePowerups.update(controller);
+    assert (!entity.isInvincible());
+    assert (activePowerups.size() == 0);
+  }
 }
@@ -0,0 +1,44 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+class DedicatedServerTest {
+
+  @Test
+  void matchesShareWorkers() throws IOException, InterruptedException {
+    DedicatedServer server = new DedicatedServer(2, -1);
+    Map map = new Map(MapGenerator.generateNewMap(20, 20));
+    for (int i = 0; i < 4; i++) {
+      server.createMatch(map, new ArrayList<>());
+    }
+    assertEquals(4, server.getMatches().size());
+    server.start();
+    Thread.sleep(300);
+    for (HostedMatch match : server.getMatches()) {
+      assertTrue(match.getTicks() > 0);
+      assertTrue(match.getCpuTime() > 0);
+    }
+    server.shutDown();
+    assertTrue(server.getMatches().isEmpty());
+  }
+
+  @Test
+  void finishedMatchesAreRemoved() throws IOException, InterruptedException {
+    DedicatedServer server = new DedicatedServer(1, -1);
+    HostedMatch match =
+        server.createMatch(new Map(MapGenerator.generateNewMap(20, 20)), new ArrayList<>());
+    match.getTelemetry().setTime(60);
+    server.start();
+    Thread.sleep(500);
+    assertTrue(match.isFinished());
+    assertTrue(server.getMatches().isEmpty());
+    server.shutDown();
+  }
+}
@@ -0,0 +1,85 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.gamestate.points.Point;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.Queue;
+import org.junit.jupiter.api.Test;
+
+class FrameBatcherTest {
+
+  private static final int BOX_SIZE = 1 + 2 * 2;
+
+  @Test
+  void batchesMessagesUntilFlushed() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    FrameBatcher batcher = new FrameBatcher(PacketCodec.MAX_FRAME_SIZE, outputs);
+    for (int i = 0; i < 10; i++) {
+      Point p = new Point(i + 0.5, 0.5);
+      batcher.add(buf -> PacketCodec.writePowerUpBox(buf, p));
+    }
+    assertTrue(outputs.isEmpty());
+    batcher.flush();
+    batcher.flush(); // nothing new to send
+    assertEquals(1, outputs.size());
+
+    ByteBuffer frame = outputs.poll();
+    assertEquals(10 * BOX_SIZE, frame.remaining());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(PacketCodec.POWERUP_BOX, frame.get());
+      assertEquals(i + 0.5, PacketCodec.readCoordinate(frame));
+      assertEquals(0.5, PacketCodec.readCoordinate(frame));
+    }
+  }
+
+  @Test
+  void stampsEachFrameWithTheTickItWasSentOn() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    int[] tick = {7};
+    FrameBatcher batcher =
+        new FrameBatcher(PacketCodec.TICK_SIZE + 2 * BOX_SIZE, outputs, () -> tick[0]);
+    for (int i = 0; i < 3; i++) {
+      batcher.add(buf -> PacketCodec.writePowerUpBox(buf, new Point(1, 1)));
+    }
+    tick[0] = 8;
+    batcher.flush();
+    assertEquals(2, outputs.size());
+    for (int expected = 7; expected <= 8; expected++) {
+      ByteBuffer frame = outputs.poll();
+      assertEquals(PacketCodec.TICK, frame.get());
+      assertEquals(expected, frame.getInt());
+      assertEquals(PacketCodec.POWERUP_BOX, frame.get());
+    }
+  }
+
+  @Test
+  void splitsBetweenMessages() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    FrameBatcher batcher = new FrameBatcher(3 * BOX_SIZE + 1, outputs);
+    for (int i = 0; i < 7; i++) {
+      batcher.add(buf -> PacketCodec.writePowerUpBox(buf, new Point(1, 1)));
+    }
+    batcher.flush();
+    assertEquals(3, outputs.size());
+    assertEquals(3 * BOX_SIZE, outputs.poll().remaining());
+    assertEquals(3 * BOX_SIZE, outputs.poll().remaining());
+    assertEquals(BOX_SIZE, outputs.poll().remaining());
+  }
+
+  @Test
+  void sendsOversizedMessagesAlone() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    FrameBatcher batcher = new FrameBatcher(2, outputs);
+    batcher.add(PacketCodec::writeStop);
+    batcher.add(buf -> PacketCodec.writePowerUpBox(buf, new Point(1, 1)));
+    batcher.add(PacketCodec::writeStop);
+    batcher.flush();
+    assertEquals(3, outputs.size());
+    assertEquals(1, outputs.poll().remaining());
+    assertEquals(BOX_SIZE, outputs.poll().remaining());
+    assertEquals(1, outputs.poll().remaining());
+  }
+}
@@ -0,0 +1,36 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import org.junit.jupiter.api.Test;
+
+class HostClockTest {
+
+  private static final long TICK = DedicatedServer.TICK_LENGTH;
+
+  @Test
+  void followsTheLeastDelayedFrame() {
+    HostClock clock = new HostClock(null);
+    long start = System.nanoTime();
+    assertFalse(clock.isSynchronised());
+    clock.observe(100, start + 5 * TICK); // held up for 5 ticks
+    clock.observe(110, start + 10 * TICK); // the quickest to arrive
+    clock.observe(120, start + 23 * TICK); // held up for 3 ticks
+    assertTrue(clock.isSynchronised());
+    assertEquals(120, clock.getNewestTick());
+    assertEquals(130, clock.getTick(start + 30 * TICK), 0.01);
+  }
+
+  @Test
+  void addsHalfTheRoundTrip() {
+    PeerStats host = new PeerStats(InetAddress.getLoopbackAddress());
+    long start = System.nanoTime();
+    host.pong(NetworkStats.micros(start), start + 40_000_000); // 40ms round trip
+    HostClock clock = new HostClock(host);
+    clock.observe(50, start);
+    assertEquals(50 + 20_000_000 / TICK, clock.getTick(start), 1);
+  }
+}
@@ -0,0 +1,133 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.server.DatagramTransport.Datagram;
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class LoopbackNetworkTest {
+
+  @Test
+  void carriesDatagramsBetweenBoundAddresses() throws IOException {
+    LoopbackNetwork network = new LoopbackNetwork();
+    DatagramTransport sender = network.at(address(2)).open();
+    DatagramTransport receiver = network.at(address(1)).bind(3001);
+    assertThrows(BindException.class, () -> network.at(address(1)).bind(3001));
+
+    sender.send(ByteBuffer.wrap(new byte[] {1, 2, 3}), new InetSocketAddress(address(1), 3001));
+    sender.send(ByteBuffer.wrap(new byte[] {4}), new InetSocketAddress(address(1), 3002));
+    sender.send(ByteBuffer.wrap(new byte[] {5}), new InetSocketAddress(address(1), 3001));
+
+    Datagram datagram = new Datagram(BufferPool.DATAGRAMS.acquire());
+    receiver.receive(datagram);
+    assertEquals(3, datagram.getBuffer().remaining());
+    assertEquals(1, datagram.getBuffer().get());
+    assertEquals(address(2), datagram.getSource().getAddress());
+    ByteBuffer buf = ByteBuffer.allocate(16);
+    receiver.receive(buf);
+    assertEquals(1, buf.position()); // the one sent to 3002 was dropped
+    assertEquals(5, buf.get(0));
+
+    sender.close();
+    receiver.close();
+    assertEquals(0, network.getOpenCount());
+  }
+
+  @Test
+  void wakesAReceiverWhenClosed() throws IOException, InterruptedException {
+    DatagramTransport transport = new LoopbackNetwork().at(address(1)).bind(3001);
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    Thread waiting =
+        new Thread(
+            () -> {
+              try {
+                transport.receive(ByteBuffer.allocate(16));
+              } catch (IOException e) {
+                thrown.set(e);
+              }
+            });
+    waiting.start();
+    Thread.sleep(50);
+    transport.close();
+    waiting.join(2000);
+    assertTrue(thrown.get() instanceof ClosedChannelException);
+  }
+
+  @Test
+  void playsAHostAndTwoClientsInOneProcess() throws IOException, InterruptedException {
+    LoopbackNetwork network = new LoopbackNetwork();
+    ArrayList<InetAddress> clients = new ArrayList<>();
+    clients.add(address(2));
+    clients.add(address(3));
+    BlockingQueue<Input> hostInputs = new LinkedBlockingQueue<>();
+    BlockingQueue<ByteBuffer> hostOutputs = new ArrayBlockingQueue<>(16);
+    ServerGameplayHandler host =
+        new ServerGameplayHandler(clients, 2, hostInputs, hostOutputs, network.at(address(1)));
+    BlockingQueue<Input> firstKeys = new LinkedBlockingQueue<>();
+    BlockingQueue<ByteBuffer> firstIn = new LinkedBlockingQueue<>();
+    ClientGameplayHandler first =
+        new ClientGameplayHandler(
+            address(1),
+            NetworkUtility.SERVER_DGRAM_PORT,
+            firstKeys,
+            firstIn,
+            network.at(address(2)));
+    BlockingQueue<Input> secondKeys = new LinkedBlockingQueue<>();
+    BlockingQueue<ByteBuffer> secondIn = new LinkedBlockingQueue<>();
+    ClientGameplayHandler second =
+        new ClientGameplayHandler(
+            address(1),
+            NetworkUtility.SERVER_DGRAM_PORT,
+            secondKeys,
+            secondIn,
+            network.at(address(3)));
+    try {
+      firstKeys.add(new Input(1, Direction.UP));
+      secondKeys.add(new Input(2, Direction.LEFT));
+      HashSet<Integer> ids = new HashSet<>();
+      for (int i = 0; i < 2; i++) {
+        Input input = hostInputs.poll(2, TimeUnit.SECONDS);
+        assertNotNull(input);
+        ids.add(input.getClientID());
+      }
+      assertEquals(2, ids.size());
+
+      ByteBuffer frame = ByteBuffer.allocate(64);
+      PacketCodec.writeEvent(frame, 0, 0, new byte[] {7, 8}, 2);
+      frame.flip();
+      hostOutputs.add(frame);
+      for (BlockingQueue<ByteBuffer> in : Arrays.asList(firstIn, secondIn)) {
+        ByteBuffer received = in.poll(2, TimeUnit.SECONDS);
+        assertNotNull(received);
+        assertEquals(PacketCodec.EVENT, received.get(0));
+      }
+    } finally {
+      first.close();
+      second.close();
+      host.close();
+    }
+  }
+
+  private static InetAddress address(int host) throws IOException {
+    return InetAddress.getByAddress(new byte[] {127, 0, 0, (byte) host});
+  }
+}
@@ -0,0 +1,67 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.powerUps.PowerUp;
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.Queue;
+import org.junit.jupiter.api.Test;
+
+class PacketCodecTest {
+
+  @Test
+  void coordinatesRoundTrip() {
+    ByteBuffer buf = ByteBuffer.allocate(8);
+    PacketCodec.writeCoordinate(buf, 0);
+    PacketCodec.writeCoordinate(buf, 12.5);
+    PacketCodec.writeCoordinate(buf, 127.998);
+    PacketCodec.writeCoordinate(buf, -1);
+    buf.flip();
+    assertEquals(0, PacketCodec.readCoordinate(buf));
+    assertEquals(12.5, PacketCodec.readCoordinate(buf));
+    assertEquals(127.998, PacketCodec.readCoordinate(buf), 1.0 / PacketCodec.COORDINATE_SCALE);
+    assertEquals(0, PacketCodec.readCoordinate(buf)); // clamped
+  }
+
+  @Test
+  void readsInputsAndSkipsOtherMessages() {
+    ByteBuffer buf = ByteBuffer.allocate(PacketCodec.MAX_MESSAGE_SIZE);
+    Input left = new Input(3, Direction.LEFT);
+    left.setTick(1234);
+    PacketCodec.writeInput(buf, left);
+    PacketCodec.writePowerUpUsed(buf, 2, PowerUp.fromInt(0), new Point(4.5, 6.5));
+    PacketCodec.writePowerUpBox(buf, new Point(1.5, 2.5));
+    PacketCodec.writeInput(buf, new Input(4, Direction.USE));
+    buf.flip();
+
+    Queue<Input> inputs = new LinkedList<>();
+    PacketCodec.readInputs(buf, inputs);
+    assertFalse(buf.hasRemaining());
+    assertEquals(2, inputs.size());
+    Input first = inputs.poll();
+    assertEquals(3, first.getClientID());
+    assertEquals(Direction.LEFT, first.getMove());
+    assertEquals(1234, first.getTick());
+    Input second = inputs.poll();
+    assertEquals(4, second.getClientID());
+    assertEquals(Direction.USE, second.getMove());
+    assertEquals(Input.NO_TICK, second.getTick());
+  }
+
+  @Test
+  void containsLeavesFrameUnread() {
+    ByteBuffer buf = ByteBuffer.allocate(PacketCodec.MAX_MESSAGE_SIZE);
+    PacketCodec.writePowerUpBox(buf, new Point(1.5, 2.5));
+    PacketCodec.writeStop(buf);
+    buf.flip();
+    assertTrue(PacketCodec.contains(buf, PacketCodec.STOP));
+    assertFalse(PacketCodec.contains(buf, PacketCodec.SNAPSHOT));
+    assertEquals(0, buf.position());
+  }
+}
@@ -0,0 +1,89 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PacketReceiverTest {
+
+  @Test
+  void handsFramesOfTheCurrentVersionToTheHandler() throws IOException, InterruptedException {
+    int port = freePort();
+    BlockingQueue<Input> inputs = new LinkedBlockingQueue<>();
+    PacketReceiver receiver =
+        new PacketReceiver(port, frame -> PacketCodec.readInputs(frame, inputs));
+    receiver.start();
+    try (DatagramSocket socket = new DatagramSocket()) {
+      InetAddress loopback = InetAddress.getLoopbackAddress();
+      byte[] old = {(byte) (PacketCodec.VERSION - 1), 0, 0, PacketCodec.INPUT, 2, 1, -1, -1};
+      socket.send(new DatagramPacket(old, old.length, loopback, port));
+      byte[] current = {
+        PacketCodec.VERSION, 0, 0, PacketCodec.INPUT, 3, (byte) Direction.UP.toInt(), -1, -1
+      };
+      socket.send(new DatagramPacket(current, current.length, loopback, port));
+
+      Input input = inputs.poll(2, TimeUnit.SECONDS);
+      assertNotNull(input);
+      assertEquals(3, input.getClientID());
+      assertEquals(Direction.UP, input.getMove());
+      assertNull(inputs.poll(100, TimeUnit.MILLISECONDS));
+    } finally {
+      receiver.shutdown();
+      receiver.join(1000);
+    }
+  }
+
+  @Test
+  void timesThePingsItsPeerAnswers() throws IOException, InterruptedException {
+    int hostPort = freePort();
+    int clientPort = freePort();
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    ArrayList<InetAddress> ips = new ArrayList<>();
+    ips.add(loopback);
+    PacketSender hostSender =
+        new PacketSender(clientPort, new ArrayBlockingQueue<ByteBuffer>(1), ips);
+    PacketSender clientSender =
+        new PacketSender(hostPort, new ArrayBlockingQueue<ByteBuffer>(1), ips);
+    PacketReceiver host = new PacketReceiver(hostPort, frame -> {}, hostSender);
+    PacketReceiver client = new PacketReceiver(clientPort, frame -> {}, clientSender);
+    host.start();
+    client.start();
+    try {
+      PeerStats peer = hostSender.getStats().getPeer(loopback);
+      for (int i = 0; i < 100 && peer.getRtt() < 0; i++) {
+        hostSender.ping(System.nanoTime());
+        Thread.sleep(20);
+      }
+      assertTrue(peer.getRtt() >= 0);
+      assertTrue(peer.getPacketsOut() > 0);
+      assertEquals(0, peer.getPacketsLost());
+      assertTrue(clientSender.getStats().getPeer(loopback).getPacketsIn() > 0);
+    } finally {
+      host.shutdown();
+      client.shutdown();
+      hostSender.shutdown();
+      clientSender.shutdown();
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (DatagramSocket probe = new DatagramSocket(0)) {
+      return probe.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.junit.jupiter.api.Test;
+
+class PacketSenderTest {
+
+  @Test
+  void sendsQueuedFramesBeforeShuttingDown() throws IOException, InterruptedException {
+    try (DatagramSocket client = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+      client.setSoTimeout(2000);
+      ArrayList<InetAddress> ips = new ArrayList<>();
+      ips.add(InetAddress.getLoopbackAddress());
+      BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(NetworkUtility.QUEUE_CAPACITY);
+      PacketSender sender = new PacketSender(client.getLocalPort(), queue, ips);
+      sender.start();
+      for (int i = 0; i < 3; i++) {
+        ByteBuffer frame = ByteBuffer.allocate(1);
+        frame.put((byte) i).flip();
+        queue.add(frame);
+      }
+      sender.shutdown();
+      assertFalse(sender.isAlive());
+
+      byte[] buf = new byte[PacketCodec.MAX_DATAGRAM_SIZE];
+      int sequence = 0;
+      for (int i = 0; i < 3; i++) {
+        DatagramPacket packet = new DatagramPacket(buf, buf.length);
+        client.receive(packet);
+        assertEquals(PacketCodec.VERSION, buf[0]);
+        assertEquals(sequence++, (buf[1] & 0xFF) << 8 | buf[2] & 0xFF);
+        if (buf[3] == PacketCodec.PING) {
+          i--;
+          continue;
+        }
+        assertEquals(PacketCodec.HEADER_SIZE + 1, packet.getLength());
+        assertEquals(i, buf[3]);
+      }
+    }
+  }
+}
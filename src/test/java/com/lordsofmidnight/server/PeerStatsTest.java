@@ -0,0 +1,40 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.InetAddress;
+import org.junit.jupiter.api.Test;
+
+class PeerStatsTest {
+
+  private static final double DELTA = 1e-9;
+
+  @Test
+  void countsGapsInTheSequenceAsLost() {
+    PeerStats peer = new PeerStats(InetAddress.getLoopbackAddress());
+    peer.received(0xFFFE, 10, 0);
+    peer.received(0xFFFF, 10, 0);
+    peer.received(2, 10, 0); // wrapped around, missing 0 and 1
+    assertEquals(2, peer.getPacketsLost());
+    peer.received(1, 10, 0); // only late
+    assertEquals(1, peer.getPacketsLost());
+    assertEquals(1 / 5.0, peer.getLossRate(), DELTA);
+    assertEquals(40, peer.getBytesIn());
+  }
+
+  @Test
+  void smoothsTheRoundTripTime() {
+    PeerStats peer = new PeerStats(InetAddress.getLoopbackAddress());
+    long sent = 5_000_000_000L;
+    peer.pong(NetworkStats.micros(sent), sent + 40_000_000L);
+    assertEquals(40, peer.getRtt(), DELTA);
+    assertEquals(20, peer.getJitter(), DELTA);
+    peer.pong(NetworkStats.micros(sent), sent + 120_000_000L);
+    assertEquals(50, peer.getRtt(), DELTA);
+    assertEquals(35, peer.getJitter(), DELTA);
+
+    long[] histogram = peer.getRttHistogram();
+    assertEquals(1, histogram[2]); // up to 50ms
+    assertEquals(1, histogram[4]); // up to 200ms
+  }
+}
@@ -0,0 +1,201 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.gamestate.points.Point;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+class ReliableSenderTest {
+
+  @Test
+  void resendsOnlyMissingEventsAndDeliversInOrder() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    FrameBatcher batcher = new FrameBatcher(PacketCodec.MAX_FRAME_SIZE, outputs);
+    ReliableSender sender = new ReliableSender(new int[] {0}, batcher);
+    ReliableReceiver receiver = new ReliableReceiver();
+    List<Double> delivered = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Point p = new Point(i + 0.5, 0.5);
+      sender.send(buf -> PacketCodec.writePowerUpBox(buf, p));
+    }
+    batcher.flush();
+
+    // the second event is lost, the third is held until it arrives
+    ByteBuffer frame = outputs.poll();
+    for (int i = 0; i < 3; i++) {
+      assertEquals(PacketCodec.EVENT, frame.get());
+      if (i == 1) {
+        PacketCodec.skip(frame, PacketCodec.EVENT);
+      } else {
+        receiver.receive(frame, event -> delivered.add(readBox(event)));
+      }
+    }
+    assertEquals(Collections.singletonList(0.5), delivered);
+    acknowledge(receiver, sender);
+
+    for (int tick = 0; tick < ReliableSender.RESEND_INTERVAL; tick++) {
+      sender.update();
+    }
+    batcher.flush();
+    frame = outputs.poll();
+    assertEquals(PacketCodec.EVENT, frame.get());
+    receiver.receive(frame, event -> delivered.add(readBox(event)));
+    assertFalse(frame.hasRemaining()); // only the lost event was resent
+    assertEquals(Arrays.asList(0.5, 1.5, 2.5), delivered);
+
+    // the first was acknowledged, the others are kept until they are
+    sender.update();
+    assertEquals(2, sender.getPending());
+    acknowledge(receiver, sender);
+    sender.update();
+    assertEquals(0, sender.getPending());
+  }
+
+  @Test
+  void keepsResendingWithoutAcknowledgements() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    FrameBatcher batcher = new FrameBatcher(PacketCodec.MAX_FRAME_SIZE, outputs);
+    ReliableSender sender = new ReliableSender(new int[] {0, 1}, batcher);
+    sender.send(PacketCodec::writeStop);
+    batcher.flush();
+    outputs.clear();
+    for (int round = 0; round < 100; round++) {
+      for (int tick = 0; tick < ReliableSender.RESEND_INTERVAL; tick++) {
+        sender.update();
+      }
+      batcher.flush();
+      assertTrue(PacketCodec.contains(outputs.poll(), PacketCodec.EVENT));
+    }
+    assertEquals(1, sender.getPending());
+  }
+
+  @Test
+  void waitsForClientsThatHaveNotAcknowledgedYet() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    FrameBatcher batcher = new FrameBatcher(PacketCodec.MAX_FRAME_SIZE, outputs);
+    ReliableSender sender = new ReliableSender(new int[] {0, 1}, batcher);
+    ReliableReceiver first = new ReliableReceiver();
+    ReliableReceiver second = new ReliableReceiver();
+    List<Double> delivered = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Point p = new Point(i + 0.5, 0.5);
+      sender.send(buf -> PacketCodec.writePowerUpBox(buf, p));
+    }
+    batcher.flush();
+
+    // only the first client receives the frame, and acknowledges it
+    receiveAll(outputs.poll(), first, event -> readBox(event));
+    acknowledge(first, sender);
+    sender.update();
+    assertEquals(3, sender.getPending());
+
+    for (int tick = 0; tick < ReliableSender.RESEND_INTERVAL; tick++) {
+      sender.update();
+    }
+    batcher.flush();
+    receiveAll(outputs.poll(), second, event -> delivered.add(readBox(event)));
+    assertEquals(Arrays.asList(0.5, 1.5, 2.5), delivered);
+  }
+
+  @Test
+  void clientsSkipEventsThatWereGivenUpOn() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    FrameBatcher batcher = new FrameBatcher(PacketCodec.MAX_FRAME_SIZE, outputs);
+    ReliableSender sender = new ReliableSender(new int[] {0}, batcher);
+    ReliableReceiver receiver = new ReliableReceiver();
+    List<Integer> delivered = new ArrayList<>();
+    for (int i = 0; i <= ReliableSender.CAPACITY; i++) {
+      byte b = (byte) i;
+      sender.send(buf -> buf.put(b));
+    }
+    assertEquals(ReliableSender.CAPACITY, sender.getPending());
+    batcher.flush();
+    outputs.clear(); // everything sent so far is lost
+
+    for (int tick = 0; tick < ReliableSender.RESEND_INTERVAL; tick++) {
+      sender.update();
+    }
+    batcher.flush();
+    while (!outputs.isEmpty()) {
+      receiveAll(outputs.poll(), receiver, event -> delivered.add(event.get() & 0xFF));
+    }
+    assertEquals(ReliableSender.CAPACITY, delivered.size());
+    assertEquals(1, (int) delivered.get(0));
+    acknowledge(receiver, sender);
+    sender.update();
+    assertEquals(0, sender.getPending());
+  }
+
+  @Test
+  void spectatorsPickTheChannelUpWithoutAcknowledging() {
+    Queue<ByteBuffer> outputs = new LinkedList<>();
+    FrameBatcher batcher = new FrameBatcher(PacketCodec.MAX_FRAME_SIZE, outputs);
+    ReliableSender sender = new ReliableSender(new int[] {0}, batcher);
+    ReliableReceiver player = new ReliableReceiver();
+    ReliableReceiver spectator = new ReliableReceiver();
+    List<Integer> watched = new ArrayList<>();
+    for (int i = 0; i < 2 * ReliableReceiver.WINDOW; i++) {
+      byte b = (byte) i;
+      sender.send(buf -> buf.put(b));
+    }
+    batcher.flush();
+    receiveAll(outputs.poll(), player, event -> {});
+    acknowledge(player, sender);
+    sender.update();
+    assertEquals(0, sender.getPending());
+
+    // the spectator starts watching now, and misses an event the player is slow to acknowledge
+    for (int i = 0; i < 4; i++) {
+      byte b = (byte) (100 + i);
+      sender.send(buf -> buf.put(b));
+      batcher.flush();
+      ByteBuffer frame = outputs.poll();
+      receiveAll(frame.duplicate(), player, event -> {});
+      if (i != 1) {
+        receiveAll(frame, spectator, event -> watched.add(event.get() & 0xFF));
+        acknowledge(player, sender);
+        sender.update();
+      }
+    }
+    assertEquals(Arrays.asList(100, 102, 103), watched);
+  }
+
+  /** Passes every event in a frame to a receiver */
+  private static void receiveAll(
+      ByteBuffer frame, ReliableReceiver receiver, Consumer<ByteBuffer> deliver) {
+    while (frame.hasRemaining()) {
+      assertEquals(PacketCodec.EVENT, frame.get());
+      receiver.receive(frame, deliver);
+    }
+  }
+
+  /** Passes the receiver's acknowledgement from client 0 to the sender */
+  private static void acknowledge(ReliableReceiver receiver, ReliableSender sender) {
+    assertTrue(receiver.needsAck());
+    ByteBuffer ack = ByteBuffer.allocate(PacketCodec.EVENT_ACK_SIZE);
+    receiver.writeAck(ack, 0);
+    assertFalse(receiver.needsAck());
+    ack.flip();
+    assertEquals(PacketCodec.EVENT_ACK, ack.get());
+    int id = PacketCodec.readUnsignedByte(ack);
+    int next = ack.getShort() & 0xFFFF;
+    sender.acknowledge(id, next, ack.getInt());
+  }
+
+  private static double readBox(ByteBuffer event) {
+    assertEquals(PacketCodec.POWERUP_BOX, event.get());
+    double x = PacketCodec.readCoordinate(event);
+    PacketCodec.readCoordinate(event);
+    return x;
+  }
+}
@@ -0,0 +1,78 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ServerLobbyTest {
+
+  @Test
+  void queuesJoinersPastAFullLobbyWithoutWaitingOnStalledOnes()
+      throws IOException, InterruptedException {
+    int port;
+    try (ServerSocket probe = new ServerSocket(0)) {
+      port = probe.getLocalPort();
+    }
+    ServerLobby lobby =
+        new ServerLobby(new Map(MapGenerator.generateNewMap(20, 20, new Random(1))), port);
+    Joiner[] players = new Joiner[ServerLobby.MAX_PLAYERS];
+    try (Socket stalled = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      for (int i = 0; i < players.length; i++) {
+        players[i] = new Joiner(port, "player" + i);
+        assertEquals(String.valueOf(i), players[i].in.readLine());
+        players[i].finishJoining();
+      }
+
+      Joiner queued = new Joiner(port, "queued");
+      assertEquals(NetworkUtility.QUEUED, queued.in.readLine());
+      players[2].out.println(NetworkUtility.DISCONNECT_NON_HOST);
+      players[2].out.flush();
+      String line;
+      while ((line = queued.in.readLine()).equals(NetworkUtility.QUEUED)) {
+        // still waiting for the lobby to see the leaver
+      }
+      assertEquals("2", line);
+      queued.finishJoining();
+      assertEquals(ServerLobby.MAX_PLAYERS, lobby.getPlayerCount());
+    } finally {
+      lobby.shutDown();
+      lobby.acceptConnections.join(1000);
+    }
+  }
+
+  /** A client going through the lobby handshake */
+  private static class Joiner {
+
+    private final BufferedReader in;
+    private final PrintWriter out;
+
+    private Joiner(int port, String name) throws IOException {
+      Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+      socket.setSoTimeout(3000);
+      in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      out = new PrintWriter(socket.getOutputStream());
+      out.println(NetworkUtility.PREFIX + "CONNECT" + NetworkUtility.SUFFIX);
+      out.println(name);
+      out.flush();
+    }
+
+    /** Reads the map hash, which the lobby has cached, and the rest of the handshake */
+    private void finishJoining() throws IOException {
+      in.readLine();
+      out.println(NetworkUtility.MAP_CACHED);
+      out.flush();
+      in.readLine(); // mipsman
+      assertEquals("SUCCESS", in.readLine());
+    }
+  }
+}
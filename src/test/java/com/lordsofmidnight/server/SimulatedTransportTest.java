@@ -0,0 +1,98 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class SimulatedTransportTest {
+
+  private static final InetSocketAddress TO =
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), 3001);
+
+  @Test
+  void makesTheSameChoicesForTheSameSeed() throws IOException {
+    NetworkConditions conditions = new NetworkConditions(0, 0, 0.3, 0.3, 0, 7);
+    ArrayList<Integer> first = sendNumbers(conditions);
+    ArrayList<Integer> second = sendNumbers(conditions);
+    assertEquals(first, second);
+    long distinct = first.stream().distinct().count();
+    assertTrue(distinct < 190 && distinct > 100); // about 30% lost
+    assertTrue(first.size() > distinct + 20); // about 30% of the rest sent twice
+  }
+
+  @Test
+  void holdsDatagramsBackForTheLatency() throws IOException, InterruptedException {
+    Recorder recorder = new Recorder();
+    SimulatedTransport transport =
+        new SimulatedTransport(recorder, new NetworkConditions(50, 0, 0, 0, 0, 1));
+    long start = System.nanoTime();
+    transport.send(ByteBuffer.wrap(new byte[] {1}), TO);
+    assertNull(recorder.sent.poll());
+    assertNotNull(recorder.sent.poll(2, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    transport.close();
+  }
+
+  @Test
+  void parsesTheConditions() {
+    NetworkConditions conditions =
+        NetworkConditions.parse("latency=80, jitter=20,loss=0.05,seed=3");
+    assertEquals(80, conditions.getLatency());
+    assertEquals(20, conditions.getJitter());
+    assertEquals(0.05, conditions.getLoss());
+    assertEquals(0, conditions.getReordering());
+    assertEquals(3, conditions.getSeed());
+    assertThrows(IllegalArgumentException.class, () -> NetworkConditions.parse("loss=2"));
+    assertThrows(IllegalArgumentException.class, () -> NetworkConditions.parse("lag=80"));
+  }
+
+  /** @return The numbers received, when 0 to 199 are sent in order */
+  private static ArrayList<Integer> sendNumbers(NetworkConditions conditions) throws IOException {
+    Recorder recorder = new Recorder();
+    SimulatedTransport transport = new SimulatedTransport(recorder, conditions);
+    for (int i = 0; i < 200; i++) {
+      transport.send(ByteBuffer.wrap(new byte[] {(byte) i}), TO);
+    }
+    transport.close();
+    ArrayList<Integer> received = new ArrayList<>();
+    recorder.sent.drainTo(received);
+    return received;
+  }
+
+  /** Remembers the first byte of each datagram sent through it */
+  private static class Recorder implements DatagramTransport {
+
+    private final BlockingQueue<Integer> sent = new LinkedBlockingQueue<>();
+
+    @Override
+    public void send(ByteBuffer datagram, InetSocketAddress to) {
+      sent.add(datagram.get() & 0xFF);
+      datagram.position(datagram.limit());
+    }
+
+    @Override
+    public InetSocketAddress receive(ByteBuffer buf) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
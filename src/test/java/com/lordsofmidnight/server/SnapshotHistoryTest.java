@@ -0,0 +1,100 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.Entity;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class SnapshotHistoryTest {
+
+  private static final Map map = new Map(new int[10][10]);
+
+  private static Entity[] agents() {
+    Entity[] agents = new Entity[3];
+    for (int i = 0; i < agents.length; i++) {
+      agents[i] = new Entity(i == 0, i, new Point(i + 1.5, 2.5, map));
+    }
+    return agents;
+  }
+
+  /** Sends a snapshot from the host history to the client history and returns its size */
+  private static int send(Snapshot snapshot, Snapshot baseline, SnapshotHistory client) {
+    ByteBuffer buf = ByteBuffer.allocate(PacketCodec.MAX_MESSAGE_SIZE);
+    snapshot.write(buf, baseline);
+    buf.flip();
+    int size = buf.remaining();
+    assertEquals(PacketCodec.SNAPSHOT, buf.get());
+    client.read(buf);
+    assertEquals(0, buf.remaining());
+    return size;
+  }
+
+  @Test
+  void deltaOnlyCarriesChanges() {
+    Entity[] agents = agents();
+    SnapshotHistory host = new SnapshotHistory(3);
+    SnapshotHistory client = new SnapshotHistory(3);
+
+    Snapshot keyframe = host.next(0);
+    keyframe.capture(0, agents, 1, 1000);
+    int keyframeSize = send(keyframe, null, client);
+
+    agents[2].setLocation(5.25, 2.5);
+    agents[1].setScore(40);
+    Snapshot delta = host.next(1);
+    delta.capture(1, agents, 1, 990);
+    int deltaSize = send(delta, keyframe, client);
+    assertTrue(deltaSize < keyframeSize);
+
+    Snapshot received = client.get(1);
+    assertEquals(990, received.getTime());
+    assertEquals(1, received.getMipID());
+    assertEquals(5.25, received.getX(2));
+    assertEquals(2.5, received.getX(1));
+    assertEquals(40, received.getScore(1));
+  }
+
+  @Test
+  void deltaWithoutBaselineIsSkipped() {
+    Entity[] agents = agents();
+    SnapshotHistory host = new SnapshotHistory(3);
+    SnapshotHistory client = new SnapshotHistory(3);
+    Snapshot first = host.next(0);
+    first.capture(0, agents, 0, 1000);
+    Snapshot second = host.next(1);
+    second.capture(1, agents, 0, 990);
+    send(second, first, client); // the keyframe was lost
+    assertNull(client.get(1));
+  }
+
+  @Test
+  void baselineIsAckedByEveryLiveClient() {
+    Entity[] agents = agents();
+    SnapshotHistory host = new SnapshotHistory(3);
+    for (int tick = 0; tick < 3; tick++) {
+      host.next(tick).capture(tick, agents, 0, 1000 - tick);
+    }
+    assertNull(host.getBaseline(3));
+
+    host.acknowledge(0, 1);
+    host.acknowledge(1, 1);
+    host.acknowledge(0, 2);
+    assertSame(host.get(1), host.getBaseline(3));
+    host.acknowledge(1, 2);
+    assertSame(host.get(2), host.getBaseline(3));
+
+    // a client that stops acknowledging is dropped once its acks leave the history
+    for (int tick = 3; tick < SnapshotHistory.SIZE + 3; tick++) {
+      host.next(tick).capture(tick, agents, 0, 1000 - tick);
+      host.acknowledge(0, tick);
+    }
+    int tick = SnapshotHistory.SIZE + 3;
+    assertSame(host.get(tick - 1), host.getBaseline(tick));
+  }
+}
@@ -0,0 +1,103 @@
+package com.lordsofmidnight.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class SpectatorRelayTest {
+
+  @Test
+  void sendsEveryFrameToEverySpectatorAfterTheDelay() throws IOException, InterruptedException {
+    LoopbackNetwork network = new LoopbackNetwork();
+    SpectatorRelay relay =
+        new SpectatorRelay(NetworkUtility.SPECTATOR_DGRAM_PORT, network.at(address(1)).open(), 200);
+    ArrayList<BlockingQueue<ByteBuffer>> received = new ArrayList<>();
+    ArrayList<SpectatorGameplayHandler> spectators = new ArrayList<>();
+    for (int i = 2; i <= 4; i++) {
+      BlockingQueue<ByteBuffer> in = new LinkedBlockingQueue<>();
+      received.add(in);
+      spectators.add(
+          new SpectatorGameplayHandler(
+              in, network.at(address(i)).bind(NetworkUtility.SPECTATOR_DGRAM_PORT)));
+      relay.addSpectator(address(i));
+    }
+    relay.start();
+    try {
+      ByteBuffer frame = ByteBuffer.allocate(64);
+      PacketCodec.writeEvent(frame, 0, 0, new byte[] {7, 8}, 2);
+      frame.flip();
+      long start = System.nanoTime();
+      relay.offer(frame);
+      relay.offer(frame);
+      assertEquals(0, frame.position());
+      for (BlockingQueue<ByteBuffer> in : received) {
+        assertNotNull(in.poll(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        ByteBuffer second = in.poll(2, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals(frame, second);
+      }
+      for (SpectatorGameplayHandler spectator : spectators) {
+        PeerStats host = spectator.getStats().getPeer(address(1));
+        assertEquals(2, host.getPacketsIn());
+        assertEquals(0, host.getPacketsLost());
+      }
+    } finally {
+      relay.shutdown();
+      for (SpectatorGameplayHandler spectator : spectators) {
+        spectator.close();
+      }
+    }
+  }
+
+  @Test
+  void passesOnTheFramesSentToPlayersButNotThePings() throws IOException, InterruptedException {
+    LoopbackNetwork network = new LoopbackNetwork();
+    ArrayList<InetAddress> players = new ArrayList<>();
+    players.add(address(2));
+    PacketSender sender =
+        new PacketSender(
+            NetworkUtility.CLIENT_DGRAM_PORT,
+            new ArrayBlockingQueue<ByteBuffer>(1),
+            players,
+            network.at(address(1)).open());
+    SpectatorRelay relay =
+        new SpectatorRelay(NetworkUtility.SPECTATOR_DGRAM_PORT, network.at(address(1)).open(), 0);
+    relay.addSpectator(address(3));
+    sender.setSpectators(relay);
+    BlockingQueue<ByteBuffer> watched = new LinkedBlockingQueue<>();
+    SpectatorGameplayHandler spectator =
+        new SpectatorGameplayHandler(
+            watched, network.at(address(3)).bind(NetworkUtility.SPECTATOR_DGRAM_PORT));
+    try {
+      sender.ping(System.nanoTime());
+      ByteBuffer stop = ByteBuffer.allocate(1);
+      PacketCodec.writeStop(stop);
+      stop.flip();
+      sender.send(stop);
+      relay.shutdown(); // sends what is held without starting the thread
+      ByteBuffer frame = watched.poll(2, TimeUnit.SECONDS);
+      assertNotNull(frame);
+      assertEquals(PacketCodec.STOP, frame.get(0));
+      assertNull(watched.poll(100, TimeUnit.MILLISECONDS));
+    } finally {
+      sender.shutdown();
+      spectator.close();
+    }
+  }
+
+  private static InetAddress address(int host) throws IOException {
+    return InetAddress.getByAddress(new byte[] {127, 0, 0, (byte) host});
+  }
+}
@@ -0,0 +1,152 @@
+package com.lordsofmidnight.server.telemeters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.gamestate.maps.Map;
+import com.lordsofmidnight.gamestate.maps.MapGenerator;
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.objects.Pellet;
+import com.lordsofmidnight.utils.Input;
+import com.lordsofmidnight.utils.TickScheduler;
+import com.lordsofmidnight.utils.enums.Direction;
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.junit.jupiter.api.Test;
+
+class HostTelemetryTest {
+
+  private static final Map map = new Map(MapGenerator.generateNewMap(20, 20));
+
+  @Test
+  void headlessGamesRunSideBySide() {
+    CountingListener listener1 = new CountingListener();
+    CountingListener listener2 = new CountingListener();
+    HostTelemetry game1 =
+        new HostTelemetry(0, map, 1, new LinkedBlockingQueue<Input>(), null, listener1);
+    HostTelemetry game2 =
+        new HostTelemetry(0, map, 2, new LinkedBlockingQueue<Input>(), null, listener2);
+    game1.setTime(1000);
+    game2.setTime(1000);
+    for (int i = 0; i < 1000; i++) {
+      game1.tick();
+      game2.tick();
+    }
+    assertTrue(game1.isFinished());
+    assertTrue(game2.isFinished());
+    assertEquals(1, listener1.finishes);
+    assertEquals(1, listener2.finishes);
+    game1.stopGame();
+    game2.stopGame();
+  }
+
+  @Test
+  void sameSeedSameStart() {
+    HostTelemetry game1 =
+        new HostTelemetry(0, map, 42, new LinkedBlockingQueue<Input>(), null, new CountingListener());
+    HostTelemetry game2 =
+        new HostTelemetry(0, map, 42, new LinkedBlockingQueue<Input>(), null, new CountingListener());
+    Entity[] agents1 = game1.getAgents();
+    Entity[] agents2 = game2.getAgents();
+    for (int i = 0; i < agents1.length; i++) {
+      assertEquals(agents1[i].getLocation(), agents2[i].getLocation());
+      assertEquals(agents1[i].isMipsman(), agents2[i].isMipsman());
+    }
+    assertEquals(game1.getPellets().size(), game2.getPellets().size());
+  }
+
+  @Test
+  void catchesAgainstWhatARemotePlayerSaw() {
+    HostTelemetry game =
+        new HostTelemetry(
+            5,
+            map,
+            1,
+            new LinkedBlockingQueue<Input>(),
+            new LinkedBlockingQueue<ByteBuffer>(),
+            new CountingListener());
+    Entity[] agents = game.getAgents();
+    for (Entity agent : agents) {
+      agent.setMipsman(false);
+      agent.setDirection(Direction.STOP);
+    }
+    Entity victim = agents[1];
+    Entity catcher = agents[2];
+    Point seen = victim.getLocation().getCopy();
+    for (int i = 0; i < 3; i++) {
+      game.tick();
+    }
+    int tickSeen = game.getGameTimer();
+    victim.setLocation(agents[3].getLocation().getCopy()); // moved on since the catcher saw it
+    game.tick();
+    catcher.setLocation(seen.getCopy());
+    assertFalse(game.caught(victim, catcher));
+
+    Input input = new Input(2, Direction.LEFT);
+    input.setTick(Telemetry.GAME_TIME - tickSeen - 1);
+    game.addInput(input);
+    game.tick();
+    catcher.setLocation(seen.getCopy());
+    catcher.setDirection(Direction.STOP);
+    assertTrue(game.caught(victim, catcher));
+    assertFalse(game.caught(catcher, victim)); // only the player who said what they saw
+
+    // with the face either side of where the victim was, the rule is the same as a live catch's
+    for (double offset : new double[] {-0.3, 0.3}) {
+      catcher.setLocation(new Point(seen.getX() + offset, seen.getY(), map));
+      assertEquals(seen.inRange(catcher.getFaceLocation()), game.caught(victim, catcher));
+    }
+    game.stopGame();
+  }
+
+  @Test
+  void keyframesListThePowerUpBoxes() {
+    LinkedBlockingQueue<ByteBuffer> outputs = new LinkedBlockingQueue<>();
+    HostTelemetry game =
+        new HostTelemetry(
+            5, map, 3, new LinkedBlockingQueue<Input>(), outputs, new CountingListener());
+    int boxes = countBoxes(game);
+    assertTrue(boxes > 0);
+    TickScheduler scheduler = game.initialiseScheduler();
+    for (int id = 0; id < 5; id++) {
+      game.acknowledgeEvents(id, boxes, 0); // every player has the events placing the boxes
+    }
+    scheduler.runTick();
+    outputs.clear(); // sent before the spectator started watching
+
+    LinkedBlockingQueue<ByteBuffer> watched = new LinkedBlockingQueue<>();
+    DumbTelemetry spectator = new DumbTelemetry(map, watched, null, new CountingListener());
+    for (int i = 0; i < 200; i++) {
+      scheduler.runTick();
+    }
+    watched.addAll(outputs);
+    spectator.processInputs();
+    assertEquals(boxes, countBoxes(spectator));
+    game.stopGame();
+  }
+
+  private static int countBoxes(Telemetry game) {
+    int boxes = 0;
+    for (Pellet pellet : game.getPellets().values()) {
+      if (pellet.isPowerUpBox()) {
+        boxes++;
+      }
+    }
+    return boxes;
+  }
+
+  private static class CountingListener implements GameListener {
+
+    private int finishes = 0;
+
+    @Override
+    public void collisionDetected(Entity newMipsman) {}
+
+    @Override
+    public void finishGame() {
+      finishes++;
+    }
+  }
+}
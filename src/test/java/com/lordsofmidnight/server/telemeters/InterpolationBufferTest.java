@@ -0,0 +1,49 @@
+package com.lordsofmidnight.server.telemeters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.Entity;
+import com.lordsofmidnight.utils.enums.Direction;
+import org.junit.jupiter.api.Test;
+
+class InterpolationBufferTest {
+
+  private static final double DELTA = 1e-9;
+
+  @Test
+  void blendsBetweenPositionsInTickOrder() {
+    InterpolationBuffer buffer = new InterpolationBuffer();
+    Entity agent = new Entity(false, 1, new Point(0.5, 0.5));
+    buffer.add(20, 3.5, 1.5, Direction.DOWN);
+    buffer.add(10, 1.5, 1.5, Direction.RIGHT); // arrived late, but is older
+
+    assertFalse(buffer.apply(5, agent));
+    assertEquals(0.5, agent.getLocation().getX(), DELTA);
+
+    assertTrue(buffer.apply(15, agent));
+    assertEquals(2.5, agent.getLocation().getX(), DELTA);
+    assertEquals(1.5, agent.getLocation().getY(), DELTA);
+    assertEquals(Direction.RIGHT, agent.getDirection());
+
+    assertTrue(buffer.apply(20, agent));
+    assertEquals(3.5, agent.getLocation().getX(), DELTA);
+    assertEquals(Direction.DOWN, agent.getDirection());
+    assertFalse(buffer.apply(21, agent)); // left to the physics beyond the newest position
+  }
+
+  @Test
+  void jumpsRatherThanSlidingAcrossTheMap() {
+    InterpolationBuffer buffer = new InterpolationBuffer();
+    Entity agent = new Entity(false, 1, new Point(0.5, 0.5));
+    buffer.add(0, 0.5, 4.5, Direction.LEFT);
+    buffer.add(10, 18.5, 4.5, Direction.LEFT); // wrapped around the edge
+
+    assertTrue(buffer.apply(5, agent));
+    assertEquals(0.5, agent.getLocation().getX(), DELTA);
+    assertTrue(buffer.apply(10, agent));
+    assertEquals(18.5, agent.getLocation().getX(), DELTA);
+  }
+}
@@ -0,0 +1,33 @@
+package com.lordsofmidnight.server.telemeters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.lordsofmidnight.gamestate.points.Point;
+import com.lordsofmidnight.objects.Entity;
+import org.junit.jupiter.api.Test;
+
+class PositionHistoryTest {
+
+  @Test
+  void findsThePositionsAtATick() {
+    Entity[] agents = {new Entity(false, 0, new Point(1.5, 1.5)), new Entity(false, 1, null)};
+    agents[1].setLocation(3.5, 1.5);
+    PositionHistory history = new PositionHistory(2);
+    assertEquals(-1, history.find(0));
+    for (int tick = 0; tick < 100; tick++) {
+      agents[0].setLocation(1.5, tick);
+      history.record(tick, agents);
+    }
+
+    int slot = history.find(90);
+    assertEquals(90, history.getY(slot, 0));
+    assertEquals(3.5, history.getX(slot, 1));
+    assertFalse(history.isDead(slot, 1));
+    assertEquals(99, history.getY(history.find(120), 0)); // not yet recorded, so the newest
+    int oldest = 100 - PositionHistory.SIZE;
+    assertEquals(oldest, history.getY(history.find(0), 0)); // clamped to the oldest kept
+    assertTrue(history.find(oldest) >= 0);
+  }
+}
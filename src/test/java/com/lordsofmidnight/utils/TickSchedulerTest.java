@@ -0,0 +1,51 @@
+package com.lordsofmidnight.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+class TickSchedulerTest {
+
+  @Test
+  void phasesRunInOrderAtTheirIntervals() {
+    ArrayList<String> calls = new ArrayList<>();
+    TickScheduler scheduler =
+        new TickScheduler(1)
+            .addPhase(1, tick -> calls.add("physics" + tick))
+            .addPhase(2, tick -> calls.add("network" + tick))
+            .addPhase(4, tick -> calls.add("score" + tick));
+    for (int i = 0; i < 5; i++) {
+      scheduler.runTick();
+    }
+    String[] expected = {
+      "physics0", "network0", "score0", "physics1", "physics2", "network2", "physics3",
+      "physics4", "network4", "score4"
+    };
+    assertEquals(expected.length, calls.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], calls.get(i));
+    }
+    assertEquals(5, scheduler.getTick());
+  }
+
+  @Test
+  void invalidIntervalRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new TickScheduler(1).addPhase(0, t -> {}));
+  }
+
+  @Test
+  void runsAndCloses() throws InterruptedException {
+    TickScheduler scheduler = new TickScheduler((long) Math.pow(10, 6)).addPhase(1, t -> {});
+    scheduler.start();
+    Thread.sleep(100);
+    scheduler.close();
+    scheduler.join(1000);
+    assertFalse(scheduler.isAlive());
+    assertTrue(scheduler.getTick() > 0);
+    assertTrue(scheduler.getMaxLateness() >= scheduler.getMeanLateness());
+  }
+}
@@ -0,0 +1,55 @@
+package com.lordsofmidnight.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+
+  @Test
+  void timersFireOnTheirTick() {
+    TimerWheel<String> wheel = new TimerWheel<>(4);
+    ArrayList<String> fired = new ArrayList<>();
+    wheel.schedule("a", 2);
+    wheel.schedule("b", 6); // same slot as a, a lap later
+    wheel.schedule("c", 3);
+
+    wheel.advanceTo(1, fired::add);
+    assertTrue(fired.isEmpty());
+    wheel.advanceTo(3, fired::add);
+    assertEquals("[a, c]", fired.toString());
+    wheel.advanceTo(5, fired::add);
+    assertEquals(2, fired.size());
+    wheel.advanceTo(6, fired::add);
+    assertEquals("[a, c, b]", fired.toString());
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void lateTimersFireOnNextTick() {
+    TimerWheel<String> wheel = new TimerWheel<>(8);
+    ArrayList<String> fired = new ArrayList<>();
+    wheel.advanceTo(10, fired::add);
+    wheel.schedule("late", 3);
+    wheel.advanceTo(11, fired::add);
+    assertEquals("[late]", fired.toString());
+  }
+
+  @Test
+  void timersCanBeScheduledWhileFiring() {
+    TimerWheel<Integer> wheel = new TimerWheel<>(2);
+    ArrayList<Integer> fired = new ArrayList<>();
+    wheel.schedule(0, 0);
+    for (long tick = 0; tick < 10; tick++) {
+      wheel.advanceTo(
+          tick,
+          i -> {
+            fired.add(i);
+            wheel.schedule(i + 1, wheel.getTick() + 2);
+          });
+    }
+    assertEquals("[0, 1, 2, 3, 4]", fired.toString());
+  }
+}